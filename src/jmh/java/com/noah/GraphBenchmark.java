@@ -0,0 +1,151 @@
+package com.noah;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LBAS / XXXXX 各计算阶段的基准测试
+ * 每组参数在试验开始时以固定种子生成一次拓扑，各阶段分别计时；会修改图状态的阶段在每次调用前重建图，重建不计入时间。
+ * 运行：mvn -Pjmh package && java -jar target/benchmarks.jar GraphBenchmark -p nodeCount=100000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int nodeCount;//节点数
+
+    @Param({"10", "50"})
+    public int slotCount;//单周期时隙数
+
+    @Param({"4", "8"})
+    public double degree;//平均度数，即边密度
+
+    @Param({"tree", "disk"})
+    public String model;//tree为随机生成树加额外边，disk为单位圆盘图
+
+    @Param("2")
+    public int hotspotBorder;//transformTopology的热点区域边界
+
+    @Param("2")
+    public int radius;//transformTopology中热点区域外节点的广播半径
+
+    @Param("42")
+    public long seed;
+
+    Topology topology;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        TopologyGenerator generator = new TopologyGenerator(seed);
+        if (model.equals("disk"))
+            topology = generator.unitDisk(nodeCount, slotCount, TopologyGenerator.radiusForDegree(nodeCount, degree));
+        else
+            topology = generator.randomTree(nodeCount, slotCount, (int) Math.max(0, Math.round(nodeCount * degree / 2) - (nodeCount - 1)));
+    }
+
+    /**
+     * 每次调用前重建的图，用于会修改节点状态或拓扑的阶段
+     */
+    @State(Scope.Thread)
+    public static class FreshGraph {
+        Graph graph;
+
+        @Setup(Level.Invocation)
+        public void setup(GraphBenchmark benchmark) {
+            graph = new Graph(benchmark.topology);
+        }
+    }
+
+    /**
+     * 整个试验共用的图，用于可以重复执行的阶段
+     */
+    @State(Scope.Thread)
+    public static class SharedGraph {
+        Graph graph;
+
+        @Setup(Level.Trial)
+        public void setup(GraphBenchmark benchmark) {
+            graph = new Graph(benchmark.topology);
+        }
+    }
+
+    /**
+     * 已完成LBAS广播主干的图
+     */
+    @State(Scope.Thread)
+    public static class ScheduledGraph {
+        Graph graph;
+
+        @Setup(Level.Trial)
+        public void setup(GraphBenchmark benchmark) {
+            graph = new Graph(benchmark.topology);
+            graph.finalizeLBASBackbone();
+        }
+    }
+
+    /**
+     * 预先扩展好所有节点k跳邻域的图，用于扫描hotspotBorder
+     */
+    @State(Scope.Thread)
+    public static class ExpandedGraph {
+        Graph graph;
+        RadiusExpansion expansion;
+
+        @Setup(Level.Trial)
+        public void setup(GraphBenchmark benchmark) {
+            graph = new Graph(benchmark.topology);
+            expansion = new RadiusExpansion(benchmark.topology, benchmark.radius, false);
+        }
+    }
+
+    @Benchmark
+    public void calNodeLevel(SharedGraph state) {
+        state.graph.calNodeLevel();
+    }
+
+    /**
+     * 计算所有时隙的覆盖节点并写入节点状态
+     */
+    @Benchmark
+    public void getCoveringSlotNodeSet(FreshGraph state, Blackhole bh) {
+        Graph graph = state.graph;
+        int[] coveredBy = new int[nodeCount];
+        int[][] selected = graph.calSlotCovers(coveredBy);
+        for (int i = 0; i < slotCount; i++)
+            bh.consume(graph.getCoveringSlotNodeSet(i, selected[i], coveredBy));
+    }
+
+    @Benchmark
+    public void constructSubTrees(FreshGraph state) {
+        state.graph.constructSubTrees();
+    }
+
+    @Benchmark
+    public void finalizeLBASBackbone(FreshGraph state) {
+        state.graph.finalizeLBASBackbone();
+    }
+
+    @Benchmark
+    public void transformTopology(FreshGraph state) {
+        state.graph.transformTopology(hotspotBorder, radius);
+    }
+
+    /**
+     * 以邻接表视图变换拓扑，不计预先扩展的时间
+     */
+    @Benchmark
+    public void transformTopologyView(ExpandedGraph state) {
+        state.graph.transformTopology(state.expansion, hotspotBorder);
+    }
+
+    @Benchmark
+    public int calTransDelay(ScheduledGraph state) {
+        return state.graph.calTransDelay();
+    }
+}
@@ -0,0 +1,29 @@
+package com.noah;
+
+/**
+ * 分配IntArray和LongArray的存储，分配的数组均为零初始化
+ * 邻接表派生的数组（反向图、遍历顺序）、节点状态、时隙索引以及BFS、贪心覆盖和时延计算的工作数组都从所属的存储中分配，
+ * 因此同一份算法代码既可以在堆上运行，也可以在OffHeapStore的堆外存储上运行
+ */
+interface ArrayStorage {
+    /**
+     * 在堆上分配
+     */
+    ArrayStorage HEAP = new ArrayStorage() {
+        @Override
+        public IntArray allocInts(int length) {
+            return IntArray.of(new int[length]);
+        }
+
+        @Override
+        public LongArray allocLongs(long length) {
+            if (length > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Array too large for the heap: " + length);
+            return LongArray.of(new long[(int) length]);
+        }
+    };
+
+    IntArray allocInts(int length);
+
+    LongArray allocLongs(long length);
+}
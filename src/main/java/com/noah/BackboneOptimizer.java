@@ -0,0 +1,576 @@
+package com.noah;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * 广播主干的局部搜索后处理
+ * 对已完成的调度反复尝试两类操作，只接受总传输次数和传输时延都不变差、且至少一项变好的操作：
+ * <ul>
+ * <li>删除传输：主干节点u在时隙t的接收者都能在不晚于u的时刻从其他发送者收到消息时，u在t的发送是多余的，
+ * 相当于把这次发送合并到其他发送者中，总传输次数减一</li>
+ * <li>更换父节点：把主干节点v挂到另一个在v的活跃时隙向v发送的主干节点下，改变calTransDelay遍历主干的顺序，使时延减小</li>
+ * </ul>
+ * 时延的计算与Graph.calTransDelay完全相同：沿主干从源点按BFS顺序处理节点，节点出队时以当时的到达时间计算其各次发送的时刻。
+ * 记录一次完整计算中各节点出队的次序和出队时的到达时间后，删除传输是否改变结果只需检查其接收者：
+ * 若每个接收者都有另一个发送者的发送时刻不晚于被删除的发送，并且在被删除的发送先于接收者出队时该发送者也先于接收者出队，
+ * 则所有节点出队时的到达时间和最终的到达时间都不变，无需重新计算；否则重新计算一遍时延。
+ * 每一轮列出候选操作后分批处理，每批先并行地在该批开始时的状态上检查，再按顺序逐个在当前状态上复核并提交通过检查的操作，
+ * 因此结果与线程数无关；时间预算用尽时停止，已提交的操作都经过复核，结果不会比输入更差。
+ * 不在主干遍历中的主干节点不影响时延，但模拟广播时仍会发送，其传输时隙保持不变
+ */
+public class BackboneOptimizer {
+    private static final int INF = 0x3f3f3f3f;
+    private static final int BATCH = 4096;//每批检查的候选操作数，每批检查完后提交，批间以当前状态重新检查
+
+    private final long timeBudgetMillis;
+    private final int maxRounds;
+    private final boolean parallel;
+
+    /**
+     * @param timeBudgetMillis 时间预算（毫秒）
+     * @param maxRounds        最多进行的轮数，某一轮没有提交任何操作时提前结束
+     * @param parallel         是否并行检查候选操作
+     */
+    public BackboneOptimizer(long timeBudgetMillis, int maxRounds, boolean parallel) {
+        if (timeBudgetMillis < 0 || maxRounds < 0)
+            throw new IllegalArgumentException("Budget must not be negative: " + timeBudgetMillis + " ms, " + maxRounds + " rounds");
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.maxRounds = maxRounds;
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return 优化后的调度结果，总传输次数和传输时延都不大于输入；没有可接受的操作时返回输入本身
+     */
+    public Schedule optimize(Schedule schedule) {
+        long deadline = System.currentTimeMillis() + timeBudgetMillis;
+        Problem problem = new Problem(schedule);
+        State state = new State(schedule);
+        Evaluator main = new Evaluator(problem);
+        Evaluation base = main.evaluate(state, new Evaluation(problem.nodeCount));
+        Evaluation trial = new Evaluation(problem.nodeCount);
+        int[] multiplicity = problem.countDeliveries(state);
+        int initialDelay = base.delay;
+        boolean changed = false;
+
+        for (int round = 0; round < maxRounds && System.currentTimeMillis() < deadline; round++) {
+            long[] candidates = problem.candidates(state, multiplicity, base);
+            int committed = 0;
+            for (int from = 0; from < candidates.length && System.currentTimeMillis() < deadline; from += BATCH) {
+                int to = Math.min(candidates.length, from + BATCH);
+                boolean[] promising = check(problem, state, candidates, from, to, base, main, trial, deadline);
+
+                //按候选顺序在当前状态上复核并提交
+                for (int i = from; i < to; i++) {
+                    if (!promising[i - from] || !problem.isApplicable(state, candidates[i], multiplicity, base))
+                        continue;
+                    if (isDrop(candidates[i]) && main.dropKeepsTimes(state, nodeOf(candidates[i]), argOf(candidates[i]), base)) {
+                        problem.apply(state, candidates[i], multiplicity);
+                        committed++;
+                        continue;
+                    }
+                    problem.apply(state, candidates[i], multiplicity);
+                    main.evaluate(state, trial);
+                    if (improves(candidates[i], trial, base)) {
+                        Evaluation t = base;
+                        base = trial;
+                        trial = t;
+                        committed++;
+                    } else
+                        problem.revert(state, candidates[i], multiplicity);
+                }
+            }
+            if (committed == 0)
+                break;
+            changed = true;
+        }
+
+        if (!changed)
+            return schedule;
+        main.evaluate(state, base);//直接提交的删除不更新reachedBy，重新计算一遍
+        if (base.delay > initialDelay || base.delay > schedule.getTransDelay())
+            return schedule;
+        Schedule optimized = problem.toSchedule(schedule, state, base);
+        //时延计算只沿主干遍历，再以模拟广播确认到达的节点没有减少
+        if (optimized.getTotalTrans() > schedule.getTotalTrans()
+                || optimized.simulate(0).getReachedCount() < schedule.simulate(0).getReachedCount())
+            return schedule;
+        return optimized;
+    }
+
+    /**
+     * 在base对应的状态上检查candidates[from, to)，并行时各线程持有状态的副本，按下标交错领取候选操作
+     */
+    private boolean[] check(Problem problem, State state, long[] candidates, int from, int to, Evaluation base,
+                            Evaluator main, Evaluation scratch, long deadline) {
+        boolean[] promising = new boolean[to - from];
+        if (parallel && to - from > 1) {
+            int workers = Math.min(to - from, Runtime.getRuntime().availableProcessors());
+            IntStream.range(0, workers).parallel().forEach(w -> {
+                State copy = state.copy();
+                Evaluator evaluator = new Evaluator(problem);
+                Evaluation trial = new Evaluation(problem.nodeCount);
+                for (int i = from + w; i < to && System.currentTimeMillis() < deadline; i += workers)
+                    promising[i - from] = evaluator.accepts(copy, candidates[i], base, trial);
+            });
+        } else
+            for (int i = from; i < to && System.currentTimeMillis() < deadline; i++)
+                promising[i - from] = main.accepts(state, candidates[i], base, scratch);
+        return promising;
+    }
+
+    //===================================候选操作===================================
+
+    //候选操作编码为long：最高位为1表示更换父节点，接着31位为节点编号，低32位为时隙或新的父节点编号
+    private static final long REPARENT = Long.MIN_VALUE;
+
+    private static long drop(int node, int slot) {
+        return (long) node << 32 | (slot & 0xffffffffL);
+    }
+
+    private static long reparent(int node, int parent) {
+        return REPARENT | (long) node << 32 | parent;
+    }
+
+    private static boolean isDrop(long move) {
+        return move >= 0;
+    }
+
+    private static int nodeOf(long move) {
+        return (int) (move >>> 32) & Integer.MAX_VALUE;
+    }
+
+    private static int argOf(long move) {
+        return (int) move;
+    }
+
+    /**
+     * 删除传输要求时延不变大，更换父节点要求时延严格变小，两者都要求原来到达的节点仍然到达
+     */
+    private static boolean improves(long move, Evaluation trial, Evaluation base) {
+        if (isDrop(move) ? trial.delay > base.delay : trial.delay >= base.delay)
+            return false;
+        for (int i = 0; i < base.reachTime.length; i++)
+            if (base.reachTime[i] != INF && trial.reachTime[i] == INF)
+                return false;
+        return true;
+    }
+
+    //===================================调度状态===================================
+
+    /**
+     * 不变的拓扑信息
+     */
+    private static class Problem {
+        final int nodeCount;
+        final int slotCount;
+        final int words;
+        final SlotIndex slotIndex;
+        final int[] neighbors;
+        final CsrGraph adjTable;
+        final CsrGraph reverse;
+        final int[] activeSlot;
+        final int[] order;//原主干节点按backbone集合的遍历顺序在前，其余节点按原编号在后，子节点按这一顺序插入HashSet
+        final int[] originalIds;//各节点的原编号，未重新编号时为null
+
+        Problem(Schedule schedule) {
+            NodeState nodeState = schedule.getNodeState();
+            nodeCount = nodeState.getNodeCount();
+            slotCount = nodeState.getSlotCount();
+            words = (slotCount + 64) >>> 6;
+            slotIndex = schedule.getSlotIndex();
+            neighbors = slotIndex.getNeighbors();
+            adjTable = schedule.getAdjTable();
+            reverse = adjTable.transpose();
+            activeSlot = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++)
+                activeSlot[i] = nodeState.getActiveSlot(i);
+            originalIds = schedule.getTopology().getOriginalIds();
+            int[] members = schedule.getBackboneOrder();
+            int[] byRank = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++)
+                byRank[originalIds == null ? i : originalIds[i]] = i;
+            order = Arrays.copyOf(members, nodeCount);
+            int cnt = members.length;
+            for (int i : byRank)
+                if (!schedule.isInBackbone(i))
+                    order[cnt++] = i;
+        }
+
+        /**
+         * @return 各节点从主干节点的发送中收到消息的次数
+         */
+        int[] countDeliveries(State state) {
+            int[] multiplicity = new int[nodeCount];
+            for (int u = 0; u < nodeCount; u++)
+                if (state.inBackbone[u])
+                    for (int t = state.nextTransSlot(u, -1); t != NodeState.NO_SLOT; t = state.nextTransSlot(u, t + 1))
+                        for (int k = slotIndex.neighborFrom(u, t); k < slotIndex.neighborTo(u, t); k++)
+                            multiplicity[neighbors[k]]++;
+            return multiplicity;
+        }
+
+        /**
+         * 列出当前状态下的候选操作，删除传输在前：所有接收者都至少还有一个其他来源的传输；
+         * 更换父节点在后：在v的活跃时隙向v发送、出队早于v的当前父节点且不在v的子树中的其他主干节点
+         */
+        long[] candidates(State state, int[] multiplicity, Evaluation base) {
+            long[] moves = new long[16];
+            int count = 0;
+            int[] reverseTargets = reverse.getTargets();
+            for (int u = 0; u < nodeCount; u++)
+                if (state.inBackbone[u])
+                    for (int t = state.nextTransSlot(u, -1); t != NodeState.NO_SLOT; t = state.nextTransSlot(u, t + 1))
+                        if (isApplicable(state, drop(u, t), multiplicity, base)) {
+                            if (count == moves.length)
+                                moves = Arrays.copyOf(moves, count << 1);
+                            moves[count++] = drop(u, t);
+                        }
+            int x;
+            for (int v = 1; v < nodeCount; v++)
+                if (state.inBackbone[v])
+                    for (int r = reverse.from(v); r < reverse.to(v); r++) {
+                        x = reverseTargets[r];
+                        if ((state.parent[v] == -1 || base.position[x] < base.position[state.parent[v]])
+                                && isApplicable(state, reparent(v, x), multiplicity, base)) {
+                            if (count == moves.length)
+                                moves = Arrays.copyOf(moves, count << 1);
+                            moves[count++] = reparent(v, x);
+                        }
+                    }
+            return Arrays.copyOf(moves, count);
+        }
+
+        boolean isApplicable(State state, long move, int[] multiplicity, Evaluation base) {
+            int v = nodeOf(move), x = argOf(move);
+            if (isDrop(move)) {
+                //不在主干遍历中的节点的发送不影响时延，但模拟广播时仍会发生，保留不动
+                if (base.position[v] == Integer.MAX_VALUE || !state.hasTransSlot(v, x))
+                    return false;
+                for (int k = slotIndex.neighborFrom(v, x); k < slotIndex.neighborTo(v, x); k++)
+                    if (multiplicity[neighbors[k]] < 2)
+                        return false;
+                return true;
+            }
+            if (x == v || x == state.parent[v] || !state.inBackbone[x] || !state.hasTransSlot(x, activeSlot[v]))
+                return false;
+            //新父节点不能在v的子树中
+            for (int p = x, steps = 0; p != -1 && steps <= nodeCount; p = state.parent[p], steps++)
+                if (p == v)
+                    return false;
+            return true;
+        }
+
+        void apply(State state, long move, int[] multiplicity) {
+            int v = nodeOf(move), x = argOf(move);
+            if (isDrop(move)) {
+                state.setTransSlot(v, x, false);
+                for (int k = slotIndex.neighborFrom(v, x); k < slotIndex.neighborTo(v, x); k++)
+                    multiplicity[neighbors[k]]--;
+            } else {
+                state.previousParent = state.parent[v];
+                state.parent[v] = x;
+            }
+        }
+
+        /**
+         * 撤销刚刚执行的apply
+         */
+        void revert(State state, long move, int[] multiplicity) {
+            int v = nodeOf(move), x = argOf(move);
+            if (isDrop(move)) {
+                state.setTransSlot(v, x, true);
+                for (int k = slotIndex.neighborFrom(v, x); k < slotIndex.neighborTo(v, x); k++)
+                    multiplicity[neighbors[k]]++;
+            } else
+                state.parent[v] = state.previousParent;
+        }
+
+        /**
+         * @return 主干成员关系和传输时隙为给定值时，cov是否在i的活跃时隙向i发送
+         */
+        private boolean transmitsTo(boolean inBackbone, boolean transmits, int cov, int i) {
+            return inBackbone && transmits && adjTable.contains(cov, i);
+        }
+
+        /**
+         * 生成新的调度结果：不再发送且没有子节点的主干节点移出主干，覆盖节点失效的节点改为最早向其发送的节点
+         */
+        Schedule toSchedule(Schedule schedule, State state, Evaluation evaluation) {
+            NodeState old = schedule.getNodeState();
+            boolean[] inBackbone = state.inBackbone.clone();
+            int[] childCount = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++)
+                if (inBackbone[i] && state.parent[i] != -1)
+                    childCount[state.parent[i]]++;
+            for (int i = 0; i < nodeCount; i++)//沿父节点逐个移除叶子
+                for (int v = i; v > 0 && inBackbone[v] && childCount[v] == 0 && state.nextTransSlot(v, -1) == NodeState.NO_SLOT; ) {
+                    inBackbone[v] = false;
+                    int p = state.parent[v];
+                    if (p == -1)
+                        break;
+                    childCount[p]--;
+                    if (p > i)//编号更大的父节点之后还会检查
+                        break;
+                    v = p;
+                }
+
+            NodeState nodeState = new NodeState(activeSlot, slotCount);
+            int members = 0, totalTrans = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                nodeState.setLevel(i, old.getLevel(i));
+                nodeState.setRootId(i, old.getRootId(i));
+                nodeState.setParentId(i, state.parent[i]);
+                for (int t = state.nextTransSlot(i, -1); t != NodeState.NO_SLOT; t = state.nextTransSlot(i, t + 1)) {
+                    nodeState.addTransSlot(i, t);
+                    if (inBackbone[i])
+                        totalTrans++;
+                }
+                int cov = old.getCovNodeId(i);
+                if (cov != -1 && cov != i && transmitsTo(schedule.isInBackbone(cov), old.hasTransSlot(cov, activeSlot[i]), cov, i)
+                        && !transmitsTo(inBackbone[cov], state.hasTransSlot(cov, activeSlot[i]), cov, i))
+                    cov = evaluation.reachedBy[i];
+                nodeState.setCovNodeId(i, cov);
+                if (inBackbone[i])
+                    members++;
+            }
+            int[] backbone = new int[members];
+            int k = 0;
+            for (int i : order)
+                if (inBackbone[i])
+                    backbone[k++] = i;
+            return new Schedule(schedule.getAlgorithm(), schedule.getHotspotBorder(), schedule.getRadius(), schedule.getTopology(),
+                    schedule.getAdjTable(), slotIndex, nodeState, backbone, evaluation.delay, totalTrans);
+        }
+    }
+
+    /**
+     * 可修改的主干状态：父节点、传输时隙位图和主干成员，位图的排列与NodeState相同
+     */
+    private static class State {
+        final int words;
+        final int slotCount;
+        final int[] parent;
+        final long[] trans;
+        final boolean[] inBackbone;
+        int previousParent;//最近一次更换父节点前的父节点，供撤销使用
+
+        State(Schedule schedule) {
+            NodeState nodeState = schedule.getNodeState();
+            int nodeCount = nodeState.getNodeCount();
+            slotCount = nodeState.getSlotCount();
+            words = (slotCount + 64) >>> 6;
+            parent = new int[nodeCount];
+            trans = new long[nodeCount * words];
+            inBackbone = new boolean[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                parent[i] = nodeState.getParentId(i);
+                for (int t = nodeState.nextTransSlot(i, -1); t != NodeState.NO_SLOT; t = nodeState.nextTransSlot(i, t + 1))
+                    setTransSlot(i, t, true);
+                inBackbone[i] = schedule.isInBackbone(i);
+            }
+        }
+
+        private State(State other) {
+            words = other.words;
+            slotCount = other.slotCount;
+            parent = other.parent.clone();
+            trans = other.trans.clone();
+            inBackbone = other.inBackbone.clone();
+        }
+
+        State copy() {
+            return new State(this);
+        }
+
+        boolean hasTransSlot(int id, int slot) {
+            return slot >= -1 && (trans[id * words + ((slot + 1) >>> 6)] & (1L << (slot + 1))) != 0;
+        }
+
+        void setTransSlot(int id, int slot, boolean value) {
+            if (value)
+                trans[id * words + ((slot + 1) >>> 6)] |= 1L << (slot + 1);
+            else
+                trans[id * words + ((slot + 1) >>> 6)] &= ~(1L << (slot + 1));
+        }
+
+        int nextTransSlot(int id, int from) {
+            int bit = from + 1;
+            if (bit > slotCount)
+                return NodeState.NO_SLOT;
+            int base = id * words, w = bit >>> 6;
+            long word = trans[base + w] & (-1L << bit);
+            while (true) {
+                if (word != 0)
+                    return (w << 6) + Long.numberOfTrailingZeros(word) - 1;
+                if (++w == words)
+                    return NodeState.NO_SLOT;
+                word = trans[base + w];
+            }
+        }
+    }
+
+    //===================================时延计算===================================
+
+    /**
+     * 一次时延计算的结果
+     */
+    private static class Evaluation {
+        final int[] reachTime;//最终到达时间，未到达为INF
+        final int[] dequeued;//出队时的到达时间，即计算其发送时刻所用的值
+        final int[] position;//出队次序，未出队为Integer.MAX_VALUE
+        final int[] reachedBy;//使最终到达时间最早的发送者，源点和未到达的节点为-1
+        int delay;
+
+        Evaluation(int nodeCount) {
+            reachTime = new int[nodeCount];
+            dequeued = new int[nodeCount];
+            position = new int[nodeCount];
+            reachedBy = new int[nodeCount];
+        }
+    }
+
+    /**
+     * 与Graph.calTransDelay相同的时延计算，工作数组在各次计算之间复用
+     */
+    private static class Evaluator {
+        private final Problem problem;
+        private final int[] childOffsets;
+        private final int[] cursor;
+        private final int[] children;
+        private final int[] queue;
+        private final HashOrder hashOrder = new HashOrder();
+
+        Evaluator(Problem problem) {
+            this.problem = problem;
+            childOffsets = new int[problem.nodeCount + 1];
+            cursor = new int[problem.nodeCount];
+            children = new int[problem.nodeCount];
+            queue = new int[problem.nodeCount + 1];
+        }
+
+        private int sendTime(int node, int reach, int slot) {
+            int slotCount = problem.slotCount;
+            int time = reach + slot - reach % slotCount;
+            if (reach % slotCount >= slot) {
+                time += slotCount;
+                if (node == 0)
+                    time -= slotCount;
+            }
+            return time;
+        }
+
+        Evaluation evaluate(State state, Evaluation result) {
+            int nodeCount = problem.nodeCount, p;
+            int[] neighbors = problem.neighbors;
+            SlotIndex slotIndex = problem.slotIndex;
+
+            //与Graph.childIndex相同，按problem.order把主干节点加入父节点的子节点列表，再排列为HashSet的遍历顺序
+            Arrays.fill(childOffsets, 0);
+            for (int i = 0; i < nodeCount; i++)
+                if (state.inBackbone[i] && (p = state.parent[i]) != -1)
+                    childOffsets[p + 1]++;
+            for (int i = 0; i < nodeCount; i++)
+                childOffsets[i + 1] += childOffsets[i];
+            System.arraycopy(childOffsets, 0, cursor, 0, nodeCount);
+            for (int i : problem.order)
+                if (state.inBackbone[i] && (p = state.parent[i]) != -1)
+                    children[cursor[p]++] = i;
+            for (int i = 0; i < nodeCount; i++)
+                hashOrder.arrange(children, childOffsets[i], childOffsets[i + 1], problem.originalIds, HashOrder.DEFAULT_CAPACITY);
+            int[] reachTime = result.reachTime;
+            Arrays.fill(reachTime, INF);
+            Arrays.fill(result.position, Integer.MAX_VALUE);
+            Arrays.fill(result.reachedBy, -1);
+            reachTime[0] = 0;
+            queue[0] = 0;
+            int head = 0, tail = 1, u, w, time, reach;
+            while (head < tail) {
+                u = queue[head];
+                result.position[u] = head++;
+                reach = result.dequeued[u] = reachTime[u];
+                for (int slot = state.nextTransSlot(u, -1); slot != NodeState.NO_SLOT; slot = state.nextTransSlot(u, slot + 1)) {
+                    time = sendTime(u, reach, slot);
+                    for (int k = slotIndex.neighborFrom(u, slot); k < slotIndex.neighborTo(u, slot); k++)
+                        if (reachTime[w = neighbors[k]] > time) {
+                            reachTime[w] = time;
+                            result.reachedBy[w] = u;
+                        }
+                }
+                for (int k = childOffsets[u]; k < childOffsets[u + 1]; k++)
+                    queue[tail++] = children[k];
+            }
+
+            result.delay = -1;
+            for (int t : reachTime)
+                if (t > result.delay && t != INF)
+                    result.delay = t;
+            return result;
+        }
+
+        /**
+         * 在base（当前状态的完整计算结果）上检查删除u在时隙t的发送后各节点的到达时间是否都不变
+         */
+        boolean dropKeepsTimes(State state, int u, int t, Evaluation base) {
+            if (base.position[u] == Integer.MAX_VALUE)
+                return false;
+            int[] neighbors = problem.neighbors;
+            int[] reverseTargets = problem.reverse.getTargets();
+            CsrGraph reverse = problem.reverse;
+            int removed = sendTime(u, base.dequeued[u], t), w, s;
+            for (int k = problem.slotIndex.neighborFrom(u, t); k < problem.slotIndex.neighborTo(u, t); k++) {
+                w = neighbors[k];
+                boolean uFirst = base.position[u] < base.position[w];
+                boolean covered = false;
+                for (int r = reverse.from(w); r < reverse.to(w) && !covered; r++) {
+                    s = reverseTargets[r];
+                    covered = s != u && base.position[s] != Integer.MAX_VALUE && state.hasTransSlot(s, t)
+                            && sendTime(s, base.dequeued[s], t) <= removed && (!uFirst || base.position[s] < base.position[w]);
+                }
+                if (!covered)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * 在base对应的状态上检查候选操作，state在返回时恢复原状
+         */
+        boolean accepts(State state, long move, Evaluation base, Evaluation scratch) {
+            if (isDrop(move) && dropKeepsTimes(state, nodeOf(move), argOf(move), base))
+                return true;
+            int v = nodeOf(move), x = argOf(move), previous = state.parent[v];
+            if (isDrop(move))
+                state.setTransSlot(v, x, false);
+            else
+                state.parent[v] = x;
+            evaluate(state, scratch);
+            if (isDrop(move))
+                state.setTransSlot(v, x, true);
+            else
+                state.parent[v] = previous;
+            return improves(move, scratch, base);
+        }
+    }
+
+    /**
+     * 用法：BackboneOptimizer &lt;拓扑文件&gt; [时间预算（毫秒）]，对LBAS调度结果进行后处理
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BackboneOptimizer <topology> [time budget ms]");
+            System.exit(1);
+        }
+        Topology topology = TopologyIO.read(Paths.get(args[0]));
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : 10000;
+        Schedule schedule = new LBASScheduler(topology, true).schedule();
+        long start = System.nanoTime();
+        Schedule optimized = new BackboneOptimizer(budget, Integer.MAX_VALUE, true).optimize(schedule);
+        System.out.println("Transmission delay: " + schedule.getTransDelay() + " -> " + optimized.getTransDelay()
+                + ", total transmissions: " + schedule.getTotalTrans() + " -> " + optimized.getTotalTrans()
+                + ", time: " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,783 @@
+package com.noah;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 修改拓扑后增量修复LBAS广播主干，结果与在新拓扑上完全重建的主干相同，包括主干集合的遍历顺序。
+ * 建立子树（Stage1）是线性的，每次都在基本类型数组上重放，与上次的结果逐节点比较，得到Stage1状态改变的节点（热点）。
+ * 连接子树（Stage2）只重新连接受影响的根节点：根节点v连接时只读取其三跳以内的节点（见isAffected），
+ * 这些节点都不是热点时，v写入的父节点、根节点和传输时隙与上次相同，直接沿用。
+ * 连接时节点x的状态在写入它的根节点eventRoot[x]连接之前取Stage1的值，之后取写入的值，
+ * 因此跳过的根节点不必重放，之后的根节点读到的状态与完全重建时相同；重新连接的根节点写入的节点若有改变则成为新的热点。
+ * 主干集合按桶维护：只有成员或插入次序改变的桶被删除后按新的次序重新加入，容量改变或出现红黑树时整体重建。
+ * 只用于未重新编号的对称拓扑，节点编号即HashSet中的键
+ */
+final class BackboneRepair {
+    private final int slotCount;
+    private final HashOrder hashOrder = new HashOrder();
+    private boolean initialized;//上次修复是否完整结束，否则下次整体重建
+    private int nodeCount;
+    private CsrGraph adjTable;
+    private int[] targets;
+    private NodeState state;//修复后的节点状态，即Graph的节点状态
+    private final int words;//每个节点的传输时隙位图所占的long数，与NodeState相同
+    private Stage stage = new Stage(), previous = new Stage();//本次与上次建立子树后的节点状态
+    private int[] sequence = new int[0];//主干成员的插入序列，Stage1成员在前，连接节点按连接顺序在后
+    private int stageLength;//sequence中Stage1成员的个数
+    private int stageCapacity = -1;//Stage1成员构成的集合的容量，决定同层根节点的连接顺序；出现红黑树时为-1
+    private int[] roots = new int[0];//按连接顺序排列的根节点
+    private int rootCount;
+    private int[] position = new int[0];//根节点在连接顺序中的位置，其他节点为-1
+    private int[] eventRoot = new int[0];//连接时改变了节点父节点和根节点的根节点，未改变时为-1
+    private int[] eventSub = new int[0];//节点在eventRoot的连接中加入主干的次序
+    private int[] added = new int[0], addedSlot = new int[0];//根节点v连接时加入传输时隙的节点和时隙，下标为2v与2v + 1
+    private long[] bits = new long[0];//修复后的主干成员，与backbone同步
+    private Set<Integer> backbone;
+    private int backboneCapacity = -1;//backbone的容量，含红黑树或未知时为-1
+    private int epoch;//各标记数组的值等于epoch时表示本次修复中已标记
+    private int[] hotMark = new int[0], queuedMark = new int[0], transMark = new int[0], setMark = new int[0];
+    private int[] transList = new int[16], setList = new int[16];
+    private int transCount, setCount;
+    private int[] heap = new int[16];//待检查的根节点在连接顺序中的位置
+    private int heapSize;
+
+    /**
+     * 建立子树后的节点状态，各字段与NodeState中的相同；另记录主干成员及其插入次序
+     */
+    private static final class Stage {
+        int[] level = new int[0], parent = new int[0], root = new int[0], cov = new int[0];
+        int[] covering = new int[0], active = new int[0];
+        int[] seq = new int[0];//成员在所在层中的插入次序，处理覆盖节点v时新的根为2v，v本身为2v + 1，源点为0
+        long[] trans = new long[0], bits = new long[0];
+
+        void ensure(int n, int words) {
+            if (level.length >= n)
+                return;
+            int capacity = Math.max(n, level.length + (level.length >>> 1));
+            level = new int[capacity];
+            parent = new int[capacity];
+            root = new int[capacity];
+            cov = new int[capacity];
+            covering = new int[capacity];
+            active = new int[capacity];
+            seq = new int[capacity];
+            trans = new long[capacity * words];
+            bits = new long[(capacity + 63) >>> 6];
+        }
+
+        boolean isMember(int id) {
+            return (bits[id >>> 6] & (1L << id)) != 0;
+        }
+    }
+
+    BackboneRepair(int slotCount) {
+        this.slotCount = slotCount;
+        words = (slotCount + 64) >>> 6;
+    }
+
+    /**
+     * 由新的层、默认父节点和覆盖结果修复广播主干，state的活跃时隙须已更新
+     *
+     * @param levels     新拓扑上的层和默认父节点
+     * @param slotCovers 各时隙按选中顺序排列的覆盖节点
+     * @param coveredBy  各活跃节点的覆盖节点
+     * @param state      上次修复后的节点状态，节点数改变时其余节点的状态须已复制
+     * @param us         邻接表改变的节点
+     * @param vs         邻接表改变的节点
+     * @return 修复后的主干集合
+     * @throws IllegalStateException 某个根节点未能找到连接节点，此时主干不完整，下次修复时整体重建
+     */
+    Set<Integer> repair(CsrGraph adjTable, LevelIndex levels, SlotIndex slotIndex, int[][] slotCovers, int[] coveredBy,
+                        NodeState state, int[] us, int[] vs) {
+        boolean full = !initialized;
+        initialized = false;
+        this.adjTable = adjTable;
+        this.state = state;
+        targets = adjTable.getOrderedTargets();
+        int oldCount = nodeCount;
+        resize(state.getNodeCount());
+        if (++epoch == 0) {//计数回绕时清空标记
+            Arrays.fill(hotMark, 0);
+            Arrays.fill(queuedMark, 0);
+            Arrays.fill(transMark, 0);
+            Arrays.fill(setMark, 0);
+            epoch = 1;
+        }
+        transCount = setCount = 0;
+
+        Stage s = previous;
+        previous = stage;
+        stage = s;
+        buildStage(levels, slotIndex, slotCovers, coveredBy);
+        int capacity = hashOrder.capacity(sequence, 0, stageLength, null, HashOrder.DEFAULT_CAPACITY);
+        full |= capacity == -1 || capacity != stageCapacity;
+        stageCapacity = capacity;
+        orderRoots();
+
+        if (full)
+            joinAll();
+        else
+            joinAffected(oldCount, us, vs);
+        for (int k = 0; k < transCount; k++)
+            refreshTransSlots(transList[k]);
+        updateBackbone(full);
+        initialized = true;
+        return backbone;
+    }
+
+    /**
+     * @return 修复后的主干成员位图，与返回的主干集合一致
+     */
+    long[] getBackboneBits() {
+        return bits;
+    }
+
+    /**
+     * 节点数改变时扩充各数组，新节点没有连接记录
+     */
+    private void resize(int n) {
+        nodeCount = n;
+        int words = (n + 63) >>> 6;
+        if (bits.length != words)
+            bits = Arrays.copyOf(bits, words);
+        if (position.length >= n)
+            return;
+        int old = position.length;
+        position = Arrays.copyOf(position, n);
+        eventRoot = Arrays.copyOf(eventRoot, n);
+        eventSub = Arrays.copyOf(eventSub, n);
+        added = Arrays.copyOf(added, 2 * n);
+        addedSlot = Arrays.copyOf(addedSlot, 2 * n);
+        Arrays.fill(position, old, n, -1);
+        Arrays.fill(eventRoot, old, n, -1);
+        Arrays.fill(added, 2 * old, 2 * n, -1);
+        hotMark = Arrays.copyOf(hotMark, n);
+        queuedMark = Arrays.copyOf(queuedMark, n);
+        transMark = Arrays.copyOf(transMark, n);
+        setMark = Arrays.copyOf(setMark, n);
+        sequence = new int[n];
+    }
+
+    //===================================Stage1===================================
+
+    /**
+     * 与Graph.buildSubTrees相同地建立覆盖子树，结果写入stage，成员按插入顺序写入sequence
+     */
+    private void buildStage(LevelIndex levels, SlotIndex slotIndex, int[][] slotCovers, int[] coveredBy) {
+        int n = nodeCount;
+        stage.ensure(n, words);
+        int[] level = stage.level, cov = stage.cov, covering = stage.covering;
+        for (int i = 0; i < n; i++) {
+            level[i] = levels.getLevel(i);
+            stage.parent[i] = levels.getParent(i);
+            stage.root[i] = -1;
+            cov[i] = -1;
+            covering[i] = 0;
+            stage.active[i] = state.getActiveSlot(i);
+        }
+        Arrays.fill(stage.trans, 0, n * words, 0L);
+        Arrays.fill(stage.bits, 0, (n + 63) >>> 6, 0L);
+        int maxLevel = levels.getMaxLevel();
+        int[] activeNodes = slotIndex.getActiveNodes();
+        for (int t = 0; t < slotCount; t++) {
+            for (int id : slotCovers[t])
+                stage.trans[id * words + ((t + 1) >>> 6)] |= 1L << (t + 1);
+            for (int i = slotIndex.activeFrom(t), a, c; i < slotIndex.activeTo(t); i++) {
+                cov[a = activeNodes[i]] = c = coveredBy[a];
+                if (c != -1 && c != a)
+                    covering[c]++;
+            }
+        }
+
+        stageLength = 0;
+        addToStage(0, -1, 0);
+        cov[0] = 0;
+
+        //覆盖节点按(层, 编号)升序处理
+        int[] levelOffsets = new int[maxLevel + 2];
+        for (int i = 0; i < n; i++)
+            if (covering[i] > 0)
+                levelOffsets[level[i] + 1]++;
+        for (int l = 0; l <= maxLevel; l++)
+            levelOffsets[l + 1] += levelOffsets[l];
+        int[] nodes = new int[levelOffsets[maxLevel + 1]];
+        int[] cursor = Arrays.copyOf(levelOffsets, maxLevel + 1);
+        for (int i = 0; i < n; i++)
+            if (covering[i] > 0)
+                nodes[cursor[level[i]]++] = i;
+        for (int k = levelOffsets[1], u, v; k < nodes.length; k++) {
+            v = nodes[k];
+            if (stage.root[v] == v)
+                continue;
+            u = cov[v];
+            if (level[u] < level[v])//Case 1.1
+                addToStage(v, u, 2 * v + 1);
+            else if (level[u] == level[v]) {
+                if (stage.root[u] == -1) {
+                    if (v == cov[u]) {//Case 1.2 & Case 1.3
+                        if (adjTable.degree(v) > adjTable.degree(u) || adjTable.degree(v) == adjTable.degree(u) && v < u)
+                            u = v;
+                    }
+                    addToStage(u, -1, 2 * v);
+                }
+                addToStage(v, u, 2 * v + 1);
+            } else
+                addToStage(v, -1, 2 * v + 1);
+        }
+    }
+
+    /**
+     * 与Graph.addToBackBone相同，节点第一次加入时记录插入次序
+     *
+     * @param rank 同层中的插入次序
+     */
+    private void addToStage(int v, int u, int rank) {
+        if (!stage.isMember(v)) {
+            stage.bits[v >>> 6] |= 1L << v;
+            stage.seq[v] = rank;
+            sequence[stageLength++] = v;
+        }
+        if (u == -1)
+            stage.root[v] = v;
+        else if (v != u) {
+            stage.parent[v] = u;
+            stage.root[v] = stage.root[u];
+        }
+    }
+
+    /**
+     * 与Graph.getRootNodes相同地求出根节点的连接顺序：按层由高到低，同层按Stage1成员集合的遍历顺序，
+     * 即按stageCapacity下的桶下标，同桶按插入次序
+     */
+    private void orderRoots() {
+        for (int k = 0; k < rootCount; k++)
+            position[roots[k]] = -1;
+        int maxLevel = 0;
+        rootCount = 0;
+        for (int k = 1; k < stageLength; k++) {
+            int v = sequence[k];
+            if (stage.root[v] == v) {
+                rootCount++;
+                maxLevel = Math.max(maxLevel, stage.level[v]);
+            }
+        }
+        if (roots.length < rootCount)
+            roots = new int[Math.max(rootCount, roots.length << 1)];
+
+        //同层按遍历顺序的键：(桶下标, 在sequence中的下标)；出现红黑树时直接用HashSet求出遍历顺序
+        long[] keys = new long[rootCount];
+        int[] levelCount = new int[maxLevel + 2];
+        int[] order = sequence;
+        int length = stageLength;
+        if (stageCapacity == -1) {
+            Set<Integer> set = new HashSet<>();
+            for (int k = 0; k < stageLength; k++)
+                set.add(sequence[k]);
+            order = new int[stageLength];
+            length = 0;
+            for (int key : set)
+                order[length++] = key;
+        }
+        for (int k = 0; k < length; k++) {
+            int v = order[k];
+            if (v != 0 && stage.root[v] == v)
+                levelCount[maxLevel - stage.level[v] + 1]++;
+        }
+        for (int l = 0; l <= maxLevel; l++)
+            levelCount[l + 1] += levelCount[l];
+        int[] cursor = Arrays.copyOf(levelCount, maxLevel + 1);
+        for (int k = 0; k < length; k++) {
+            int v = order[k];
+            if (v != 0 && stage.root[v] == v)
+                keys[cursor[maxLevel - stage.level[v]]++] =
+                        (stageCapacity == -1 ? 0L : (long) HashOrder.bucket(v, stageCapacity) << 32) | k;
+        }
+        for (int l = 0; l <= maxLevel; l++)
+            Arrays.sort(keys, levelCount[l], levelCount[l + 1]);
+        for (int k = 0; k < rootCount; k++) {
+            roots[k] = order[(int) keys[k]];
+            position[roots[k]] = k;
+        }
+    }
+
+    //===================================Stage2===================================
+
+    /**
+     * 整体重建：由Stage1的状态依次连接所有根节点
+     */
+    private void joinAll() {
+        for (int i = 0; i < nodeCount; i++) {
+            state.setLevel(i, stage.level[i]);
+            state.setParentId(i, stage.parent[i]);
+            state.setRootId(i, stage.root[i]);
+            state.setCovNodeId(i, stage.cov[i]);
+            copyTransSlots(i);
+            eventRoot[i] = -1;
+        }
+        Arrays.fill(added, 0, 2 * nodeCount, -1);
+        for (int k = 0; k < rootCount; k++)
+            join(roots[k]);
+    }
+
+    /**
+     * 只重新连接受影响的根节点
+     *
+     * @param oldCount 上次修复时的节点数
+     */
+    private void joinAffected(int oldCount, int[] us, int[] vs) {
+        //Stage1状态改变的节点、邻接表改变的节点和所在子树的根节点层数改变的节点是初始的热点
+        int[] initial = new int[16];
+        int count = 0;
+        boolean levelChanged = false;
+        for (int i = 0; i < nodeCount; i++) {
+            if (i < oldCount) {
+                for (int w = i * words; w < (i + 1) * words; w++)
+                    if (stage.trans[w] != previous.trans[w]) {
+                        markTrans(i);
+                        break;
+                    }
+                levelChanged |= stage.level[i] != previous.level[i];
+                if (!stageChanged(i))
+                    continue;
+            }
+            if (count == initial.length)
+                initial = Arrays.copyOf(initial, count << 1);
+            initial[count++] = i;
+            hotMark[i] = epoch;
+        }
+        for (int x = 0; x < oldCount && levelChanged; x++) {//连接时写入的根节点层数改变时，读取的rootLevel随之改变
+            int root = eventRoot[x] != -1 ? state.getRootId(x) : -1;
+            if (root != -1 && root < oldCount && stage.level[root] != previous.level[root] && hotMark[x] != epoch) {
+                if (count == initial.length)
+                    initial = Arrays.copyOf(initial, count << 1);
+                initial[count++] = x;
+                hotMark[x] = epoch;
+            }
+        }
+        for (int[] ends : new int[][]{us, vs})
+            for (int x : ends)
+                if (hotMark[x] != epoch) {
+                    if (count == initial.length)
+                        initial = Arrays.copyOf(initial, count << 1);
+                    initial[count++] = x;
+                    hotMark[x] = epoch;
+                }
+
+        //撤销原根节点的连接结果，热点的状态先取Stage1的值；仍有eventRoot的热点由eventRoot重新连接时恢复
+        for (int k = 0; k < count; k++) {
+            int x = initial[k];
+            if (x < oldCount && x != 0 && previous.isMember(x) && previous.root[x] == x)
+                undo(x, -1);
+        }
+        for (int k = 0; k < count; k++) {
+            int x = initial[k];
+            state.setLevel(x, stage.level[x]);
+            state.setCovNodeId(x, stage.cov[x]);
+            if (eventRoot[x] == -1) {
+                state.setParentId(x, stage.parent[x]);
+                state.setRootId(x, stage.root[x]);
+            }
+            markTrans(x);
+            markSet(x);
+            pushAffected(x, -1);
+        }
+
+        //按连接顺序检查可能受影响的根节点
+        int[] oldNodes = new int[3], oldParents = new int[3], oldRoots = new int[3], oldSubs = new int[3];
+        while (heapSize > 0) {
+            int v = roots[pollHeap()];
+            if (!isAffected(v))
+                continue;
+
+            //记录上次写入的节点，重新连接后比较
+            int written = 0;
+            for (int j = -1; j < 2; j++) {
+                int x = j == -1 ? v : added[2 * v + j];
+                if (x == -1 || eventRoot[x] != v || contains(oldNodes, written, x))
+                    continue;
+                oldNodes[written] = x;
+                oldParents[written] = state.getParentId(x);
+                oldRoots[written] = state.getRootId(x);
+                oldSubs[written++] = eventSub[x];
+            }
+            boolean moved = hotMark[v] == epoch;//v本身是热点时其连接顺序可能改变，写入的节点都需要重新检查
+            undo(v, position[v]);
+            join(v);
+            for (int j = 0; j < written; j++) {
+                int x = oldNodes[j];
+                if (moved || eventRoot[x] != v || state.getParentId(x) != oldParents[j]
+                        || state.getRootId(x) != oldRoots[j] || eventSub[x] != oldSubs[j])
+                    markHot(x, position[v]);
+                markSet(x);
+            }
+            for (int j = -1; j < 2; j++) {
+                int x = j == -1 ? v : added[2 * v + j];
+                if (x == -1)
+                    continue;
+                markTrans(x);
+                if (eventRoot[x] != v)
+                    continue;
+                markSet(x);
+                if (!contains(oldNodes, written, x))
+                    markHot(x, position[v]);
+            }
+        }
+    }
+
+    private static boolean contains(int[] a, int n, int x) {
+        for (int i = 0; i < n; i++)
+            if (a[i] == x)
+                return true;
+        return false;
+    }
+
+    /**
+     * @return 节点i在Stage1中读取或写入的状态是否改变，传输时隙另行比较
+     */
+    private boolean stageChanged(int i) {
+        boolean member = stage.isMember(i);
+        if (member != previous.isMember(i) || member && stage.seq[i] != previous.seq[i]
+                || stage.level[i] != previous.level[i] || stage.parent[i] != previous.parent[i]
+                || stage.cov[i] != previous.cov[i] || stage.active[i] != previous.active[i])
+            return true;
+        int root = stage.root[i], oldRoot = previous.root[i];
+        return root != oldRoot || root != -1 && stage.level[root] != previous.level[oldRoot];
+    }
+
+    /**
+     * 撤销根节点w上次的连接结果：由w改变的节点恢复为Stage1的状态，加入传输时隙的节点需要重新计算
+     *
+     * @param after 不小于0时只标记连接顺序在其之后的根节点，否则撤销的节点作为初始热点
+     */
+    private void undo(int w, int after) {
+        for (int j = -1; j < 2; j++) {
+            int x = j == -1 ? w : added[2 * w + j];
+            if (x == -1)
+                continue;
+            markTrans(x);
+            if (eventRoot[x] != w)
+                continue;
+            eventRoot[x] = -1;
+            state.setParentId(x, stage.parent[x]);
+            state.setRootId(x, stage.root[x]);
+            if (after < 0) {
+                markSet(x);
+                markHot(x, -1);
+            }
+        }
+        added[2 * w] = added[2 * w + 1] = -1;
+    }
+
+    /**
+     * 与Graph.connectLBASSubTrees中的一次循环相同地连接根节点v，各节点的状态按连接顺序取值
+     */
+    private void join(int v) {
+        int lv = stage.level[v], cov = stage.cov[v], parent;
+        if (rootLevel(cov, v) < lv)//Case 2.1
+            parent = cov;
+        else {
+            int selected = -1;
+            for (int k = adjTable.from(v); k < adjTable.to(v); k++) {
+                int u = targets[k];
+                if (inBackbone(u, v) && rootLevel(u, v) < lv || rootLevel(stage.cov[u], v) < lv) {//Case 2.2
+                    selected = u;
+                    break;
+                }
+            }
+            if (selected != -1) {
+                parent = selected;
+                connect(selected, stage.cov[selected], state.getActiveSlot(v), v, 0);
+            } else {
+                parent = stage.parent[v];
+                int grandP = parentOf(parent, v);
+                connect(grandP, stage.cov[grandP], state.getActiveSlot(parent), v, 0);
+                connect(parent, grandP, state.getActiveSlot(v), v, 1);
+            }
+        }
+        state.setParentId(v, parent);
+        state.setRootId(v, rootOf(parent, v));
+        eventRoot[v] = v;
+        eventSub[v] = -1;
+    }
+
+    /**
+     * 与Graph.addToBackBone2相同，由根节点v的连接加入主干的节点记录eventRoot
+     *
+     * @param sub 本次连接中的次序
+     */
+    private void connect(int x, int p, int t, int v, int sub) {
+        if (!inBackbone(x, v)) {
+            state.setParentId(x, p);
+            state.setRootId(x, rootOf(p, v));
+            eventRoot[x] = v;
+            eventSub[x] = sub;
+        }
+        state.addTransSlot(x, t);
+        added[2 * v + sub] = x;
+        addedSlot[2 * v + sub] = t;
+    }
+
+    /**
+     * @return 连接根节点v时，节点x是否已被之前（或v本身）的连接改变
+     */
+    private boolean connected(int x, int v) {
+        int w = eventRoot[x];
+        return w != -1 && (w == v || position[w] < position[v]);
+    }
+
+    private boolean inBackbone(int x, int v) {
+        return stage.isMember(x) || connected(x, v);
+    }
+
+    private int rootOf(int x, int v) {
+        return connected(x, v) ? state.getRootId(x) : stage.root[x];
+    }
+
+    private int parentOf(int x, int v) {
+        return connected(x, v) ? state.getParentId(x) : stage.parent[x];
+    }
+
+    /**
+     * @throws IllegalStateException 节点尚无根节点，与Graph.getRootLevel相同
+     */
+    private int rootLevel(int x, int v) {
+        int root = rootOf(x, v);
+        if (root == -1)
+            throw new IllegalStateException("Node " + x + " has no subtree root");
+        return stage.level[root];
+    }
+
+    /**
+     * 根节点v连接时读取的节点：v、v的邻节点及它们的覆盖节点，v的父节点P，P可能的两个父节点及其覆盖节点
+     *
+     * @return 其中是否有热点
+     */
+    private boolean isAffected(int v) {
+        if (isHot(v) || isHot(stage.cov[v]))
+            return true;
+        for (int k = adjTable.from(v); k < adjTable.to(v); k++)
+            if (isHot(targets[k]) || isHot(stage.cov[targets[k]]))
+                return true;
+        int p = stage.parent[v];
+        return isHot(p) || isGrandParentHot(stage.parent[p])
+                || eventRoot[p] != -1 && isGrandParentHot(state.getParentId(p));
+    }
+
+    private boolean isGrandParentHot(int g) {
+        return g != -1 && (isHot(g) || isHot(stage.cov[g]));
+    }
+
+    private boolean isHot(int x) {
+        return x != -1 && hotMark[x] == epoch;
+    }
+
+    /**
+     * 将x标记为热点，并将连接时可能读取x的根节点加入待检查的队列
+     *
+     * @param after 只加入连接顺序在其之后的根节点，为-1时全部加入
+     */
+    private void markHot(int x, int after) {
+        hotMark[x] = epoch;
+        pushAffected(x, after);
+    }
+
+    /**
+     * 读取x的根节点v在x的两跳以内（x为v、v的邻节点、邻节点的覆盖节点、P或P的父节点），
+     * 或在x覆盖的某个邻节点的两跳以内（x为P的父节点的覆盖节点）
+     */
+    private void pushAffected(int x, int after) {
+        push(x, after);
+        for (int k = adjTable.from(x); k < adjTable.to(x); k++) {
+            int y = targets[k];
+            push(y, after);
+            for (int l = adjTable.from(y); l < adjTable.to(y); l++) {
+                push(targets[l], after);
+                if (stage.cov[y] == x)
+                    for (int m = adjTable.from(targets[l]); m < adjTable.to(targets[l]); m++)
+                        push(targets[m], after);
+            }
+        }
+    }
+
+    private void push(int v, int after) {
+        int p = position[v];
+        if (p <= after || queuedMark[v] == epoch)
+            return;
+        queuedMark[v] = epoch;
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, heapSize << 1);
+        int k = heapSize++;
+        while (k > 0 && heap[(k - 1) >>> 1] > p) {
+            heap[k] = heap[(k - 1) >>> 1];
+            k = (k - 1) >>> 1;
+        }
+        heap[k] = p;
+    }
+
+    private int pollHeap() {
+        int top = heap[0], last = heap[--heapSize], k = 0;
+        while (true) {
+            int c = 2 * k + 1;
+            if (c >= heapSize)
+                break;
+            if (c + 1 < heapSize && heap[c + 1] < heap[c])
+                c++;
+            if (heap[c] >= last)
+                break;
+            heap[k] = heap[c];
+            k = c;
+        }
+        if (heapSize > 0)
+            heap[k] = last;
+        return top;
+    }
+
+    private void markTrans(int x) {
+        if (transMark[x] == epoch)
+            return;
+        transMark[x] = epoch;
+        if (transCount == transList.length)
+            transList = Arrays.copyOf(transList, transCount << 1);
+        transList[transCount++] = x;
+    }
+
+    private void markSet(int x) {
+        if (setMark[x] == epoch)
+            return;
+        setMark[x] = epoch;
+        if (setCount == setList.length)
+            setList = Arrays.copyOf(setList, setCount << 1);
+        setList[setCount++] = x;
+    }
+
+    /**
+     * 节点x的传输时隙为Stage1的传输时隙加上各根节点连接时加入的时隙，后者来自x两跳以内的根节点
+     */
+    private void refreshTransSlots(int x) {
+        copyTransSlots(x);
+        addJoinSlots(x, x);
+        for (int k = adjTable.from(x); k < adjTable.to(x); k++) {
+            int y = targets[k];
+            addJoinSlots(y, x);
+            for (int l = adjTable.from(y); l < adjTable.to(y); l++)
+                addJoinSlots(targets[l], x);
+        }
+    }
+
+    private void copyTransSlots(int x) {
+        state.clearTransSlots(x);
+        for (int w = 0; w < words; w++)
+            for (long word = stage.trans[x * words + w]; word != 0; word &= word - 1)
+                state.addTransSlot(x, (w << 6) + Long.numberOfTrailingZeros(word) - 1);
+    }
+
+    private void addJoinSlots(int w, int x) {
+        if (position[w] < 0)
+            return;
+        if (added[2 * w] == x)
+            state.addTransSlot(x, addedSlot[2 * w]);
+        if (added[2 * w + 1] == x)
+            state.addTransSlot(x, addedSlot[2 * w + 1]);
+    }
+
+    //===================================主干集合===================================
+
+    /**
+     * 按插入序列更新主干集合：容量不变时只重新加入成员或次序改变的桶，否则整体重建
+     */
+    private void updateBackbone(boolean full) {
+        int length = stageLength;
+        for (int k = 0; k < rootCount; k++) {
+            int v = roots[k];
+            for (int j = 0; j < 2; j++) {
+                int x = added[2 * v + j];
+                if (x != -1 && eventRoot[x] == v && eventSub[x] == j && !stage.isMember(x))
+                    sequence[length++] = x;
+            }
+        }
+        int capacity = hashOrder.capacity(sequence, 0, length, null, HashOrder.DEFAULT_CAPACITY);
+        if (full || capacity == -1 || capacity != backboneCapacity) {
+            backbone = new HashSet<>();
+            for (int k = 0; k < length; k++)
+                backbone.add(sequence[k]);
+            backboneCapacity = capacity;
+            System.arraycopy(stage.bits, 0, bits, 0, bits.length);
+            for (int k = stageLength; k < length; k++)
+                bits[sequence[k] >>> 6] |= 1L << sequence[k];
+            return;
+        }
+
+        //先删除各桶的全部成员再按新的次序加入，加入时元素数不超过最终的元素数，不会扩容
+        int[] buckets = new int[setCount];
+        for (int k = 0; k < setCount; k++)
+            buckets[k] = HashOrder.bucket(setList[k], capacity);
+        Arrays.sort(buckets);
+        int distinct = 0;
+        for (int k = 0; k < setCount; k++)
+            if (k == 0 || buckets[k] != buckets[k - 1])
+                buckets[distinct++] = buckets[k];
+        for (int k = 0; k < distinct; k++)
+            for (int x = firstInBucket(buckets[k], capacity); x != -1; x = nextInBucket(x, buckets[k], capacity))
+                if ((bits[x >>> 6] & (1L << x)) != 0) {
+                    backbone.remove(x);
+                    bits[x >>> 6] &= ~(1L << x);
+                }
+        int[] members = new int[16];
+        long[] keys = new long[16];
+        for (int k = 0; k < distinct; k++) {
+            int cnt = 0;
+            for (int x = firstInBucket(buckets[k], capacity); x != -1; x = nextInBucket(x, buckets[k], capacity)) {
+                if (!stage.isMember(x) && eventRoot[x] == -1)
+                    continue;
+                if (cnt == members.length) {
+                    members = Arrays.copyOf(members, cnt << 1);
+                    keys = Arrays.copyOf(keys, cnt << 1);
+                }
+                //Stage1成员按(层, 次序)在前，连接节点按(根节点的连接顺序, 次序)在后
+                keys[cnt] = stage.isMember(x) ? (long) stage.level[x] << 32 | stage.seq[x]
+                        : 1L << 62 | (long) position[eventRoot[x]] << 1 | eventSub[x];
+                members[cnt++] = x;
+            }
+            for (int i = 1; i < cnt; i++)
+                for (int j = i; j > 0 && keys[j] < keys[j - 1]; j--) {
+                    long key = keys[j];
+                    keys[j] = keys[j - 1];
+                    keys[j - 1] = key;
+                    int x = members[j];
+                    members[j] = members[j - 1];
+                    members[j - 1] = x;
+                }
+            for (int i = 0; i < cnt; i++) {
+                backbone.add(members[i]);
+                bits[members[i] >>> 6] |= 1L << members[i];
+            }
+        }
+    }
+
+    /**
+     * 按编号升序遍历容量为capacity时桶b中的节点：for (int x = firstInBucket(b, c); x != -1; x = nextInBucket(x, b, c))
+     * 编号小于65536时桶下标即编号的低位；更大的编号只有低16位受高位影响
+     */
+    private int firstInBucket(int b, int capacity) {
+        return nextInBucket(-1, b, capacity);
+    }
+
+    private int nextInBucket(int x, int b, int capacity) {
+        int mask = capacity - 1, low = mask & 0xFFFF;
+        int hi = x < 0 ? 0 : x >>> 16, lo = x < 0 ? -1 : x & 0xFFFF;
+        for (; (long) hi << 16 < nodeCount; hi++, lo = -1) {
+            if (((hi << 16) & mask & ~0xFFFF) != (b & ~0xFFFF))
+                continue;
+            for (lo = lo < 0 ? (b ^ hi) & low : lo + low + 1; lo <= 0xFFFF; lo += low + 1) {
+                int y = hi << 16 | lo;
+                if (y >= nodeCount)
+                    return -1;
+                if (HashOrder.bucket(y, capacity) == b)
+                    return y;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,114 @@
+package com.noah;
+
+import java.util.Arrays;
+
+/**
+ * 一次广播模拟的结果：各节点的到达时刻、到达时刻的分布以及传输和冗余接收次数
+ */
+public class BroadcastReport {
+    private final int source;//源点编号
+    private final int[] reachTime;//各节点收到消息的时刻，未收到时为-1
+    private final int[] sortedTimes;//除源点外已收到消息的节点的到达时刻，升序排列
+    private final long transmissions;//广播次数，即各节点实际使用的传输时隙数之和
+    private final long redundantReceptions;//冗余接收次数，即节点已持有消息或同时收到多份消息的次数
+
+    public BroadcastReport(int source, int[] reachTime, long transmissions, long redundantReceptions) {
+        this.source = source;
+        this.reachTime = reachTime;
+        this.transmissions = transmissions;
+        this.redundantReceptions = redundantReceptions;
+
+        int cnt = 0;
+        for (int i = 0; i < reachTime.length; i++)
+            if (i != source && reachTime[i] != -1)
+                cnt++;
+        sortedTimes = new int[cnt];
+        cnt = 0;
+        for (int i = 0; i < reachTime.length; i++)
+            if (i != source && reachTime[i] != -1)
+                sortedTimes[cnt++] = reachTime[i];
+        Arrays.sort(sortedTimes);
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * @return 节点id收到消息的时刻，未收到时为-1
+     */
+    public int getReachTime(int id) {
+        return reachTime[id];
+    }
+
+    /**
+     * @return 各节点到达时刻数组的拷贝
+     */
+    public int[] getReachTimes() {
+        return reachTime.clone();
+    }
+
+    /**
+     * @return 除源点外已收到消息的节点数
+     */
+    public int getReachedCount() {
+        return sortedTimes.length;
+    }
+
+    /**
+     * @return 除源点外未收到消息的节点数
+     */
+    public int getUnreachedCount() {
+        return reachTime.length - 1 - sortedTimes.length;
+    }
+
+    /**
+     * 按最近秩法求到达时刻的分位数
+     *
+     * @param p 分位，取值(0, 1]
+     * @return 对应的到达时刻，没有节点收到消息时为-1
+     */
+    public int getPercentile(double p) {
+        if (sortedTimes.length == 0)
+            return -1;
+        int rank = (int) Math.ceil(p * sortedTimes.length);
+        return sortedTimes[Math.min(Math.max(rank, 1), sortedTimes.length) - 1];
+    }
+
+    public int getP50() {
+        return getPercentile(0.5);
+    }
+
+    public int getP99() {
+        return getPercentile(0.99);
+    }
+
+    public int getMax() {
+        return sortedTimes.length == 0 ? -1 : sortedTimes[sortedTimes.length - 1];
+    }
+
+    /**
+     * @return 到达时刻直方图，第t项为在时刻t收到消息的节点数（不含源点）
+     */
+    public int[] getHistogram() {
+        int[] histogram = new int[getMax() + 1];
+        for (int t : sortedTimes)
+            histogram[t]++;
+        return histogram;
+    }
+
+    public long getTransmissions() {
+        return transmissions;
+    }
+
+    public long getRedundantReceptions() {
+        return redundantReceptions;
+    }
+
+    @Override
+    public String toString() {
+        return "p50=" + getP50() + " p99=" + getP99() + " max=" + getMax() +
+                " unreached=" + getUnreachedCount() + " transmissions=" + transmissions +
+                " redundant=" + redundantReceptions;
+    }
+}
@@ -0,0 +1,122 @@
+package com.noah;
+
+import java.util.Arrays;
+
+/**
+ * 基于事件的离散时间广播模拟器
+ * 事件为(到达时间, 节点)，按到达时间从小到大处理，类似Dijkstra算法：
+ * 节点在收到消息后，于其每个传输时隙的下一次出现时广播一次，所有在该时隙活跃的邻节点都能收到消息。
+ * 时刻τ所处的时隙为τ % slotCount；源点在时刻0已持有消息，可以在第一个周期内任一传输时隙广播，
+ * 其他节点只能在收到消息之后的时刻广播。总复杂度为O((N + E) log N)
+ */
+public class BroadcastSimulator {
+    private final SlotIndex slotIndex;
+    private final NodeState nodeState;
+    private final int nodeCount;
+    private final int slotCount;
+
+    public BroadcastSimulator(SlotIndex slotIndex, NodeState nodeState) {
+        this.slotIndex = slotIndex;
+        this.nodeState = nodeState;
+        this.nodeCount = nodeState.getNodeCount();
+        this.slotCount = nodeState.getSlotCount();
+    }
+
+    /**
+     * 按各节点当前的传输时隙集合模拟一次广播
+     *
+     * @param source 源点编号
+     * @return 模拟结果
+     */
+    public BroadcastReport simulate(int source) {
+        int[] reachTime = new int[nodeCount];
+        Arrays.fill(reachTime, -1);
+        boolean[] done = new boolean[nodeCount];
+        int[] neighbors = slotIndex.getNeighbors();
+        long deliveries = 0, transmissions = 0;
+
+        long[] heap = new long[16];
+        int heapSize = 0;
+        reachTime[source] = 0;
+        heap[heapSize++] = event(0, source);
+
+        int u, r, time, w;
+        while (heapSize > 0) {
+            long top = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+            u = (int) top;
+            r = (int) (top >>> 32);
+            if (done[u] || r != reachTime[u])
+                continue;
+            done[u] = true;
+
+            for (int slot = nodeState.nextTransSlot(u, -1); slot != NodeState.NO_SLOT; slot = nodeState.nextTransSlot(u, slot + 1)) {
+                time = sendTime(r, slot, u == source);
+                transmissions++;
+                for (int k = slotIndex.neighborFrom(u, slot); k < slotIndex.neighborTo(u, slot); k++) {
+                    w = neighbors[k];
+                    deliveries++;
+                    if (reachTime[w] == -1 || time < reachTime[w]) {
+                        reachTime[w] = time;
+                        if (heapSize == heap.length)
+                            heap = Arrays.copyOf(heap, heapSize << 1);
+                        heap[heapSize++] = event(time, w);
+                        siftUp(heap, heapSize - 1);
+                    }
+                }
+            }
+        }
+
+        int reached = 0;
+        for (int t : reachTime)
+            if (t != -1)
+                reached++;
+        //每个被覆盖的非源节点只有第一次接收是必要的，其余均为冗余接收
+        return new BroadcastReport(source, reachTime, transmissions, deliveries - (reached - 1));
+    }
+
+    /**
+     * 求节点在时刻r收到消息后，于时隙slot下一次广播的时刻
+     */
+    private int sendTime(int r, int slot, boolean isSource) {
+        int slotPos = r % slotCount;
+        int time = r - slotPos + slot;
+        if (slotPos > slot || slotPos == slot && !isSource)
+            time += slotCount;
+        return time;
+    }
+
+    private static long event(int time, int id) {
+        return ((long) time << 32) | id;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (heap[p] <= key)
+                break;
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0)
+            return;
+        long key = heap[0];
+        int i = 0, half = size >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child])
+                child++;
+            if (key <= heap[child])
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
@@ -0,0 +1,217 @@
+package com.noah;
+
+import java.util.Arrays;
+
+/**
+ * 单时隙贪心覆盖引擎
+ * 每个候选节点维护其尚未被覆盖的活跃邻节点数，并保存在惰性大根堆中；
+ * 每选出一个覆盖节点，只更新与新被覆盖节点相邻的候选节点的计数。
+ * 选择规则与原始贪心算法一致：未覆盖邻节点数最多者优先，数目相同时编号（重新编号的拓扑为原编号）较小者优先
+ * 邻接关系只读不写，节点是否已被覆盖、是否已被选中都用带时间戳的标记数组表示，每次调用无需拷贝或复位。
+ * 工作数组从给定的存储中分配，与堆外的邻接表和时隙索引配合即可在堆外求覆盖（见OffHeapStore）
+ */
+public class CoverEngine {
+    private final SlotIndex slotIndex;//按时隙划分的活跃节点及邻节点索引
+    private final CsrGraph reverseAdj;//反向邻接表，reverseAdj[v]为邻接表中包含v的节点，变换拓扑后邻接关系不再对称
+    private final int[] rank;//编号比较时各节点的次序，即重新编号前的原编号，为null时即为编号本身
+    private final int[] byRank;//rank的逆，byRank[r]为原编号为r的节点
+    private final ArrayStorage storage;
+    private final IntArray count;//count[i]表示节点i在当前时隙尚未被覆盖的活跃邻节点数
+    private final IntArray pendingEpoch;//pendingEpoch[i] == epoch表示节点i是本次调用中尚未被覆盖的活跃节点
+    private final IntArray chosenEpoch;//chosenEpoch[i] == epoch表示节点i在本次调用中已被选为覆盖节点
+    private int epoch;//当前调用的时间戳
+    private final IntArray touched;//计数非零的候选节点，用于建堆
+    private LongArray heap;//大根堆，键值由计数和编号拼接而成
+    private int heapSize;
+    private long heapPops;//累计出堆次数
+    private long neighborEvaluations;//累计检查的邻节点数
+
+    public CoverEngine(CsrGraph adjTable, SlotIndex slotIndex) {
+        this(adjTable, slotIndex, null, null);
+    }
+
+    /**
+     * 重新编号的拓扑上计数相同时按原编号较小者优先，选择结果与原拓扑上的一一对应
+     *
+     * @param rank   rank[i]为节点i的原编号，为null时按编号比较
+     * @param byRank rank的逆
+     */
+    CoverEngine(CsrGraph adjTable, SlotIndex slotIndex, int[] rank, int[] byRank) {
+        this(adjTable, slotIndex, rank, byRank, ArrayStorage.HEAP);
+    }
+
+    /**
+     * @param storage 工作数组从中分配
+     */
+    CoverEngine(CsrGraph adjTable, SlotIndex slotIndex, int[] rank, int[] byRank, ArrayStorage storage) {
+        int nodeCount = adjTable.getNodeCount();
+        this.slotIndex = slotIndex;
+        this.rank = rank;
+        this.byRank = byRank;
+        this.storage = storage;
+        reverseAdj = adjTable.transpose();
+        count = storage.allocInts(nodeCount);
+        pendingEpoch = storage.allocInts(nodeCount);
+        chosenEpoch = storage.allocInts(nodeCount);
+        touched = storage.allocInts(nodeCount);
+        heap = storage.allocLongs(16);
+    }
+
+    /**
+     * 对指定时隙的活跃节点求贪心覆盖
+     *
+     * @param timeSlot  查询的时隙
+     * @param coveredBy 输出参数，coveredBy[v]为覆盖节点v的节点编号，只写入在timeSlot活跃的节点
+     * @return 按选中顺序排列的覆盖节点编号
+     * @throws IllegalStateException 某个活跃节点不在任何节点的邻接表中，无法被覆盖
+     */
+    public int[] cover(int timeSlot, int[] coveredBy) {
+        return cover(timeSlot, IntArray.of(coveredBy));
+    }
+
+    /**
+     * 与cover(int, int[])相同，coveredBy可以保存在堆外
+     */
+    int[] cover(int timeSlot, IntArray coveredBy) {
+        IntArray activeNodes = slotIndex.activeNodes();
+        IntArray neighbors = slotIndex.neighbors();
+        int from = slotIndex.activeFrom(timeSlot), to = slotIndex.activeTo(timeSlot);
+        if (++epoch == Integer.MAX_VALUE) {//时间戳用尽时清空标记数组
+            pendingEpoch.fill(0);
+            chosenEpoch.fill(0);
+            epoch = 1;
+        }
+        int touchedCount = 0, v;
+        for (int i = from; i < to; i++)
+            pendingEpoch.set(activeNodes.get(i), epoch);
+        IntArray reverseTargets = reverseAdj.targets();
+        for (int i = from; i < to; i++)
+            for (int r = reverseAdj.from(v = activeNodes.get(i)), end = reverseAdj.to(v); r < end; r++)
+                if (count.add(reverseTargets.get(r), 1) == 1)
+                    touched.set(touchedCount++, reverseTargets.get(r));
+
+        heapSize = 0;
+        for (int i = 0; i < touchedCount; i++)
+            push(key(count.get(touched.get(i)), touched.get(i)));
+
+        int[] selected = new int[to - from];
+        int selectedCount = 0, remaining = to - from;
+        int x, c, w;
+        long top;
+        while (remaining > 0) {
+            if (heapSize == 0)//剩余的活跃节点都没有能覆盖它们的候选节点
+                throw uncoverable(timeSlot, from, to);
+            heapPops++;
+            top = pop();
+            x = idOf(top);
+            c = countOf(top);
+            if (chosenEpoch.get(x) == epoch)
+                continue;
+            if (c != count.get(x)) {//计数已过期，按当前计数重新入堆
+                if (count.get(x) > 0)
+                    push(key(count.get(x), x));
+                continue;
+            }
+
+            //x即为当前计数最大且编号最小的节点
+            selected[selectedCount++] = x;
+            neighborEvaluations += slotIndex.neighborTo(x, timeSlot) - slotIndex.neighborFrom(x, timeSlot);
+            for (int k = slotIndex.neighborFrom(x, timeSlot), end = slotIndex.neighborTo(x, timeSlot); k < end; k++) {
+                w = neighbors.get(k);
+                if (pendingEpoch.get(w) == epoch) {
+                    pendingEpoch.set(w, 0);
+                    coveredBy.set(w, x);
+                    remaining--;
+                    for (int r = reverseAdj.from(w), rend = reverseAdj.to(w); r < rend; r++)
+                        count.add(reverseTargets.get(r), -1);
+                }
+            }
+            chosenEpoch.set(x, epoch);
+        }
+
+        //所有活跃节点都被覆盖后，每次计数增加都已被对应的减少抵消，count已全部归零
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * 覆盖失败时将剩余活跃节点的候选节点计数归零，使引擎可以继续用于其他时隙，并指出第一个无法被覆盖的节点
+     */
+    private IllegalStateException uncoverable(int timeSlot, int from, int to) {
+        IntArray activeNodes = slotIndex.activeNodes();
+        IntArray reverseTargets = reverseAdj.targets();
+        int node = -1, v;
+        for (int i = from; i < to; i++)
+            if (pendingEpoch.get(v = activeNodes.get(i)) == epoch) {
+                if (node == -1)
+                    node = v;
+                for (int r = reverseAdj.from(v); r < reverseAdj.to(v); r++)
+                    count.set(reverseTargets.get(r), 0);
+            }
+        return new IllegalStateException("Node " + node + " cannot be covered in slot " + timeSlot);
+    }
+
+    /**
+     * @return 本引擎累计的出堆次数，包括过期的项
+     */
+    public long getHeapPops() {
+        return heapPops;
+    }
+
+    /**
+     * @return 本引擎累计检查的邻节点数
+     */
+    public long getNeighborEvaluations() {
+        return neighborEvaluations;
+    }
+
+    /**
+     * 计数越大键值越大；计数相同时编号越小键值越大
+     */
+    private long key(int count, int id) {
+        return ((long) count << 32) | (Integer.MAX_VALUE - (rank == null ? id : rank[id]));
+    }
+
+    private int idOf(long key) {
+        int r = Integer.MAX_VALUE - (int) key;
+        return byRank == null ? r : byRank[r];
+    }
+
+    private static int countOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private void push(long key) {
+        if (heapSize == heap.length()) {//从存储中分配两倍长的堆
+            LongArray grown = storage.allocLongs((long) heapSize << 1);
+            for (int i = 0; i < heapSize; i++)
+                grown.set(i, heap.get(i));
+            heap = grown;
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (heap.get(p) >= key)
+                break;
+            heap.set(i, heap.get(p));
+            i = p;
+        }
+        heap.set(i, key);
+    }
+
+    private long pop() {
+        long result = heap.get(0);
+        long last = heap.get(--heapSize);
+        int i = 0, half = heapSize >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            if (child + 1 < heapSize && heap.get(child + 1) > heap.get(child))
+                child++;
+            if (last >= heap.get(child))
+                break;
+            heap.set(i, heap.get(child));
+            i = child;
+        }
+        heap.set(i, last);
+        return result;
+    }
+}
@@ -0,0 +1,361 @@
+package com.noah;
+
+import java.util.Arrays;
+
+/**
+ * 压缩稀疏行（CSR）格式的只读邻接表
+ * 节点v的邻节点为targets[offsets[v], offsets[v + 1])，按编号升序排列且不重复，
+ * 因此可以用二分查找判断邻接关系。邻接关系可以不对称（如变换拓扑后的图），此时用transpose求反向图。
+ * 邻接表也可以是视图：节点v的邻节点为targets[offsets[v], ends[v])，各段不必相连，可以共享同一个targets数组。
+ * 各算法访问邻节点的顺序另由order给出（见getOrderedTargets），与原实现中HashSet的遍历顺序相同。
+ * 各数组通过IntArray访问，可以保存在堆外（见OffHeapStore），此时不能以int[]取出，只能由targets()等方法访问
+ */
+public class CsrGraph {
+    private final IntArray offsets;
+    private final IntArray ends;//视图中各节点邻节点的结束下标，紧凑的邻接表为null
+    private final IntArray targets;
+    private final int arcCount;
+    private final ArrayStorage storage;//反向图和遍历顺序从中分配，堆外的邻接表由OffHeapStore给出
+    private IntArray order;//与targets对应的各节点邻节点的遍历顺序，按需计算
+    private CsrGraph transpose;//反向图，按需计算，对称图即为自身
+
+    /**
+     * @param offsets 长度为节点数+1的偏移数组
+     * @param targets 各节点的邻节点，每段内须按编号升序排列且不重复
+     */
+    public CsrGraph(int[] offsets, int[] targets) {
+        this(offsets, targets, null);
+    }
+
+    /**
+     * @param order 与targets对应的遍历顺序，每段为targets中同一段的一个排列；为null时按需计算
+     */
+    CsrGraph(int[] offsets, int[] targets, int[] order) {
+        this(IntArray.of(offsets), IntArray.of(targets), order == null ? null : IntArray.of(order), ArrayStorage.HEAP);
+    }
+
+    /**
+     * 由任意存储中的数组建立紧凑的邻接表，参数的含义与CsrGraph(int[], int[], int[])相同
+     *
+     * @param storage 反向图和按需计算的遍历顺序从中分配
+     */
+    CsrGraph(IntArray offsets, IntArray targets, IntArray order, ArrayStorage storage) {
+        this.offsets = offsets;
+        this.ends = null;
+        this.targets = targets;
+        this.arcCount = targets.length();
+        this.order = order;
+        this.storage = storage;
+    }
+
+    private CsrGraph(int[] starts, int[] ends, int[] targets, int[] order) {
+        this.offsets = IntArray.of(starts);
+        this.ends = IntArray.of(ends);
+        this.targets = IntArray.of(targets);
+        this.order = order == null ? null : IntArray.of(order);
+        this.storage = ArrayStorage.HEAP;
+        int cnt = 0;
+        for (int v = 0; v < ends.length; v++)
+            cnt += ends[v] - starts[v];
+        this.arcCount = cnt;
+    }
+
+    /**
+     * 建立邻接表视图，不拷贝targets
+     *
+     * @param starts  各节点的邻节点在targets中的起始下标
+     * @param ends    各节点的邻节点在targets中的结束下标（不含）
+     * @param targets 邻节点数组，每段内须按编号升序排列且不重复
+     * @param order   与targets对应的遍历顺序，为null时按需计算
+     */
+    static CsrGraph view(int[] starts, int[] ends, int[] targets, int[] order) {
+        return new CsrGraph(starts, ends, targets, order);
+    }
+
+    /**
+     * @return 各段紧密相连的邻接表，本身即为紧凑的邻接表时返回自身
+     */
+    public CsrGraph toCompact() {
+        if (ends == null)
+            return this;
+        int nodeCount = getNodeCount();
+        int[] newOffsets = new int[nodeCount + 1];
+        for (int v = 0; v < nodeCount; v++)
+            newOffsets[v + 1] = newOffsets[v] + degree(v);
+        int[] newTargets = new int[newOffsets[nodeCount]];
+        int[] ordered = getOrderedTargets(), newOrder = new int[newTargets.length];
+        for (int v = 0; v < nodeCount; v++) {
+            targets.get(from(v), newTargets, newOffsets[v], degree(v));
+            System.arraycopy(ordered, from(v), newOrder, newOffsets[v], degree(v));
+        }
+        return isSymmetric() ? symmetric(newOffsets, newTargets, newOrder) : new CsrGraph(newOffsets, newTargets, newOrder);
+    }
+
+    /**
+     * 由已知对称的偏移数组和邻节点数组建立邻接表，其反向图即为自身
+     */
+    public static CsrGraph symmetric(int[] offsets, int[] targets) {
+        return symmetric(offsets, targets, null);
+    }
+
+    static CsrGraph symmetric(int[] offsets, int[] targets, int[] order) {
+        CsrGraph graph = new CsrGraph(offsets, targets, order);
+        graph.transpose = graph;
+        return graph;
+    }
+
+    static CsrGraph symmetric(IntArray offsets, IntArray targets, IntArray order, ArrayStorage storage) {
+        CsrGraph graph = new CsrGraph(offsets, targets, order, storage);
+        graph.transpose = graph;
+        return graph;
+    }
+
+    /**
+     * 由无向边列表建立邻接表，重复的边只保留一条
+     * 遍历顺序与原实现逐条读入边并加入两端点的HashSet相同，即各节点的邻节点按首次出现的次序插入默认容量的HashSet
+     *
+     * @param nodeCount 节点数
+     * @param from      各边的一个端点
+     * @param to        各边的另一个端点
+     * @param edgeCount 边数，只使用from和to的前edgeCount项
+     * @return 对称的邻接表
+     */
+    public static CsrGraph fromUndirectedEdges(int nodeCount, int[] from, int[] to, int edgeCount) {
+        int[] offsets = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[from[i] + 1]++;
+            if (from[i] != to[i])
+                offsets[to[i] + 1]++;
+        }
+        for (int v = 0; v < nodeCount; v++)
+            offsets[v + 1] += offsets[v];
+        int[] targets = new int[offsets[nodeCount]];
+        int[] cursor = Arrays.copyOf(offsets, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            targets[cursor[from[i]]++] = to[i];
+            if (from[i] != to[i])
+                targets[cursor[to[i]]++] = from[i];
+        }
+        //compact会打乱各段，先按边的次序求出遍历顺序
+        int[] order = new int[targets.length];
+        int[] stamp = new int[nodeCount];//stamp[u] == v + 1表示u已在v的插入序列中
+        HashOrder hashOrder = new HashOrder();
+        int size = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            int begin = size;
+            for (int k = offsets[v]; k < offsets[v + 1]; k++)
+                if (stamp[targets[k]] != v + 1) {
+                    stamp[targets[k]] = v + 1;
+                    order[size++] = targets[k];
+                }
+            hashOrder.arrange(order, begin, size, null, HashOrder.DEFAULT_CAPACITY);
+        }
+        CsrGraph graph = compact(offsets, targets);
+        graph.order = IntArray.of(size == order.length ? order : Arrays.copyOf(order, size));
+        graph.transpose = graph;
+        return graph;
+    }
+
+    /**
+     * 将每段邻节点排序并去重，返回紧凑的邻接表
+     */
+    static CsrGraph compact(int[] offsets, int[] targets) {
+        int nodeCount = offsets.length - 1;
+        int[] newOffsets = new int[nodeCount + 1];
+        int size = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            int from = offsets[v], to = offsets[v + 1];
+            Arrays.sort(targets, from, to);
+            for (int k = from; k < to; k++)
+                if (k == from || targets[k] != targets[k - 1])
+                    targets[size++] = targets[k];
+            newOffsets[v + 1] = size;
+        }
+        return new CsrGraph(newOffsets, size == targets.length ? targets : Arrays.copyOf(targets, size));
+    }
+
+    /**
+     * 替换部分节点的邻接表，得到新的邻接表，原邻接表不变
+     * 其余节点的邻接表整段拷贝，复杂度为O(N + E)。
+     * 被替换节点的遍历顺序相当于依次将保留的原有邻节点（按原遍历顺序）和新的邻节点（按编号升序）插入默认容量的HashSet
+     *
+     * @param nodeCount 新的节点数，不小于原节点数，新增节点的邻接表为空，除非在nodes中给出
+     * @param nodes     邻接表被替换的节点，互不相同
+     * @param lists     lists[i]为nodes[i]新的邻节点，须按编号升序排列且不重复
+     * @param symmetric 新的邻接关系是否对称
+     */
+    CsrGraph withNeighbors(int nodeCount, int[] nodes, int[][] lists, boolean symmetric) {
+        int oldCount = getNodeCount();
+        int[] replaced = new int[nodeCount];//replaced[v] - 1为v在nodes中的下标，0表示不替换
+        for (int i = 0; i < nodes.length; i++)
+            replaced[nodes[i]] = i + 1;
+        int[] newOffsets = new int[nodeCount + 1];
+        for (int v = 0; v < nodeCount; v++)
+            newOffsets[v + 1] = newOffsets[v] + (replaced[v] != 0 ? lists[replaced[v] - 1].length : v < oldCount ? degree(v) : 0);
+        int[] newTargets = new int[newOffsets[nodeCount]];
+        int[] ordered = getOrderedTargets(), newOrder = new int[newTargets.length];
+        HashOrder hashOrder = new HashOrder();
+        for (int v = 0; v < nodeCount; v++)
+            if (replaced[v] != 0) {
+                int[] list = lists[replaced[v] - 1];
+                System.arraycopy(list, 0, newTargets, newOffsets[v], list.length);
+                int pos = newOffsets[v];
+                if (v < oldCount)
+                    for (int k = from(v); k < to(v); k++)
+                        if (Arrays.binarySearch(list, ordered[k]) >= 0)
+                            newOrder[pos++] = ordered[k];
+                for (int u : list)
+                    if (v >= oldCount || !contains(v, u))
+                        newOrder[pos++] = u;
+                hashOrder.arrange(newOrder, newOffsets[v], pos, null, HashOrder.DEFAULT_CAPACITY);
+            } else if (v < oldCount) {
+                targets.get(from(v), newTargets, newOffsets[v], degree(v));
+                System.arraycopy(ordered, from(v), newOrder, newOffsets[v], degree(v));
+            }
+        return symmetric ? symmetric(newOffsets, newTargets, newOrder) : new CsrGraph(newOffsets, newTargets, newOrder);
+    }
+
+    /**
+     * @return 是否已知邻接关系对称，由无向边建立的邻接表总是对称的
+     */
+    public synchronized boolean isSymmetric() {
+        return transpose == this;
+    }
+
+    public int getNodeCount() {
+        return ends == null ? offsets.length() - 1 : ends.length();
+    }
+
+    /**
+     * @return 邻接表中的总项数，对称图中每条无向边计两次
+     */
+    public int getArcCount() {
+        return arcCount;
+    }
+
+    /**
+     * 偏移数组，长度为节点数+1，调用者不得修改。视图没有偏移数组，需先调用toCompact
+     *
+     * @throws IllegalStateException 邻接表为视图或保存在堆外
+     */
+    public int[] getOffsets() {
+        if (ends != null)
+            throw new IllegalStateException("Adjacency view has no offsets array");
+        return offsets.array();
+    }
+
+    /**
+     * 邻节点数组，与from和to配合使用，调用者不得修改；视图中可能含有不属于任何节点的部分
+     *
+     * @throws IllegalStateException 邻接表保存在堆外
+     */
+    public int[] getTargets() {
+        return targets.array();
+    }
+
+    /**
+     * 与getTargets相同，但邻接表保存在堆外时也可以使用
+     */
+    IntArray targets() {
+        return targets;
+    }
+
+    /**
+     * @return 节点v的邻节点在targets中的起始下标
+     */
+    public int from(int v) {
+        return offsets.get(v);
+    }
+
+    /**
+     * @return 节点v的邻节点在targets中的结束下标（不含）
+     */
+    public int to(int v) {
+        return ends == null ? offsets.get(v + 1) : ends.get(v);
+    }
+
+    public int degree(int v) {
+        return to(v) - offsets.get(v);
+    }
+
+    /**
+     * @return 节点v的邻节点数组的拷贝
+     */
+    public int[] neighbors(int v) {
+        int[] result = new int[degree(v)];
+        targets.get(from(v), result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * 各节点邻节点的遍历顺序，与from和to配合使用，每段为getTargets()中同一段的一个排列，调用者不得修改
+     * BFS和寻找连接节点时按这一顺序访问邻节点并取第一个满足条件者。未在构造时给出的，按各段的邻节点以编号升序
+     * 插入默认容量的HashSet求出，即将拓扑写为文本格式再读入后的顺序
+     *
+     * @throws IllegalStateException 邻接表保存在堆外
+     */
+    public int[] getOrderedTargets() {
+        return orderedTargets().array();
+    }
+
+    /**
+     * 与getOrderedTargets相同，但邻接表保存在堆外时也可以使用，未给出的遍历顺序从邻接表所属的存储中分配
+     */
+    synchronized IntArray orderedTargets() {
+        if (order == null) {
+            IntArray result = storage.allocInts(targets.length());
+            HashOrder hashOrder = new HashOrder();
+            int[] row = new int[0];
+            for (int v = 0, d; v < getNodeCount(); v++) {
+                if (row.length < (d = degree(v)))
+                    row = new int[Math.max(d, row.length << 1)];
+                targets.get(from(v), row, 0, d);
+                hashOrder.arrange(row, 0, d, null, HashOrder.DEFAULT_CAPACITY);
+                result.put(from(v), row, 0, d);
+            }
+            order = result;
+        }
+        return order;
+    }
+
+    /**
+     * 在v的邻接表中二分查找u
+     */
+    public boolean contains(int v, int u) {
+        int lo = from(v), hi = to(v) - 1, mid, x;
+        while (lo <= hi) {
+            mid = (lo + hi) >>> 1;
+            if ((x = targets.get(mid)) < u)
+                lo = mid + 1;
+            else if (x > u)
+                hi = mid - 1;
+            else
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 求反向图，即u在v的邻接表中当且仅当v在反向图中u的邻接表中
+     * 先计数并求前缀和得到各段的末尾，再按编号倒序遍历各节点并从段尾向前填入，填完后reverseOffsets[v]恰好回到段首，各段自然有序。
+     * 反向图从邻接表所属的存储中分配
+     */
+    public synchronized CsrGraph transpose() {
+        if (transpose == null) {
+            int nodeCount = getNodeCount();
+            IntArray reverseOffsets = storage.allocInts(nodeCount + 1);
+            for (int v = 0; v < nodeCount; v++)
+                for (int k = from(v); k < to(v); k++)
+                    reverseOffsets.add(targets.get(k), 1);
+            for (int v = 0, sum = 0; v <= nodeCount; v++)
+                reverseOffsets.set(v, sum += reverseOffsets.get(v));
+            IntArray reverseTargets = storage.allocInts(arcCount);
+            for (int v = nodeCount - 1; v >= 0; v--)
+                for (int k = to(v) - 1; k >= from(v); k--)
+                    reverseTargets.set(reverseOffsets.add(targets.get(k), -1), v);
+            transpose = new CsrGraph(reverseOffsets, reverseTargets, null, storage);
+            transpose.transpose = this;
+        }
+        return transpose;
+    }
+}
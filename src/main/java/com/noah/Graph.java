@@ -1,17 +1,34 @@
 package com.noah;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class Graph {
+    private static final int NO_ROOT = Integer.MIN_VALUE;//rootLevel中表示节点尚无根节点
     private Integer nodeCount;//网络节点数
     private Integer slotCount;//单周期时隙数
     private Integer maxLevel;//图的最大层数
-    private Node[] nodeList;//节点集合，编号为0的节点表示Source，其活跃时隙取-1
-    private List<Set<Integer>> adjTable;//描述图拓扑结构的邻接表，adjTable(i)表示编号为i的邻接点编号集合
-    private Set<Integer> backbone;//广播骨架节点编号集合
+    private NodeState nodeState;//各节点的状态，编号为0的节点表示Source，其活跃时隙取-1
+    private CsrGraph adjTable;//描述图拓扑结构的邻接表，adjTable中节点i的邻节点即编号为i的邻接点编号集合
+    private Set<Integer> backbone;//广播骨架节点编号集合，重新编号的拓扑保存各节点的原编号
+    private long[] backboneBits;//广播骨架成员的位图，与backbone同步维护，用于连接子树时的成员判断
+    private int[] rootLevel;//连接子树时各节点所在子树根节点的层，随根节点的改变同步更新，无根节点时为NO_ROOT
     private Boolean isLBAS;//根据该值使用不同的算法
+    private SlotIndex slotIndex;//按活跃时隙划分的节点索引，随拓扑一同建立
+    private Boolean isParallel;//是否并行计算各时隙的覆盖节点
+    private Topology topology;//原始拓扑，增量修改拓扑时随之更新
+    private LevelIndex levelIndex;//各节点的层和BFS得到的默认父节点，拓扑修改后增量更新
+    private int[] coveredBy;//最近一次计算的各节点的覆盖节点
+    private int[][] slotCovers;//最近一次计算的各时隙按选中顺序排列的覆盖节点
+    private Boolean isRepairable;//当前广播主干是否为原始拓扑上的LBAS主干，只有此时才能增量修复
+    private BackboneRepair backboneRepair;//增量修复的中间结果，第一次修复时建立，重新计算LBAS主干后作废
+    private PhaseMetrics metrics;//各阶段的计时与计数，为null时不记录
+    private int hotspotBorder = -1, radius = 1;//最近一次变换拓扑使用的热点区域边界与广播半径，未变换时为-1与1
+    private int[] rank;//比较编号时各节点的次序，即重新编号前的原编号；拓扑未重新编号时为null，即编号本身
+    private int[] byRank;//rank的逆，byRank[r]为原编号为r的节点
 
     /**
      * 无参构造方法使用resource中的拓扑
@@ -20,140 +37,174 @@ public class Graph {
         backbone = new HashSet<>();
         maxLevel = 0;
         isLBAS = true;
-        manuallyInit(false);
+        isParallel = false;
+        manuallyInit();
     }
 
     /**
-     * 含参构造方法使用autoInit自动生成拓扑
+     * 含参构造方法使用autoInit自动生成拓扑，以当前时间为种子
      *
      * @param nodeNum           边数
      * @param slotNum           时隙数
      * @param additionalEdgeNum 在保证图连通性的基础上额外增加的边数
      */
     private Graph(int nodeNum, int slotNum, int additionalEdgeNum) {
+        this(nodeNum, slotNum, additionalEdgeNum, System.currentTimeMillis());
+    }
+
+    /**
+     * 以指定种子自动生成拓扑，相同的种子总是生成相同的拓扑
+     *
+     * @param nodeNum           边数
+     * @param slotNum           时隙数
+     * @param additionalEdgeNum 在保证图连通性的基础上额外增加的边数
+     * @param seed              随机数种子
+     */
+    private Graph(int nodeNum, int slotNum, int additionalEdgeNum, long seed) {
         backbone = new HashSet<>();
         maxLevel = 0;
         isLBAS = true;
-        autoInit(nodeNum, slotNum, additionalEdgeNum);
-        manuallyInit(true);
+        isParallel = false;
+        autoInit(nodeNum, slotNum, additionalEdgeNum, seed);
+    }
+
+    /**
+     * 使用内存中已有的拓扑，不经过文件
+     */
+    Graph(Topology topology) {
+        this(topology, false);
+    }
+
+    /**
+     * 使用内存中已有的拓扑，拓扑只读共享，节点状态为本图独有
+     *
+     * @param parallel 是否并行计算各时隙的覆盖节点
+     */
+    Graph(Topology topology, boolean parallel) {
+        this(topology, parallel, null);
+    }
+
+    /**
+     * @param metrics 记录各阶段耗时与计数的对象，为null时不记录
+     */
+    Graph(Topology topology, boolean parallel, PhaseMetrics metrics) {
+        this.metrics = metrics;
+        backbone = new HashSet<>();
+        maxLevel = 0;
+        isLBAS = true;
+        isParallel = parallel;
+        init(topology);
     }
 
     /**
      * 利用BFS计算各节点的层
      */
-    private void calNodeLevel() {
-        int peek;
-        boolean[] visited = new boolean[nodeCount];
-        Queue<Integer> queue = new LinkedList<>();
-
-        nodeList[0].setLevel(0);//源点的层为0
-        visited[0] = true;
-        queue.offer(0);
-        while (!queue.isEmpty()) {
-            peek = queue.poll();
-            for (Integer i : adjTable.get(peek))
-                if (!visited[i]) {
-                    visited[i] = true;
-                    nodeList[i].setParentId(peek);//为每个节点设置初始的父节点
-                    nodeList[i].setLevel(nodeList[peek].getLevel() + 1);
-                    if (nodeList[i].getLevel() > maxLevel)//计算出图的最大层数
-                        maxLevel = nodeList[i].getLevel();
-                    queue.offer(i);
-                }
+    void calNodeLevel() {
+        long[] mark = metrics != null ? metrics.begin() : null;
+        if (levelIndex == null)
+            levelIndex = new LevelIndex();
+        levelIndex.compute(adjTable, isParallel);
+        for (int i = 0; i < nodeCount; i++) {
+            nodeState.setLevel(i, levelIndex.getLevel(i));
+            if (levelIndex.getParent(i) != -1)
+                nodeState.setParentId(i, levelIndex.getParent(i));//为每个节点设置初始的父节点
         }
+        if (levelIndex.getMaxLevel() > maxLevel)//计算出图的最大层数
+            maxLevel = levelIndex.getMaxLevel();
+        if (metrics != null)
+            metrics.end(PhaseMetrics.Phase.LEVELS, mark);
     }
 
     /**
-     * 获得活跃时隙为timeSlot的节点集合
-     *
-     * @param timeSlot 查询的时隙
-     * @return 对应的节点集合
+     * 设置记录各阶段耗时与计数的对象，为null时不记录
      */
-    private Set<Node> getActiveSlotNodeSet(int timeSlot) {
-        Set<Node> nodeSet = new HashSet<>();
-        for (Node n : nodeList)
-            if (n.getActiveSlot().equals(timeSlot))
-                nodeSet.add(n);
-        return nodeSet;
+    void setMetrics(PhaseMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
-     * 获得节点在指定时隙的邻节点集合
+     * 计算所有时隙的覆盖节点
+     * 各时隙的活跃节点互不相交，引擎只写入coveredBy中对应时隙的活跃节点，因此各时隙可以并行计算，
+     * 每个工作线程使用独立的覆盖引擎，按时隙编号交错分配任务
      *
-     * @param id       所选节点的编号
-     * @param timeSlot 查询的时隙
-     * @return 对应的节点集合
+     * @param coveredBy 输出参数，coveredBy[v]为覆盖节点v的节点编号
+     * @return 第i项为第i个时隙按选中顺序排列的覆盖节点编号
      */
-    private Set<Node> getNeighborsAtSlot(int id, int timeSlot, List<Set<Integer>> tempAdjTable) {
-        Set<Node> nodeSet = getActiveSlotNodeSet(timeSlot);
-        return nodeSet.stream().filter(node -> tempAdjTable.get(id).contains(node.getId())).collect(Collectors.toSet());
-//        if (isLBAS)
-//            return nodeSet.stream().filter(node -> tempAdjTable.get(id).contains(node.getId())).collect(Collectors.toSet());
-//        else
-//            return nodeSet.stream().filter(node -> tempAdjTable.get(id).contains(node.getId())).filter(node -> node.getLevel() - nodeList[id].getLevel() > -2).collect(Collectors.toSet());
+    int[][] calSlotCovers(int[] coveredBy) {
+        int[][] selected = new int[slotCount][];
+        if (isParallel && slotCount > 1) {
+            int workers = Math.min(slotCount, Runtime.getRuntime().availableProcessors());
+            adjTable.transpose();//先求出反向图，供各线程的覆盖引擎共享
+            IntStream.range(0, workers).parallel().forEach(w -> {
+                CoverEngine engine = new CoverEngine(adjTable, slotIndex, rank, byRank);
+                for (int i = w; i < slotCount; i += workers)
+                    selected[i] = engine.cover(i, coveredBy);
+                recordCoverCounts(engine);
+            });
+        } else {
+            CoverEngine engine = new CoverEngine(adjTable, slotIndex, rank, byRank);
+            for (int i = 0; i < slotCount; i++)
+                selected[i] = engine.cover(i, coveredBy);
+            recordCoverCounts(engine);
+        }
+        if (metrics != null) {
+            long rounds = 0;
+            for (int[] s : selected)
+                rounds += s.length;
+            metrics.add(PhaseMetrics.Counter.COVER_ROUNDS, rounds);
+        }
+        return selected;
+    }
+
+    private void recordCoverCounts(CoverEngine engine) {
+        if (metrics != null) {
+            metrics.add(PhaseMetrics.Counter.HEAP_POPS, engine.getHeapPops());
+            metrics.add(PhaseMetrics.Counter.NEIGHBOR_EVALUATIONS, engine.getNeighborEvaluations());
+        }
     }
 
     /**
-     * 获得时隙为timeSlot的覆盖节点集合
+     * 获得时隙为timeSlot的覆盖节点集合，并将覆盖结果写入各节点的状态
+     * 写入节点状态的操作不是线程安全的，需要按时隙顺序依次调用
      *
-     * @param timeSlot 查询的时隙
+     * @param timeSlot  查询的时隙
+     * @param selected  当前时隙按选中顺序排列的覆盖节点编号
+     * @param coveredBy coveredBy[v]为覆盖节点v的节点编号
      * @return 对应的节点集合
      */
-    private Set<Node> getCoveringSlotNodeSet(int timeSlot) {
-        //拷贝邻接表，防止修改邻接关系时影响全局的邻接表
-        List<Set<Integer>> tempAdjTable = new ArrayList<>();
-        for (int i = 0; i < nodeCount; i++)
-            tempAdjTable.add(new HashSet<>(adjTable.get(i)));
-
-        Set<Node> Ci = new HashSet<>();
-        Set<Integer> S = new HashSet<>();
-        Set<Node> P = getActiveSlotNodeSet(timeSlot);
-        for (int i = 0; i < nodeCount; i++)//源点不会被覆盖，但可以覆盖其他节点
-            S.add(i);
-
-        int selectedId, maxArg;
-        Set<Node> Niv;
-        while (!P.isEmpty()) {
-            selectedId = -1;
-            maxArg = 0;
-            for (Integer i : S)
-                //若selectedId未初始化，或新节点在当前时隙的邻节点数大于原节点，
-                //或新节点在当前时隙的邻节点数等于原节点但编号比原节点小，更新selectedId
-                if (selectedId == -1 || getNeighborsAtSlot(i, timeSlot, tempAdjTable).size() > maxArg || getNeighborsAtSlot(i, timeSlot, tempAdjTable).size() == maxArg && i < selectedId) {
-                    selectedId = i;
-                    maxArg = getNeighborsAtSlot(selectedId, timeSlot, tempAdjTable).size();
-                }
-            Niv = getNeighborsAtSlot(selectedId, timeSlot, tempAdjTable);
-            Ci.add(nodeList[selectedId]);//将当前选中的节点加入集合
-            S.remove(selectedId);//将本次选中的节点从节点集合中移除
-            P.removeAll(Niv);//将本次选中节点的邻节点从当前时隙活跃节点集合中移除
-            for (Set<Integer> set : tempAdjTable) //修改邻接表，将当前选中节点的覆盖节点从其他节点的邻接表中移除
-                for (Node n : Niv)
-                    set.remove(n.getId());
-            for (Node n : Niv) {//设置被覆盖节点的CovNode和选中节点的覆盖集合
-                n.setCovNodeId(selectedId);
-                nodeList[selectedId].getCoveringSet().add(n);
-            }
-            nodeList[selectedId].getTransSet().add(timeSlot);//将当前时隙加入选中节点的传输时隙集合
+    Set<NodeView> getCoveringSlotNodeSet(int timeSlot, int[] selected, int[] coveredBy) {
+        Set<NodeView> Ci = new HashSet<>();
+        for (int id : selected) {
+            Ci.add(nodeState.getNode(id));
+            nodeState.addTransSlot(id, timeSlot);//将当前时隙加入选中节点的传输时隙集合
         }
+        int[] activeNodes = slotIndex.getActiveNodes();
+        for (int i = slotIndex.activeFrom(timeSlot); i < slotIndex.activeTo(timeSlot); i++)//设置被覆盖节点的CovNode，覆盖集合随之更新
+            nodeState.setCovNodeId(activeNodes[i], coveredBy[activeNodes[i]]);
 
         return Ci;
     }
 
     /**
-     * 获得指定层的覆盖节点集合，需要在计算完所有时隙的覆盖节点后才能调用
+     * 将所有覆盖节点按所在层分组，需要在计算完所有时隙的覆盖节点后才能调用
      *
-     * @param level 指定的层数
-     * @return 对应的节点集合
+     * @param levelOffsets 输出参数，长度为maxLevel + 2，第l层的覆盖节点为返回值中[levelOffsets[l], levelOffsets[l + 1])的部分
+     * @return 按(层, 编号)升序排列的覆盖节点编号
      */
-    private Set<Node> getLevelBasedSet(int level) {
-        Set<Node> nodeSet = new HashSet<>();
-
-        //用节点的覆盖集合是否非空判断其是否是覆盖节点，用节点所在层判断是否需要加入返回值集合
+    private int[] getLevelBasedNodes(int[] levelOffsets) {
+        //用节点的覆盖集合是否非空判断其是否是覆盖节点，按所在层计数排序
+        Arrays.fill(levelOffsets, 0);
         for (int i = 0; i < nodeCount; i++)
-            if (nodeList[i].getLevel() == level && !nodeList[i].getCoveringSet().isEmpty())
-                nodeSet.add(nodeList[i]);
-        return nodeSet;
+            if (nodeState.getCoveringCount(i) > 0)
+                levelOffsets[nodeState.getLevel(i) + 1]++;
+        for (int l = 0; l <= maxLevel; l++)
+            levelOffsets[l + 1] += levelOffsets[l];
+        int[] nodes = new int[levelOffsets[maxLevel + 1]];
+        int[] cursor = Arrays.copyOf(levelOffsets, maxLevel + 1);
+        for (int r = 0, i; r < nodeCount; r++)
+            if (nodeState.getCoveringCount(i = idOf(r)) > 0)
+                nodes[cursor[nodeState.getLevel(i)]++] = i;
+        return nodes;
     }
 
     /**
@@ -163,79 +214,104 @@ public class Graph {
      * @param uId 可能存在的v的前驱
      */
     private void addToBackBone(int vId, int uId) {
-        backbone.add(vId);
+        markBackbone(vId);
         if (uId != -1) {
             if (vId != uId) {
-                nodeList[vId].setParentId(uId);
-                nodeList[vId].setRootId(nodeList[uId].getRootId());
+                nodeState.setParentId(vId, uId);
+                nodeState.setRootId(vId, nodeState.getRootId(uId));
             }
         } else
-            nodeList[vId].setRootId(vId);
+            nodeState.setRootId(vId, vId);
     }
 
     /**
      * 自上而下遍历，将各覆盖节点加入广播主干，并建立数棵覆盖子树
      * 在使用了calNodeLevel后才能使用
      */
-    private void constructSubTrees() {
+    void constructSubTrees() {
         //建立子树前需要重新计算各节点的Level，因为transformTopology更改了网络拓扑，同样也改变了各节点的Level
         calNodeLevel();
 
         //列表中第i个集合对应第i个时隙的覆盖节点集合
         //同时可以计算各节点的覆盖节点
-        List<Set<Node>> coveringNodeSetList = new ArrayList<>();
+        long[] mark = metrics != null ? metrics.begin() : null;
+        coveredBy = new int[nodeCount];
+        slotCovers = calSlotCovers(coveredBy);
+        List<Set<NodeView>> coveringNodeSetList = new ArrayList<>();
         for (int i = 0; i < slotCount; i++)
-            coveringNodeSetList.add(getCoveringSlotNodeSet(i));
-        Node u;
-        Set<Node> Sl;
+            coveringNodeSetList.add(getCoveringSlotNodeSet(i, slotCovers[i], coveredBy));
+        if (metrics != null) {
+            metrics.end(PhaseMetrics.Phase.COVERS, mark);
+            mark = metrics.begin();
+        }
+        buildSubTrees();
+        if (metrics != null)
+            metrics.end(PhaseMetrics.Phase.SUBTREES, mark);
+    }
+
+    /**
+     * 由各节点的层和覆盖节点建立数棵覆盖子树，是constructSubTrees中覆盖节点计算完成后的部分
+     */
+    private void buildSubTrees() {
+        int u, v;
+
+        //位图由当前的backbone重建，之后与backbone同步维护
+        backboneBits = new long[(nodeCount + 63) >>> 6];
+        for (int key : backbone)
+            backboneBits[idOf(key) >>> 6] |= 1L << idOf(key);
 
         addToBackBone(0, -1);//将源点加入广播骨架
-        nodeList[0].setCovNodeId(0);
-        nodeList[0].setRootId(0);
-
-        //遍历所有层的覆盖节点集合
-        for (int i = 1; i <= maxLevel; i++) {
-            Sl = getLevelBasedSet(i);
-            for (Node v : Sl)
-                if (v.getRootId().intValue() != v.getId().intValue()) {
-                    u = nodeList[v.getCovNodeId()];
-                    if (u.getLevel().intValue() < v.getLevel().intValue())//Case 1.1
-                        addToBackBone(v.getId(), u.getId());
-                    else if (u.getLevel().intValue() == v.getLevel().intValue()) {
-                        if (u.getRootId() == -1) {
-                            if (v.getId().intValue() == u.getCovNodeId().intValue()) {//Case 1.2 & Case 1.3
+        nodeState.setCovNodeId(0, 0);
+        nodeState.setRootId(0, 0);
+
+        //遍历所有层的覆盖节点集合，同层节点按编号升序处理
+        int[] levelOffsets = new int[maxLevel + 2];
+        int[] Sl = getLevelBasedNodes(levelOffsets);
+        for (int i = 1; i <= maxLevel; i++)
+            for (int k = levelOffsets[i]; k < levelOffsets[i + 1]; k++) {
+                v = Sl[k];
+                if (nodeState.getRootId(v) != v) {
+                    u = nodeState.getCovNodeId(v);
+                    if (nodeState.getLevel(u) < nodeState.getLevel(v))//Case 1.1
+                        addToBackBone(v, u);
+                    else if (nodeState.getLevel(u) == nodeState.getLevel(v)) {
+                        if (nodeState.getRootId(u) == -1) {
+                            if (v == nodeState.getCovNodeId(u)) {//Case 1.2 & Case 1.3
                                 //选择具有更多邻节点的那个作为新的根；若邻节点数相同，选择Id较小的
-                                if (adjTable.get(v.getId()).size() > adjTable.get(u.getId()).size())
+                                if (adjTable.degree(v) > adjTable.degree(u))
+                                    u = v;
+                                else if (adjTable.degree(v) == adjTable.degree(u) && keyOf(v) < keyOf(u))
                                     u = v;
-                                else if (adjTable.get(v.getId()).size() == adjTable.get(u.getId()).size())
-                                    u = (u.getId() < v.getId()) ? u : v;
                             }
-                            u.setRootId(u.getId());
-                            addToBackBone(u.getId(), -1);
+                            nodeState.setRootId(u, u);
+                            addToBackBone(u, -1);
                         }
-                        addToBackBone(v.getId(), u.getId());
+                        addToBackBone(v, u);
                     } else
-                        addToBackBone(v.getId(), -1);
+                        addToBackBone(v, -1);
                 }
-        }
+            }
     }
 
     /**
      * 完成Stage1后，调用此方法获得所有的覆盖子树的根节点
      *
-     * @return 根节点列表，按所在层数由低到高排列
-     */
-    private List<Node> getRootNodes() {
-        List<Node> nodes = new ArrayList<>();
-        for (Integer i : backbone)
-            if (nodeList[i].getRootId().equals(i) && i != 0)//不需要加入source
-                nodes.add(nodeList[i]);
-        Collections.sort(nodes, new Comparator<Node>() {
-            @Override
-            public int compare(Node o1, Node o2) {
-                return o2.getLevel().compareTo(o1.getLevel());
+     * @return 根节点编号，按所在层数由高到低排列，同层节点保持在backbone中的遍历顺序
+     */
+    private int[] getRootNodes() {
+        int[] levelCount = new int[maxLevel + 2];
+        int cnt = 0;
+        for (int key : backbone)
+            if (nodeState.getRootId(idOf(key)) == idOf(key) && idOf(key) != 0) {//不需要加入source
+                levelCount[maxLevel - nodeState.getLevel(idOf(key)) + 1]++;
+                cnt++;
             }
-        });
+        for (int l = 0; l <= maxLevel; l++)
+            levelCount[l + 1] += levelCount[l];
+        int[] nodes = new int[cnt];
+        for (int key : backbone)
+            if (nodeState.getRootId(idOf(key)) == idOf(key) && idOf(key) != 0)
+                nodes[levelCount[maxLevel - nodeState.getLevel(idOf(key))]++] = idOf(key);
         return nodes;
     }
 
@@ -247,62 +323,129 @@ public class Graph {
      * @param t   节点x新增的传输时隙
      */
     private void addToBackBone2(int xId, int pId, int t) {
-        if (!backbone.contains(xId)) {
-            backbone.add(xId);
-            nodeList[xId].setParentId(pId);
-            nodeList[xId].setRootId(nodeList[pId].getRootId());
+        if (!inBackbone(xId)) {
+            markBackbone(xId);
+            nodeState.setParentId(xId, pId);
+            setRoot(xId, nodeState.getRootId(pId));
         }
-        nodeList[xId].getTransSet().add(t);
+        nodeState.addTransSlot(xId, t);
+    }
+
+    private boolean inBackbone(int id) {
+        return (backboneBits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    private void markBackbone(int id) {
+        backbone.add(keyOf(id));
+        backboneBits[id >>> 6] |= 1L << id;
+    }
+
+    /**
+     * backbone中保存的键：重新编号的拓扑保存原编号，集合的遍历顺序与原拓扑上的相同
+     */
+    private int keyOf(int id) {
+        return rank == null ? id : rank[id];
+    }
+
+    private int idOf(int key) {
+        return byRank == null ? key : byRank[key];
+    }
+
+    /**
+     * 连接子树前由各节点的根节点计算rootLevel
+     */
+    private void initRootLevels() {
+        if (rootLevel == null || rootLevel.length != nodeCount)
+            rootLevel = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int root = nodeState.getRootId(i);
+            rootLevel[i] = root == -1 ? NO_ROOT : nodeState.getLevel(root);
+        }
+    }
+
+    /**
+     * 连接子树时设置节点的根节点，同时更新rootLevel
+     */
+    private void setRoot(int id, int root) {
+        nodeState.setRootId(id, root);
+        rootLevel[id] = root == -1 ? NO_ROOT : nodeState.getLevel(root);
+    }
+
+    /**
+     * @return 节点id所在子树根节点的层
+     * @throws IllegalStateException 节点尚无根节点，即之前的某个根节点未能找到连接节点
+     */
+    private int getRootLevel(int id) {
+        int lv = rootLevel[id];
+        if (lv == NO_ROOT)
+            throw new IllegalStateException("Node " + id + " has no subtree root");
+        return lv;
     }
 
     /**
      * 自下而上遍历所有覆盖子树根节点，并将各子树连接，完成XXXXX广播主干
      */
-    private void finalizeXXXXXBackbone() {
+    void finalizeXXXXXBackbone() {
         constructSubTrees();
-        List<Node> rootNodes = getRootNodes();
-        int covRoot, selectedU = -1;
-        Set<Integer> Nv, Nu;
-
-        for (Node v : rootNodes) {
-            covRoot = nodeList[v.getCovNodeId()].getRootId();
-            if (nodeList[covRoot].getLevel().intValue() < v.getLevel().intValue())//Case 2.1
-                v.setParentId(v.getCovNodeId());
+        long[] mark = metrics != null ? metrics.begin() : null;
+        int probes = 0, twoHopSearches = 0;
+        initRootLevels();
+        int[] rootNodes = getRootNodes();
+        int selectedU = -1, u, c, lv;
+        int[] targets = adjTable.getOrderedTargets();//按遍历顺序寻找连接节点
+
+        //变换后的拓扑可能不对称，用反向图标记能到达v和u的节点，代替在邻接表中二分查找
+        CsrGraph reverse = adjTable.transpose();
+        int[] sources = reverse.getTargets();
+        int[] reachesV = new int[nodeCount], reachesU = new int[nodeCount];//值为目标节点编号+1时表示可以到达该节点
+
+        for (int v : rootNodes) {
+            lv = nodeState.getLevel(v);
+            if (getRootLevel(nodeState.getCovNodeId(v)) < lv)//Case 2.1
+                nodeState.setParentId(v, nodeState.getCovNodeId(v));
             else {
-                Nv = adjTable.get(v.getId());
-                for (Integer u : Nv) {
+                for (int k = reverse.from(v); k < reverse.to(v); k++)
+                    reachesV[sources[k]] = v + 1;
+                for (int k = adjTable.from(v); k < adjTable.to(v); k++) {
+                    u = targets[k];
                     //Case 2.2 在v的邻节点中选择，其满足以下条件之一：
                     //1. 已经在主干中，且其根节点所在层比v低
                     //2. 覆盖它的节点所在子树的根节点所在层比v低
                     //3. 该节点可以到达v***
-                    if (adjTable.get(u).contains(v.getId()))
-                        if (backbone.contains(u) && nodeList[nodeList[u].getRootId()].getLevel() < v.getLevel() ||
-                                nodeList[nodeList[nodeList[u].getCovNodeId()].getRootId()].getLevel() < v.getLevel()) {//某root未找到connector，将root设置为了covered node的默认root -1，而另一root被该root cover，遍历到另一root时exception
+                    probes++;
+                    if (reachesV[u] == v + 1)
+                        if (inBackbone(u) && getRootLevel(u) < lv ||
+                                getRootLevel(nodeState.getCovNodeId(u)) < lv) {//某root未找到connector，将root设置为了covered node的默认root -1，而另一root被该root cover，遍历到另一root时exception
                             selectedU = u;
                             break;
                         }
                 }
                 if (selectedU != -1) {
-                    v.setParentId(selectedU);
-                    addToBackBone2(selectedU, nodeList[selectedU].getCovNodeId(), v.getActiveSlot());
+                    nodeState.setParentId(v, selectedU);
+                    addToBackBone2(selectedU, nodeState.getCovNodeId(selectedU), nodeState.getActiveSlot(v));
                     selectedU = -1;
                 } else {
                     //增加回路检查
                     //寻找一个connector u，u有一个邻居c，且Cov(c)的level比v的小
                     //P(v)=u P(u)=c P(c)=Cov(c)
+                    twoHopSearches++;
                     boolean flag = false;
-                    for (Integer u : Nv) {
-                        Nu = adjTable.get(u);
-                        if (!Nu.contains(v.getId()))//|| nodeList[u].getLevel() >= v.getLevel()
+                    for (int k = adjTable.from(v); k < adjTable.to(v); k++) {
+                        u = targets[k];
+                        if (reachesV[u] != v + 1)//|| nodeState.getLevel(u) >= nodeState.getLevel(v)
                             continue;
-                        for (Integer c : Nu) {
-                            if (!adjTable.get(c).contains(u) || c.equals(v.getId()))//|| nodeList[c].getLevel() >= nodeList[u].getLevel()
+                        for (int l = reverse.from(u); l < reverse.to(u); l++)
+                            reachesU[sources[l]] = u + 1;
+                        for (int l = adjTable.from(u); l < adjTable.to(u); l++) {
+                            c = targets[l];
+                            probes++;
+                            if (reachesU[c] != u + 1 || c == v)//|| nodeState.getLevel(c) >= nodeState.getLevel(u)
                                 continue;
-                            if (!nodeList[c].getCoveringSet().isEmpty() && nodeList[nodeList[c].getRootId()].getLevel() < v.getLevel() ||
-                                    nodeList[nodeList[nodeList[c].getCovNodeId()].getRootId()].getLevel() < v.getLevel()) {
-                                addToBackBone2(c, nodeList[c].getCovNodeId(), nodeList[u].getActiveSlot());
-                                addToBackBone2(u, c, v.getActiveSlot());
-                                v.setParentId(u);
+                            if (nodeState.getCoveringCount(c) > 0 && getRootLevel(c) < lv ||
+                                    getRootLevel(nodeState.getCovNodeId(c)) < lv) {
+                                addToBackBone2(c, nodeState.getCovNodeId(c), nodeState.getActiveSlot(u));
+                                addToBackBone2(u, c, nodeState.getActiveSlot(v));
+                                nodeState.setParentId(v, u);
                                 flag = true;
                                 break;
                             }
@@ -312,169 +455,391 @@ public class Graph {
                     }
                 }
             }
-            v.setRootId(nodeList[v.getParentId()].getRootId());
+            setRoot(v, nodeState.getRootId(nodeState.getParentId(v)));
+        }
+        if (metrics != null) {
+            metrics.add(PhaseMetrics.Counter.ROOTS, rootNodes.length);
+            metrics.add(PhaseMetrics.Counter.CONNECTOR_PROBES, probes);
+            metrics.add(PhaseMetrics.Counter.TWO_HOP_SEARCHES, twoHopSearches);
+            metrics.end(PhaseMetrics.Phase.CONNECT, mark);
         }
     }
 
     /**
      * 自下而上遍历所有覆盖子树根节点，并将各子树连接，完成LBAS广播主干
      */
-    private void finalizeLBASBackbone() {
+    void finalizeLBASBackbone() {
         constructSubTrees();
-        List<Node> rootNodes = getRootNodes();
-        int covRoot, selectedU = -1;
+        connectLBASSubTrees();
+        isRepairable = adjTable == topology.getAdjTable() && adjTable.isSymmetric() && rank == null;
+        backboneRepair = null;
+    }
+
+    /**
+     * 自下而上连接各覆盖子树，是finalizeLBASBackbone中建立子树后的部分
+     */
+    private void connectLBASSubTrees() {
+        long[] mark = metrics != null ? metrics.begin() : null;
+        int probes = 0, fallbacks = 0;
+        initRootLevels();
+        int[] rootNodes = getRootNodes();
+        int selectedU = -1, u, lv;
         int P, grandP;
-        Set<Integer> Nv;
+        int[] targets = adjTable.getOrderedTargets();//按遍历顺序寻找连接节点
 
-        for (Node v : rootNodes) {
-            covRoot = nodeList[v.getCovNodeId()].getRootId();
-            if (nodeList[covRoot].getLevel().intValue() < v.getLevel().intValue())//Case 2.1
-                v.setParentId(v.getCovNodeId());
+        for (int v : rootNodes) {
+            lv = nodeState.getLevel(v);
+            if (getRootLevel(nodeState.getCovNodeId(v)) < lv)//Case 2.1
+                nodeState.setParentId(v, nodeState.getCovNodeId(v));
             else {
-                Nv = adjTable.get(v.getId());
-                for (Integer u : Nv) {
+                for (int k = adjTable.from(v); k < adjTable.to(v); k++) {
+                    u = targets[k];
                     //Case 2.2 在v的邻节点中选择，其满足以下条件之一：
                     //1. 已经在主干中，且其根节点所在层比v低
                     //2. 覆盖它的节点所在子树的根节点所在层比v低
-                    if (backbone.contains(u) && nodeList[nodeList[u].getRootId()].getLevel() < v.getLevel() ||
-                            nodeList[nodeList[nodeList[u].getCovNodeId()].getRootId()].getLevel() < v.getLevel()) {
+                    probes++;
+                    if (inBackbone(u) && getRootLevel(u) < lv ||
+                            getRootLevel(nodeState.getCovNodeId(u)) < lv) {
                         selectedU = u;
                         break;
                     }
                 }
                 if (selectedU != -1) {
-                    v.setParentId(selectedU);
-                    addToBackBone2(selectedU, nodeList[selectedU].getCovNodeId(), v.getActiveSlot());
+                    nodeState.setParentId(v, selectedU);
+                    addToBackBone2(selectedU, nodeState.getCovNodeId(selectedU), nodeState.getActiveSlot(v));
                     selectedU = -1;
                 } else {
-                    P = v.getParentId();
-                    grandP = nodeList[P].getParentId();
-                    addToBackBone2(grandP, nodeList[grandP].getCovNodeId(), nodeList[P].getActiveSlot());
-                    addToBackBone2(P, grandP, v.getActiveSlot());
+                    fallbacks++;
+                    P = nodeState.getParentId(v);
+                    grandP = nodeState.getParentId(P);
+                    addToBackBone2(grandP, nodeState.getCovNodeId(grandP), nodeState.getActiveSlot(P));
+                    addToBackBone2(P, grandP, nodeState.getActiveSlot(v));
                 }
             }
-            v.setRootId(nodeList[v.getParentId()].getRootId());
+            setRoot(v, nodeState.getRootId(nodeState.getParentId(v)));
+        }
+        if (metrics != null) {
+            metrics.add(PhaseMetrics.Counter.ROOTS, rootNodes.length);
+            metrics.add(PhaseMetrics.Counter.CONNECTOR_PROBES, probes);
+            metrics.add(PhaseMetrics.Counter.GRANDPARENT_FALLBACKS, fallbacks);
+            metrics.end(PhaseMetrics.Phase.CONNECT, mark);
         }
     }
 
-//=====================================模拟结果测试函数========================================
+//=====================================增量修改拓扑========================================
+//以下方法在原始拓扑上调用finalizeLBASBackbone后才能使用，每次修改后广播主干与在新拓扑上完全重建的结果一致
+//修改后图须保持连通，否则抛出IllegalArgumentException且拓扑和广播主干保持不变
+//节点删除后编号保持不变，成为没有邻节点且不在任何时隙活跃的节点
 
     /**
-     * 手动输入拓扑
+     * 加入一个新节点并修复广播主干
+     *
+     * @param activeSlot 新节点的活跃时隙
+     * @param neighbors  新节点的邻节点，至少一个
+     * @return 新节点的编号，即原节点数
      */
-    private void manuallyInit(boolean isAuto) {
-        try {
-            String fileName = "./src/main/resources/test_data(auto).txt";
-            if (isAuto)
-                fileName = "./src/main/resources/test_data(auto).txt";
-            Scanner sc = new Scanner(new FileInputStream(fileName));
+    int addNode(int activeSlot, int[] neighbors) {
+        checkRepairable();
+        checkSlot(activeSlot);
+        int[] list = neighbors.clone();
+        Arrays.sort(list);
+        if (list.length == 0)
+            throw new IllegalArgumentException("New node must have at least one neighbor");
+        for (int k = 0; k < list.length; k++) {
+            checkNode(list[k]);
+            if (k > 0 && list[k] == list[k - 1])
+                throw new IllegalArgumentException("Duplicate neighbor: " + list[k]);
+        }
+
+        //新节点的编号最大，追加到各邻节点的列表末尾即保持有序
+        int id = nodeCount;
+        boolean[] touchedSlots = new boolean[slotCount];
+        touchedSlots[activeSlot] = true;
+        int[] nodes = Arrays.copyOf(list, list.length + 1);
+        int[][] lists = new int[list.length + 1][];
+        for (int k = 0; k < list.length; k++) {
+            lists[k] = Arrays.copyOf(adjTable.neighbors(list[k]), adjTable.degree(list[k]) + 1);
+            lists[k][lists[k].length - 1] = id;
+            markSlot(touchedSlots, list[k]);
+        }
+        nodes[list.length] = id;
+        lists[list.length] = list;
+
+        int[] slots = Arrays.copyOf(topology.getActiveSlots(), id + 1);
+        slots[id] = activeSlot;
+        int[] ends = new int[list.length];
+        Arrays.fill(ends, id);
+        repairLBASBackbone(new Topology(slotCount, slots, adjTable.withNeighbors(id + 1, nodes, lists, true)),
+                ends, list, true, touchedSlots);
+        return id;
+    }
+
+    /**
+     * 删除一个节点并修复广播主干
+     *
+     * @param id 被删除的节点，不能是源点
+     */
+    void removeNode(int id) {
+        checkRepairable();
+        checkNode(id);
+        if (id == 0)
+            throw new IllegalArgumentException("Source cannot be removed");
+
+        boolean[] touchedSlots = new boolean[slotCount];
+        markSlot(touchedSlots, id);
+        int[] list = adjTable.neighbors(id);
+        int[] nodes = Arrays.copyOf(list, list.length + 1);
+        int[][] lists = new int[list.length + 1][];
+        for (int k = 0; k < list.length; k++) {
+            lists[k] = removeSorted(adjTable.neighbors(list[k]), id);
+            markSlot(touchedSlots, list[k]);
+        }
+        nodes[list.length] = id;
+        lists[list.length] = new int[0];
+
+        int[] slots = topology.getActiveSlots();
+        slots[id] = -1;
+        int[] ends = new int[list.length];
+        Arrays.fill(ends, id);
+        repairLBASBackbone(new Topology(slotCount, slots, adjTable.withNeighbors(nodeCount, nodes, lists, true)),
+                ends, list, false, touchedSlots);
+    }
+
+    /**
+     * 加入一条边并修复广播主干
+     */
+    void addEdge(int u, int v) {
+        checkRepairable();
+        checkNode(u);
+        checkNode(v);
+        if (u == v || adjTable.contains(u, v))
+            throw new IllegalArgumentException("Edge cannot be added: " + u + " " + v);
+        changeEdge(u, v, insertSorted(adjTable.neighbors(u), v), insertSorted(adjTable.neighbors(v), u), true);
+    }
+
+    /**
+     * 删除一条边并修复广播主干
+     */
+    void removeEdge(int u, int v) {
+        checkRepairable();
+        checkNode(u);
+        checkNode(v);
+        if (!adjTable.contains(u, v))
+            throw new IllegalArgumentException("Edge does not exist: " + u + " " + v);
+        changeEdge(u, v, removeSorted(adjTable.neighbors(u), v), removeSorted(adjTable.neighbors(v), u), false);
+    }
+
+    /**
+     * 替换边(u, v)两个端点的邻接表并修复广播主干，只有两端点的活跃时隙的覆盖节点可能改变
+     */
+    private void changeEdge(int u, int v, int[] uList, int[] vList, boolean inserted) {
+        boolean[] touchedSlots = new boolean[slotCount];
+        markSlot(touchedSlots, u);
+        markSlot(touchedSlots, v);
+        repairLBASBackbone(new Topology(slotCount, topology.getActiveSlots(),
+                adjTable.withNeighbors(nodeCount, new int[]{u, v}, new int[][]{uList, vList}, true)),
+                new int[]{u}, new int[]{v}, inserted, touchedSlots);
+    }
+
+    /**
+     * 修改一个节点的活跃时隙并修复广播主干，各节点的层不变，只有新旧两个时隙的覆盖节点可能改变
+     */
+    void changeActiveSlot(int id, int activeSlot) {
+        checkRepairable();
+        checkNode(id);
+        checkSlot(activeSlot);
+        if (id == 0)
+            throw new IllegalArgumentException("Active slot of the source cannot be changed");
+        if (topology.getActiveSlot(id) == activeSlot)
+            return;
+
+        boolean[] touchedSlots = new boolean[slotCount];
+        markSlot(touchedSlots, id);
+        touchedSlots[activeSlot] = true;
+        int[] slots = topology.getActiveSlots();
+        slots[id] = activeSlot;
+        repairLBASBackbone(new Topology(slotCount, slots, adjTable), new int[0], new int[0], true, touchedSlots);
+    }
 
-            //输入节点数和时隙数
-            nodeCount = sc.nextInt();
-            slotCount = sc.nextInt();
+    /**
+     * 使用修改后的拓扑并修复LBAS广播主干：只更新层或默认父节点改变的节点，只重新计算受影响时隙的覆盖节点，
+     * 再由BackboneRepair在基本类型数组上重放建立子树，只重新连接受影响的子树根节点
+     *
+     * @param newTopology  修改后的拓扑
+     * @param us           被插入或删除的各边的一个端点
+     * @param vs           被插入或删除的各边的另一个端点
+     * @param inserted     边是被插入还是被删除
+     * @param touchedSlots 覆盖节点需要重新计算的时隙
+     */
+    private void repairLBASBackbone(Topology newTopology, int[] us, int[] vs, boolean inserted, boolean[] touchedSlots) {
+        Topology oldTopology = topology;
+        applyTopology(newTopology);
+        levelIndex.update(adjTable, us, vs, inserted);
+        if (levelIndex.getReachedCount() < liveNodeCount()) {//修改使图不再连通，恢复原拓扑，节点状态和广播主干尚未改变
+            applyTopology(oldTopology);
+            levelIndex.update(adjTable, us, vs, !inserted);
+            throw new IllegalArgumentException("Change would disconnect the graph");
+        }
+
+        if (coveredBy.length != nodeCount)
+            coveredBy = Arrays.copyOf(coveredBy, nodeCount);
+        CoverEngine engine = new CoverEngine(adjTable, slotIndex);
+        for (int t = 0; t < slotCount; t++)
+            if (touchedSlots[t])
+                slotCovers[t] = engine.cover(t, coveredBy);
+        if (backboneRepair == null)
+            backboneRepair = new BackboneRepair(slotCount);
+        backbone = backboneRepair.repair(adjTable, levelIndex, slotIndex, slotCovers, coveredBy, nodeState, us, vs);
+        backboneBits = backboneRepair.getBackboneBits();
+        maxLevel = levelIndex.getMaxLevel();
+    }
+
+    /**
+     * @return 未被删除的节点数，包括源点
+     */
+    private int liveNodeCount() {
+        int cnt = 1;
+        for (int i = 1; i < nodeCount; i++)
+            if (topology.getActiveSlot(i) != -1)
+                cnt++;
+        return cnt;
+    }
 
-            //初始化节点列表和邻接表
-            nodeList = new Node[nodeCount];
-            adjTable = new ArrayList<>();
+    /**
+     * 使用修改后的拓扑，节点数改变时重建节点状态并保留原有节点的状态
+     */
+    private void applyTopology(Topology topology) {
+        int oldCount = nodeCount;
+        this.topology = topology;
+        nodeCount = topology.getNodeCount();
+        adjTable = topology.getAdjTable();
+        if (nodeCount != oldCount) {
+            NodeState old = nodeState;
+            nodeState = new NodeState(topology.getActiveSlots(), slotCount);
+            for (int i = 0; i < Math.min(oldCount, nodeCount); i++)
+                nodeState.copyState(old, i);
+        } else
             for (int i = 0; i < nodeCount; i++)
-                adjTable.add(new HashSet<>());
+                nodeState.setActiveSlot(i, topology.getActiveSlot(i));
+        buildSlotIndex();
+    }
 
-            //输入各节点的编号及活跃时隙
-            int id, activeSlot;
-            for (int i = 0; i < nodeCount; i++) {
-                id = sc.nextInt();
-                activeSlot = sc.nextInt();
-                nodeList[id] = new Node(id, activeSlot);
-            }
+    private void checkRepairable() {
+        if (!isRepairable)
+            throw new IllegalStateException("Incremental repair requires an LBAS backbone on the original topology");
+    }
 
-            //输入图的拓扑结构
-            int s, e, eNum;
-            eNum = sc.nextInt();//图的边数
-            for (int i = 0; i < eNum; i++) {
-                s = sc.nextInt();
-                e = sc.nextInt();
-                adjTable.get(s).add(e);
-                adjTable.get(e).add(s);
-            }
+    private void checkNode(int id) {
+        if (id < 0 || id >= nodeCount)
+            throw new IllegalArgumentException("Node does not exist: " + id);
+        if (id != 0 && topology.getActiveSlot(id) == -1)
+            throw new IllegalArgumentException("Node has been removed: " + id);
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= slotCount)
+            throw new IllegalArgumentException("Active slot out of range: " + slot);
+    }
+
+    private void markSlot(boolean[] touchedSlots, int id) {
+        if (nodeState.getActiveSlot(id) >= 0)
+            touchedSlots[nodeState.getActiveSlot(id)] = true;
+    }
+
+    static int[] insertSorted(int[] a, int x) {
+        int pos = -Arrays.binarySearch(a, x) - 1;
+        int[] result = new int[a.length + 1];
+        System.arraycopy(a, 0, result, 0, pos);
+        result[pos] = x;
+        System.arraycopy(a, pos, result, pos + 1, a.length - pos);
+        return result;
+    }
 
-        } catch (FileNotFoundException e) {
+    static int[] removeSorted(int[] a, int x) {
+        int pos = Arrays.binarySearch(a, x);
+        int[] result = new int[a.length - 1];
+        System.arraycopy(a, 0, result, 0, pos);
+        System.arraycopy(a, pos + 1, result, pos, a.length - pos - 1);
+        return result;
+    }
+
+//=====================================模拟结果测试函数========================================
+
+    /**
+     * 手动输入拓扑，文本格式和二进制格式的拓扑文件均可
+     */
+    private void manuallyInit() {
+        try {
+            String fileName = "./src/main/resources/test_data(auto).txt";
+            init(TopologyIO.read(Paths.get(fileName)));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * 随机生成图的拓扑结构并写入文件（基于LBAS的一跳模型）
+     * 随机生成图的拓扑结构（基于LBAS的一跳模型），并写入文件以便用无参构造方法复现
+     * 直接使用生成的拓扑，与TopologyGenerator、SweepRunner在同一种子下得到的拓扑相同；写出的文本文件保留邻节点的遍历顺序，
+     * 遍历顺序不能用文本格式表示时改为写出二进制格式，无参构造方法按文件头识别
      *
      * @param nodeNum           需要生成的节点数
      * @param slotNum           当前图每个周期中的时隙数
      * @param additionalEdgeNum 额外生成的边数
+     * @param seed              随机数种子
      */
-    private void autoInit(int nodeNum, int slotNum, int additionalEdgeNum) {
-        Random random = new Random(System.currentTimeMillis());
-        String fileName = "./src/main/resources/test_data(auto).txt";
+    private void autoInit(int nodeNum, int slotNum, int additionalEdgeNum, long seed) {
+        Topology topology = new TopologyGenerator(seed).randomTree(nodeNum, slotNum, additionalEdgeNum);
+        Path path = Paths.get("./src/main/resources/test_data(auto).txt");
         try {
-            FileWriter fw = new FileWriter(fileName);
-
-            fw.write(nodeNum + "\n");//写入节点数
-            fw.write(slotNum + "\n");//写入时隙数
-            fw.write("0 -1\n");//写入sink
-            for (int i = 1; i < nodeNum; i++)
-                fw.write(i + " " + random.nextInt(slotNum) + "\n");//依次写入各节点的active slot
-            fw.write((nodeNum - 1 + additionalEdgeNum) + "\n");//写入边数
-
-            //为了保证图的连通性，首先随机创建一颗生成树
-            Set<Integer> U = new HashSet<>();//U中保存了已加入生成树的节点
-            Set<Integer> V = new HashSet<>();//V中保存了未加入生成树的节点
-            U.add(0);//为U指定一个初始节点
-            for (int i = 1; i < nodeNum; i++)
-                V.add(i);
-
-            List<Set<Integer>> adjTable = new ArrayList<>();
-            for (int i = 0; i < nodeNum; i++)
-                adjTable.add(new HashSet<>());
-
-            int s, e;
-            while (!V.isEmpty()) {
-                s = (int) U.toArray()[random.nextInt(U.size())];//从U中随机取一个节点
-                e = (int) V.toArray()[random.nextInt(V.size())];//从V中随机取一个节点
-                V.remove(e);
-                U.add(e);
-                adjTable.get(s).add(e);
-                adjTable.get(e).add(s);
-                fw.write(s + " " + e + "\n");//写入一条边
-            }
-
-            //额外生成additionalEdge条边
-            for (int i = 0; i < additionalEdgeNum; i++) {
-                do {
-                    s = random.nextInt(nodeNum);
-                    e = random.nextInt(nodeNum);
-                } while (s == e || adjTable.get(s).contains(e));//当生成的起点和终点相同，或边已存在，则重新生成起点和终点
-                adjTable.get(s).add(e);
-                adjTable.get(e).add(s);
-                fw.write(s + " " + e + (i == additionalEdgeNum - 1 ? "" : "\n"));//写入一条边
+            try {
+                TopologyIO.writeText(topology, path);
+            } catch (IllegalArgumentException e) {
+                TopologyIO.writeBinary(topology, path);
             }
-
-            fw.flush();
-            fw.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
+        init(topology);
+    }
+
+    /**
+     * 由拓扑初始化节点状态、邻接表和时隙索引
+     */
+    private void init(Topology topology) {
+        this.topology = topology;
+        isRepairable = false;
+        nodeCount = topology.getNodeCount();
+        slotCount = topology.getSlotCount();
+        nodeState = new NodeState(topology.getActiveSlots(), slotCount);
+        adjTable = topology.getAdjTable();
+        rank = topology.getOriginalIds();
+        byRank = null;
+        if (rank != null) {
+            byRank = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++)
+                byRank[rank[i]] = i;
+        }
+        buildSlotIndex();
+    }
+
+    /**
+     * 根据当前的邻接表和各节点的活跃时隙建立时隙索引，载入或变换拓扑后都需要调用
+     */
+    private void buildSlotIndex() {
+        int[] activeSlot = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+            activeSlot[i] = nodeState.getActiveSlot(i);
+        slotIndex = new SlotIndex(slotCount, activeSlot, adjTable);
     }
 
     /**
      * 原图计算完成后，调用变换拓扑函数前，需要调用该函数初始化各节点的所有数据结构
      */
-    private void initState() {
+    void initState() {
         maxLevel = 0;
-        backbone.clear();
-        for (int i = 0; i < nodeCount; i++) {
-            nodeList[i].setParentId(-1);
-            nodeList[i].setRootId(-1);
-            nodeList[i].setCovNodeId(-1);
-            nodeList[i].getTransSet().clear();
-            nodeList[i].getCoveringSet().clear();
-        }
+        backbone.clear();//清空而不是新建，沿用已扩容的集合，连续计算LBAS与XXXXX时主干的遍历顺序与原实现一致
+        isRepairable = false;
+        nodeState.reset();
     }
 
     /**
@@ -482,9 +847,52 @@ public class Graph {
      *
      * @param hotspotBorder 热点区域Level边界，从0开始计数
      */
-    private void transformTopology(int hotspotBorder) {
+    void transformTopology(int hotspotBorder) {
+        transformTopology(hotspotBorder, 2);
+    }
+
+    /**
+     * 变换拓扑结构，将Level大于hotspotBorder的节点的广播半径扩大为radius跳
+     *
+     * @param hotspotBorder 热点区域Level边界，从0开始计数
+     * @param radius        热点区域外节点的广播半径
+     */
+    void transformTopology(int hotspotBorder, int radius) {
+        long[] mark = metrics != null ? metrics.begin() : null;
+        prepareTransform(hotspotBorder, radius);
+        adjTable = RadiusExpansion.expand(adjTable, rank, i -> nodeState.getLevel(i) > hotspotBorder, radius, isParallel);
+        buildSlotIndex();
+        if (metrics != null)
+            metrics.end(PhaseMetrics.Phase.TRANSFORM, mark);
+    }
+
+    /**
+     * 使用预先扩展好的邻域变换拓扑结构，扫描多个hotspotBorder时每次只需O(N)建立邻接表视图
+     * 变换前先恢复为expansion的原始拓扑，因此可以在同一个图上依次以不同的hotspotBorder调用
+     *
+     * @param expansion     在原始拓扑上建立的半径扩展
+     * @param hotspotBorder 热点区域Level边界，从0开始计数
+     */
+    void transformTopology(RadiusExpansion expansion, int hotspotBorder) {
+        if (expansion.getKeys() != rank)
+            throw new IllegalArgumentException("Expansion was not built on this topology, create it with RadiusExpansion(Topology, int, boolean)");
+        long[] mark = metrics != null ? metrics.begin() : null;
+        adjTable = expansion.getBase();
+        prepareTransform(hotspotBorder, expansion.getRadius());
+        adjTable = expansion.view(i -> nodeState.getLevel(i) > hotspotBorder);
+        buildSlotIndex();
+        if (metrics != null)
+            metrics.end(PhaseMetrics.Phase.TRANSFORM, mark);
+    }
+
+    /**
+     * 变换拓扑前初始化各节点的数据结构，并在原拓扑上计算各节点的Level
+     */
+    private void prepareTransform(int hotspotBorder, int radius) {
         //初始化各节点的所有数据结构
         initState();
+        this.hotspotBorder = hotspotBorder;
+        this.radius = radius;
         calNodeLevel();
         isLBAS = false;
 
@@ -494,22 +902,6 @@ public class Graph {
             } catch (Exception e) {
                 e.printStackTrace();
             }
-
-        List<Set<Integer>> tempAdjTable = new ArrayList<>();
-        for (int i = 0; i < nodeCount; i++)
-            tempAdjTable.add(new HashSet<>(adjTable.get(i)));
-        Set<Integer> curNeighbors;
-
-        for (int i = 0; i < nodeCount; i++) {
-            curNeighbors = adjTable.get(i);
-            if (nodeList[i].getLevel() > hotspotBorder) {
-                for (Integer j : curNeighbors)
-                    tempAdjTable.get(i).addAll(adjTable.get(j));
-                tempAdjTable.get(i).remove(i);
-            }
-        }
-
-        adjTable = tempAdjTable;
     }
 
 
@@ -518,25 +910,39 @@ public class Graph {
      *
      * @return 传输次数之和
      */
-    private int calTotalTrans() {
+    int calTotalTrans() {
         int cnt = 0;
-        for (Integer i : backbone)
-            cnt += nodeList[i].getTransSet().size();
+        for (int key : backbone)
+            cnt += nodeState.getTransSlotCount(idOf(key));
         return cnt;
     }
 
     /**
-     * 求广播主干中给定节点的子节点集合
+     * 由主干节点建立子节点索引，同一父节点的子节点与原实现getChildSet的遍历顺序相同：
+     * 按members的顺序（即backbone集合的遍历顺序）插入默认容量的HashSet
+     * 先按父节点计数并求前缀和得到各段的末尾，再倒序遍历members从段尾向前填入，填完后childOffsets[p]恰好回到段首
      *
-     * @param id 给定的节点id
-     * @return 子节点id集合
+     * @param members      主干节点，按backbone集合的遍历顺序排列
+     * @param rank         各节点的原编号，未重新编号时为null
+     * @param childOffsets 输出参数，长度为nodeCount + 1，节点p的子节点为返回值中[childOffsets[p], childOffsets[p + 1])的部分
+     * @return 按父节点编号分段的子节点编号
      */
-    private Set<Integer> getChildSet(int id) {
-        Set<Integer> childSet = new HashSet<>();
-        for (Integer i : backbone)
-            if (nodeList[i].getParentId() == id)
-                childSet.add(i);
-        return childSet;
+    static int[] childIndex(NodeState nodeState, int[] members, int[] rank, IntArray childOffsets) {
+        int nodeCount = nodeState.getNodeCount(), p;
+        childOffsets.fill(0);
+        for (int i : members)
+            if ((p = nodeState.getParentId(i)) != -1)
+                childOffsets.add(p, 1);
+        for (int i = 0, sum = 0; i <= nodeCount; i++)
+            childOffsets.set(i, sum += childOffsets.get(i));
+        int[] children = new int[childOffsets.get(nodeCount)];
+        for (int k = members.length - 1; k >= 0; k--)
+            if ((p = nodeState.getParentId(members[k])) != -1)
+                children[childOffsets.add(p, -1)] = members[k];
+        HashOrder hashOrder = new HashOrder();
+        for (int i = 0; i < nodeCount; i++)
+            hashOrder.arrange(children, childOffsets.get(i), childOffsets.get(i + 1), rank, HashOrder.DEFAULT_CAPACITY);
+        return children;
     }
 
     /**
@@ -544,54 +950,89 @@ public class Graph {
      *
      * @return 本次广播所花费的总时隙
      */
-    private int calTransDelay() {
-        int[] reachTime = new int[nodeCount];
-        for (int i = 0; i < reachTime.length; i++)
-            reachTime[i] = 0x3f3f3f3f;//初始化每个节点的到达时间为INF
-
-        int currentNode, currentTime, maxTime = -1;
-        Set<Integer> childSet, neighborSet;
-        Queue<Integer> queue = new LinkedList<>();
-        reachTime[0] = 0;//源节点的到达时间为0
-        queue.offer(0);
+    int calTransDelay() {
+        long[] mark = metrics != null ? metrics.begin() : null;
+        int[] members = new int[backbone.size()];
+        int cnt = 0;
+        for (int key : backbone)
+            members[cnt++] = idOf(key);
+        int maxTime = calTransDelay(nodeState, slotIndex, members, rank, IntArray.of(new int[nodeCount]), IntArray.of(new int[nodeCount + 1]));
+        if (metrics != null)
+            metrics.end(PhaseMetrics.Phase.DELAY, mark);
+        return maxTime;
+    }
 
-        while (!queue.isEmpty()) {
-            currentNode = queue.poll();
-            childSet = getChildSet(currentNode);
-            neighborSet = adjTable.get(currentNode);
+    /**
+     * 从源点出发沿广播主干按层次遍历，同一父节点的子节点按原实现中子节点集合的遍历顺序入队，每个主干节点只处理一次
+     * 节点状态、时隙索引和工作数组可以保存在任意存储中，堆上的Graph和OffHeapStore共用这一实现
+     *
+     * @param members      主干节点，按backbone集合的遍历顺序排列
+     * @param rank         各节点的原编号，未重新编号时为null
+     * @param reachTime    工作数组，长度为节点数
+     * @param childOffsets 工作数组，长度为节点数+1
+     * @return 本次广播所花费的总时隙
+     */
+    static int calTransDelay(NodeState nodeState, SlotIndex slotIndex, int[] members, int[] rank, IntArray reachTime, IntArray childOffsets) {
+        int nodeCount = nodeState.getNodeCount(), slotCount = nodeState.getSlotCount();
+        reachTime.fill(0x3f3f3f3f);//初始化每个节点的到达时间为INF
+
+        int currentNode, currentReach, neighborId, currentTime, maxTime = -1, slot, time;
+        IntArray neighbors = slotIndex.neighbors();
+        int[] children = childIndex(nodeState, members, rank, childOffsets);
+        int[] queue = new int[children.length + 1];
+        int head = 0, tail = 0;
+        reachTime.set(0, 0);//源节点的到达时间为0
+        queue[tail++] = 0;
+
+        while (head < tail) {
+            currentNode = queue[head++];
+            currentReach = reachTime.get(currentNode);
 
             //当某节点在某个自己的传输时隙中广播时，注意到其邻节点中所有在当前时隙活跃的节点都能接收到信息，而不只是其覆盖节点
-            for (Integer slot : nodeList[currentNode].getTransSet())
-                for (Integer neighborId : neighborSet)
-                    if (nodeList[neighborId].getActiveSlot().intValue() == slot) {
-                        currentTime = reachTime[currentNode] + slot - reachTime[currentNode] % slotCount;
-                        if (reachTime[currentNode] % slotCount >= slot) {
-                            currentTime += slotCount;
-                            if (currentNode == 0)
-                                currentTime -= slotCount;
-                        }
-                        if (reachTime[neighborId] > currentTime)
-                            reachTime[neighborId] = currentTime;
-                    }
+            for (slot = nodeState.nextTransSlot(currentNode, -1); slot != NodeState.NO_SLOT; slot = nodeState.nextTransSlot(currentNode, slot + 1)) {
+                currentTime = currentReach + slot - currentReach % slotCount;
+                if (currentReach % slotCount >= slot) {
+                    currentTime += slotCount;
+                    if (currentNode == 0)
+                        currentTime -= slotCount;
+                }
+                for (int k = slotIndex.neighborFrom(currentNode, slot), end = slotIndex.neighborTo(currentNode, slot); k < end; k++) {
+                    neighborId = neighbors.get(k);
+                    if (reachTime.get(neighborId) > currentTime)
+                        reachTime.set(neighborId, currentTime);
+                }
+            }
 
-            for (Integer childId : childSet)
-                queue.offer(childId);
+            for (int k = childOffsets.get(currentNode); k < childOffsets.get(currentNode + 1); k++)
+                queue[tail++] = children[k];
         }
 
-        for (int time : reachTime)
-            if (time > maxTime && time != 0x3f3f3f3f)
+        for (int i = 0; i < nodeCount; i++)
+            if ((time = reachTime.get(i)) > maxTime && time != 0x3f3f3f3f)
                 maxTime = time;//本断点可查看消息传送到各节点的时间
 
-//        System.out.println();
-//        System.out.println("Id\tReachTime");
-//        for (int i = 0; i < reachTime.length; i++)
-//            System.out.println(i + "\t" + reachTime[i]);
-
         return maxTime;
     }
 
+    /**
+     * 将当前的广播主干及各节点状态交给调度结果，在调用finalizeBackbone后才能使用
+     * 节点状态的所有权随之转移，此后不得再修改本图
+     *
+     * @param hotspotBorder 变换拓扑使用的热点区域边界，LBAS为-1
+     * @param radius        热点区域外节点的广播半径，LBAS为1
+     */
+    Schedule toSchedule(int hotspotBorder, int radius) {
+        int[] members = new int[backbone.size()];
+        int cnt = 0;
+        for (int key : backbone)
+            members[cnt++] = idOf(key);//保持集合的遍历顺序，调度结果据此重现时延计算中子节点的顺序
+        return new Schedule(isLBAS ? Schedule.Algorithm.LBAS : Schedule.Algorithm.XXXXX, hotspotBorder, radius, topology,
+                adjTable, slotIndex, nodeState, members, calTransDelay(), calTotalTrans());
+    }
+
     /**
      * 输出当前拓扑各计算过程的详细信息
+     * 主干与各节点的信息由ScheduleExporter以CSV格式流式写出，调用后本图的节点状态归调度结果所有，不应再使用本图
      */
     private void getDetailedInfo() {
         if (isLBAS)
@@ -599,36 +1040,37 @@ public class Graph {
         else
             finalizeXXXXXBackbone();
 
-        System.out.println();
-        System.out.println("Id\tAdjTable");
-        for (Node n : nodeList) {
-            System.out.println(n.getId() + "\t" + adjTable.get(n.getId()));
-        }
-
-        System.out.println();
-        System.out.println("Backbone:");
-        System.out.println("Id\tParent\tTransSet\tCoveringSet");
-        for (Integer i : backbone) {
-            System.out.print(i + "\t" + nodeList[i].getParentId() + "\t" + nodeList[i].getTransSet() + "\t[");
-            for (Node n : nodeList[i].getCoveringSet())
-                System.out.print(n.getId() + ",");
-            System.out.println("]");
-        }
-
-        System.out.println();
-        System.out.println("All:");
-        System.out.println("Id\tParent\tLevel\tCovNodeId\tTransSet\tCoveringSet");
-        for (int i = 0; i < nodeCount; i++) {
-            System.out.print(i + "\t" + nodeList[i].getParentId() + "\t" + nodeList[i].getLevel() + "\t" + nodeList[i].getCovNodeId() + "\t" + nodeList[i].getTransSet() + "\t[");
-            for (Node n : nodeList[i].getCoveringSet())
-                System.out.print(n.getId() + ",");
-            System.out.println("]");
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            StringBuilder sb = new StringBuilder();
+            out.write("\nId\tAdjTable\n");
+            int[] targets = adjTable.getOrderedTargets();
+            for (int i = 0; i < nodeCount; i++) {
+                sb.setLength(0);
+                sb.append(i).append('\t');
+                for (int k = adjTable.from(i); k < adjTable.to(i); k++)
+                    sb.append(k == adjTable.from(i) ? "" : " ").append(targets[k]);
+                out.append(sb).append('\n');
+            }
+            out.flush();
+
+            Schedule schedule = isLBAS ? toSchedule(-1, 1) : toSchedule(hotspotBorder, radius);
+            System.out.println();
+            System.out.println("Backbone:");
+            new ScheduleExporter(schedule).backboneOnly(true).export(ScheduleExporter.Format.CSV, System.out);
+
+            System.out.println();
+            System.out.println("All:");
+            new ScheduleExporter(schedule).export(ScheduleExporter.Format.CSV, System.out);
+
+            System.out.println();
+            System.out.println("TransDelay: " + schedule.getTransDelay() + " slots");
+            System.out.println("Total Transmission: " + schedule.getTotalTrans() + " times");
+            System.out.println("Simulation: " + schedule.simulate(0));
+            System.out.println();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-
-        System.out.println();
-        System.out.println("TransDelay: " + calTransDelay() + " slots");
-        System.out.println("Total Transmission: " + calTotalTrans() + " times");
-        System.out.println();
     }
 
     /**
@@ -641,6 +1083,7 @@ public class Graph {
      */
     private static void transDelayCompare(int nodeSize, int slotSize, int HSE, int additionalEdge) {
         Graph g = new Graph(nodeSize, slotSize, additionalEdge);
+        g.isParallel = true;
         g.finalizeLBASBackbone();
         System.out.println("LBAS: " + g.calTransDelay());
         g.transformTopology(HSE);
@@ -658,6 +1101,7 @@ public class Graph {
      */
     private static void transTimeCompare(int nodeSize, int slotSize, int HSE, int additionalEdge) {
         Graph g = new Graph(nodeSize, slotSize, additionalEdge);
+        g.isParallel = true;
         g.finalizeLBASBackbone();
         System.out.println("LBAS: " + g.calTotalTrans());
         g.transformTopology(3);
@@ -665,10 +1109,97 @@ public class Graph {
         System.out.println("XXXXX: " + g.calTotalTrans());
     }
 
-    public static void main(String[] args) {
+    /**
+     * 增量修复与完全重建的对比：在拓扑上随机加入或删除节点和边、修改活跃时隙，每次修改后在新拓扑上完全重建LBAS广播主干，
+     * 比较两者的主干（含遍历顺序）、各节点状态和传输时延
+     *
+     * @param topology 初始拓扑
+     * @param changes  随机修改的次数，被拒绝的修改（非法或使图不连通）也计入
+     * @param seed     随机种子
+     */
+    private static void repairCompare(Topology topology, int changes, long seed) {
+        Random random = new Random(seed);
+        Graph g = new Graph(topology);
+        g.finalizeLBASBackbone();
+        int applied = 0, rejected = 0, mismatched = 0;
+        long repairTime = 0, rebuildTime = 0, start;
+        for (int c = 0; c < changes; c++) {
+            int u = random.nextInt(g.nodeCount), v = random.nextInt(g.nodeCount);
+            start = System.nanoTime();
+            try {
+                switch (random.nextInt(5)) {
+                    case 0:
+                        g.addNode(random.nextInt(g.slotCount), u == v ? new int[]{u} : new int[]{u, v});
+                        break;
+                    case 1:
+                        g.removeNode(u);
+                        break;
+                    case 2:
+                        g.addEdge(u, v);
+                        break;
+                    case 3:
+                        if (g.adjTable.degree(u) == 0)
+                            throw new IllegalArgumentException("Node has no edges: " + u);
+                        g.removeEdge(u, g.adjTable.neighbors(u)[random.nextInt(g.adjTable.degree(u))]);
+                        break;
+                    default:
+                        g.changeActiveSlot(u, random.nextInt(g.slotCount));
+                }
+            } catch (IllegalArgumentException e) {//被拒绝的修改不改变拓扑和广播主干
+                rejected++;
+                continue;
+            }
+            repairTime += System.nanoTime() - start;
+            applied++;
+
+            start = System.nanoTime();
+            Graph rebuilt = new Graph(g.topology);
+            rebuilt.finalizeLBASBackbone();
+            rebuildTime += System.nanoTime() - start;
+            if (!sameBackbone(g, rebuilt)) {
+                mismatched++;
+                System.out.println("Mismatch after change " + c);
+            }
+        }
+        System.out.println("Changes: " + applied + " applied, " + rejected + " rejected");
+        System.out.println("Repair: " + repairTime / Math.max(applied, 1) / 1000 + " us/change, rebuild: "
+                + rebuildTime / Math.max(applied, 1) / 1000 + " us/change");
+        System.out.println("Identical: " + (mismatched == 0));
+    }
+
+    /**
+     * @return 两图的广播主干、主干集合的遍历顺序、各节点状态和传输时延是否都相同
+     */
+    private static boolean sameBackbone(Graph a, Graph b) {
+        if (!a.nodeCount.equals(b.nodeCount) || !a.maxLevel.equals(b.maxLevel)
+                || !new ArrayList<>(a.backbone).equals(new ArrayList<>(b.backbone)))
+            return false;
+        NodeState x = a.nodeState, y = b.nodeState;
+        for (int i = 0; i < a.nodeCount; i++) {
+            if (x.getLevel(i) != y.getLevel(i) || x.getParentId(i) != y.getParentId(i) || x.getRootId(i) != y.getRootId(i)
+                    || x.getCovNodeId(i) != y.getCovNodeId(i) || x.getActiveSlot(i) != y.getActiveSlot(i)
+                    || x.getTransSlotCount(i) != y.getTransSlotCount(i))
+                return false;
+            for (int t = x.nextTransSlot(i, -1); t != NodeState.NO_SLOT; t = x.nextTransSlot(i, t + 1))
+                if (!y.hasTransSlot(i, t))
+                    return false;
+        }
+        return a.calTransDelay() == b.calTransDelay() && a.calTotalTrans() == b.calTotalTrans();
+    }
+
+    /**
+     * 用法：Graph [拓扑文件 [修改次数] [随机种子]]
+     * 不带参数时对比随机拓扑上两种算法的传输延迟；给出拓扑文件时对比增量修复与完全重建的结果和耗时
+     */
+    public static void main(String[] args) throws IOException {
 //        Graph g = new Graph(300, 50, 100);
 //        g.transformTopology(2);
 //        g.getDetailedInfo();
-        transDelayCompare(300,10,2,50);
+        if (args.length == 0) {
+            transDelayCompare(300,10,2,50);
+            return;
+        }
+        repairCompare(TopologyIO.read(Paths.get(args[0])), args.length > 1 ? Integer.parseInt(args[1]) : 100,
+                args.length > 2 ? Long.parseLong(args[2]) : 1);
     }
 }
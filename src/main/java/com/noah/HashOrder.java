@@ -0,0 +1,151 @@
+package com.noah;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 求一组互不相同的整数依次加入HashSet&lt;Integer&gt;后的遍历顺序
+ * 原实现用HashSet保存各节点的邻节点，BFS和寻找连接节点时按集合的遍历顺序访问邻节点并取第一个满足条件者，
+ * 这一顺序决定了默认父节点和连接节点，CSR邻接表须按同样的顺序访问才能得到与原实现相同的广播主干。
+ * HashSet的遍历顺序即按桶下标(h ^ (h >>> 16)) & (容量 - 1)对插入序列做稳定排序，容量由初始容量和插入过程中的扩容决定；
+ * 某个桶中的元素超过8个且容量不小于64时会转为红黑树，其链表顺序不再能简单推出，此时直接用HashMap求出。
+ * 各方法复用内部缓冲，每个线程使用各自的实例
+ */
+final class HashOrder {
+    static final int DEFAULT_CAPACITY = 16;//new HashSet<>()的初始容量
+    private static final int TREEIFY_THRESHOLD = 8;//桶中已有的元素数达到该值时，再加入元素会转为红黑树
+    private static final int MIN_TREEIFY_CAPACITY = 64;//容量小于该值时以扩容代替转为红黑树
+    private int[] count = new int[0];//模拟插入时各桶的元素数
+    private int[] buffer = new int[0];
+    private long[] sortKeys = new long[0];
+
+    /**
+     * @return 以size个元素的集合为参数调用new HashSet&lt;&gt;(c)时的初始容量
+     */
+    static int copyCapacity(int size) {
+        return Math.max((int) (size / .75f) + 1, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 将a[from, to)原地重排为其中的元素按顺序加入初始容量为initialCapacity的HashSet后的遍历顺序
+     *
+     * @param a               插入序列，元素互不相同
+     * @param keys            元素x以keys[x]作为哈希值，为null时以x本身作为哈希值
+     * @param initialCapacity HashSet的初始容量，不小于DEFAULT_CAPACITY
+     */
+    void arrange(int[] a, int from, int to, int[] keys, int initialCapacity) {
+        arrange(a, from, to, keys, initialCapacity, -1);
+    }
+
+    /**
+     * 将a[from, to)按顺序加入HashSet后再删除removed，所得遍历顺序存入a[from, 返回值)
+     * 删除红黑树中的节点会调整树根在链表中的位置，因此不能在求出顺序后再删除
+     *
+     * @param removed 加入所有元素后删除的元素，为-1时不删除
+     * @return 遍历顺序的结束下标（不含）
+     */
+    int arrange(int[] a, int from, int to, int[] keys, int initialCapacity, int removed) {
+        int n = to - from, cap;
+        if (n <= 1)
+            return removeFrom(a, from, to, removed);
+        if ((cap = capacity(a, from, to, keys, initialCapacity)) == -1) {
+            HashMap<Integer, Integer> map = new HashMap<>(initialCapacity);
+            for (int k = from; k < to; k++)
+                map.put(key(a[k], keys), a[k]);
+            if (removed != -1)
+                map.remove(key(removed, keys));
+            int pos = from;
+            for (int x : map.values())
+                a[pos++] = x;
+            return pos;
+        }
+
+        //按(桶下标, 插入次序)排序
+        if (sortKeys.length < n) {
+            sortKeys = new long[Math.max(n, sortKeys.length << 1)];
+            buffer = new int[sortKeys.length];
+        }
+        for (int k = 0; k < n; k++)
+            sortKeys[k] = (long) bucket(key(a[from + k], keys), cap) << 32 | k;
+        Arrays.sort(sortKeys, 0, n);
+        System.arraycopy(a, from, buffer, 0, n);
+        for (int k = 0; k < n; k++)
+            a[from + k] = buffer[(int) sortKeys[k]];
+        return removeFrom(a, from, to, removed);
+    }
+
+    /**
+     * 求a[from, to)按顺序加入初始容量为initialCapacity的HashSet后的容量，遍历顺序即按该容量下的桶下标对插入序列做稳定排序
+     *
+     * @return 插入所有元素后的容量，某个桶转为红黑树时返回-1
+     */
+    int capacity(int[] a, int from, int to, int[] keys, int initialCapacity) {
+        int n = to - from, cap = tableSizeFor(initialCapacity);
+        if (n > TREEIFY_THRESHOLD)
+            return simulate(a, from, to, keys, cap);
+        while (n > threshold(cap))//桶中不会超过8个元素，只需按阈值扩容
+            cap <<= 1;
+        return cap;
+    }
+
+    /**
+     * 从链表中删除元素不改变其余元素的顺序
+     */
+    private static int removeFrom(int[] a, int from, int to, int removed) {
+        if (removed != -1)
+            for (int k = from; k < to; k++)
+                if (a[k] == removed) {
+                    System.arraycopy(a, k + 1, a, k, to - k - 1);
+                    return to - 1;
+                }
+        return to;
+    }
+
+    /**
+     * 模拟HashMap.putVal中的扩容：先检查加入元素的桶是否需要转为红黑树（容量不足64时改为扩容），再检查元素数是否超过阈值
+     *
+     * @return 插入所有元素后的容量，某个桶转为红黑树时返回-1
+     */
+    private int simulate(int[] a, int from, int to, int[] keys, int cap) {
+        recount(a, from, from, keys, cap);
+        for (int k = from; k < to; k++) {
+            int b = bucket(key(a[k], keys), cap);
+            if (++count[b] > TREEIFY_THRESHOLD) {
+                if (cap >= MIN_TREEIFY_CAPACITY)
+                    return -1;
+                recount(a, from, k + 1, keys, cap <<= 1);
+            }
+            if (k - from + 1 > threshold(cap))
+                recount(a, from, k + 1, keys, cap <<= 1);
+        }
+        return cap;
+    }
+
+    /**
+     * 以容量cap重新统计a[from, to)中各桶的元素数
+     */
+    private void recount(int[] a, int from, int to, int[] keys, int cap) {
+        if (count.length < cap)
+            count = new int[cap];
+        Arrays.fill(count, 0, cap, 0);
+        for (int k = from; k < to; k++)
+            count[bucket(key(a[k], keys), cap)]++;
+    }
+
+    private static int key(int x, int[] keys) {
+        return keys == null ? x : keys[x];
+    }
+
+    static int bucket(int h, int cap) {
+        return (h ^ (h >>> 16)) & (cap - 1);
+    }
+
+    private static int threshold(int cap) {
+        return cap - (cap >>> 2);
+    }
+
+    private static int tableSizeFor(int c) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(c - 1);
+        return n + 1;
+    }
+}
@@ -0,0 +1,175 @@
+package com.noah;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * 可以保存在堆上或堆外的int数组，邻接表、节点状态和各算法的工作数组都通过它访问，同一份算法代码可以在两种存储上运行
+ * 堆上的实现包装int[]；堆外的实现由直接缓冲区或内存映射文件分块组成，每块2^28个int，因此长度不受ByteBuffer容量的限制。
+ * 只有这两种实现，热点循环中的调用可以被JIT内联
+ */
+abstract class IntArray {
+    static final int CHUNK_SHIFT = 28;//堆外每块的int数为2^28
+
+    /**
+     * 包装堆上的数组，不拷贝
+     */
+    static IntArray of(int[] array) {
+        return new Heap(array);
+    }
+
+    /**
+     * 由分块的缓冲区组成堆外数组，除最后一块外每块须恰好有2^CHUNK_SHIFT个int
+     */
+    static IntArray of(IntBuffer[] chunks) {
+        return new Chunked(chunks);
+    }
+
+    abstract int length();
+
+    abstract int get(int i);
+
+    abstract void set(int i, int value);
+
+    /**
+     * @return 加上delta之后的值
+     */
+    abstract int add(int i, int delta);
+
+    /**
+     * 将[from, to)的各项设为value
+     */
+    abstract void fill(int from, int to, int value);
+
+    void fill(int value) {
+        fill(0, length(), value);
+    }
+
+    /**
+     * 将src[off, off + len)写入从pos开始的各项
+     */
+    abstract void put(int pos, int[] src, int off, int len);
+
+    /**
+     * 将从pos开始的len项读入dst[off, off + len)
+     */
+    abstract void get(int pos, int[] dst, int off, int len);
+
+    /**
+     * 只能用于堆上的数组，调用者按int[]直接访问时使用，不拷贝
+     *
+     * @throws IllegalStateException 数组保存在堆外
+     */
+    abstract int[] array();
+
+    private static final class Heap extends IntArray {
+        private final int[] a;
+
+        Heap(int[] a) {
+            this.a = a;
+        }
+
+        @Override
+        int length() {
+            return a.length;
+        }
+
+        @Override
+        int get(int i) {
+            return a[i];
+        }
+
+        @Override
+        void set(int i, int value) {
+            a[i] = value;
+        }
+
+        @Override
+        int add(int i, int delta) {
+            return a[i] += delta;
+        }
+
+        @Override
+        void fill(int from, int to, int value) {
+            Arrays.fill(a, from, to, value);
+        }
+
+        @Override
+        void put(int pos, int[] src, int off, int len) {
+            System.arraycopy(src, off, a, pos, len);
+        }
+
+        @Override
+        void get(int pos, int[] dst, int off, int len) {
+            System.arraycopy(a, pos, dst, off, len);
+        }
+
+        @Override
+        int[] array() {
+            return a;
+        }
+    }
+
+    /**
+     * 分块保存的数组，下标的高位选择块，低位为块内下标
+     */
+    private static final class Chunked extends IntArray {
+        private static final int MASK = (1 << CHUNK_SHIFT) - 1;
+        private final IntBuffer[] chunks;
+        private final int length;
+
+        Chunked(IntBuffer[] chunks) {
+            this.chunks = chunks;
+            int n = 0;
+            for (IntBuffer chunk : chunks)
+                n += chunk.capacity();
+            this.length = n;
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        int get(int i) {
+            return chunks[i >>> CHUNK_SHIFT].get(i & MASK);
+        }
+
+        @Override
+        void set(int i, int value) {
+            chunks[i >>> CHUNK_SHIFT].put(i & MASK, value);
+        }
+
+        @Override
+        int add(int i, int delta) {
+            IntBuffer chunk = chunks[i >>> CHUNK_SHIFT];
+            int value = chunk.get(i & MASK) + delta;
+            chunk.put(i & MASK, value);
+            return value;
+        }
+
+        @Override
+        void fill(int from, int to, int value) {
+            for (int i = from; i < to; i++)
+                chunks[i >>> CHUNK_SHIFT].put(i & MASK, value);
+        }
+
+        @Override
+        void put(int pos, int[] src, int off, int len) {
+            for (int k = 0; k < len; k++)
+                set(pos + k, src[off + k]);
+        }
+
+        @Override
+        void get(int pos, int[] dst, int off, int len) {
+            for (int k = 0; k < len; k++)
+                dst[off + k] = get(pos + k);
+        }
+
+        @Override
+        int[] array() {
+            throw new IllegalStateException("Array is stored off heap");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.noah;
+
+/**
+ * LBAS调度器
+ * 拓扑只读共享，每次调度使用独立的节点状态，因此同一调度器可以被多个线程同时调用
+ */
+public class LBASScheduler {
+    private final Topology topology;
+    private final boolean parallel;//是否并行计算各时隙的覆盖节点
+    private final PhaseMetrics metrics;//为null时不记录
+
+    public LBASScheduler(Topology topology) {
+        this(topology, false);
+    }
+
+    public LBASScheduler(Topology topology, boolean parallel) {
+        this(topology, parallel, null);
+    }
+
+    /**
+     * @param metrics 累计各次调度各阶段耗时与计数的对象，为null时不记录
+     */
+    public LBASScheduler(Topology topology, boolean parallel, PhaseMetrics metrics) {
+        this.topology = topology;
+        this.parallel = parallel;
+        this.metrics = metrics;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * 在原始拓扑上建立LBAS广播主干
+     */
+    public Schedule schedule() {
+        Graph g = new Graph(topology, parallel, metrics);
+        g.finalizeLBASBackbone();
+        return g.toSchedule(-1, 1);
+    }
+}
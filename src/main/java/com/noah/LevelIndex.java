@@ -0,0 +1,560 @@
+package com.noah;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * 以源点0为根的BFS层数及默认父节点
+ * 默认父节点即按遍历顺序（CsrGraph.getOrderedTargets）访问邻节点的BFS中第一个发现该节点的上一层节点。
+ * 同层节点的BFS顺序就是BFS树（子节点按其在父节点遍历顺序中的位置排列）的先序顺序，
+ * 因此比较两个同层节点的先后只需沿父节点上溯到分叉处比较这一位置。
+ * 首次计算使用顺序BFS（与OffHeapStore共用，见bfs），节点较多且允许并行时使用逐层同步的并行BFS，两者结果相同；
+ * 插入或删除边后按单位权动态最短路的方法，只更新层数或默认父节点发生改变的节点；
+ * 受影响的区域较大时，增量更新（尤其是逐层上溯的同层比较）可能比完整的BFS更慢，工作量超出预算后改为重新计算
+ */
+public class LevelIndex {
+    private static final int PARALLEL_THRESHOLD = 1 << 16;//节点数不少于该值时才并行计算
+    private static final int PARALLEL_FRONTIER = 1 << 10;//并行BFS中，节点数少于该值的层顺序展开
+    private static final int UPDATE_BUDGET_SHIFT = 5;//增量更新的工作量预算为（节点数 + 边数）的1/32，其每单位（堆操作、随机访问）比BFS的一步慢数倍
+    private int nodeCount;
+    private int[] level = new int[0];//各节点的层数，不可达时为-1
+    private int[] parent = new int[0];//各节点的默认父节点，源点和不可达节点为-1
+    private int[] position = new int[0];//各节点在其默认父节点遍历顺序中的位置
+    private int[] levelCount = new int[1];//各层的节点数
+    private int maxLevel;
+    private int reachedCount;//可达节点数，包括源点
+    private int[] queuedStamp = new int[0];//queuedStamp[i] == epoch表示节点i已在本阶段入堆
+    private int[] markStamp = new int[0];//删除边时表示节点失去所有上一层的支撑，确定父节点时表示节点的BFS顺序可能改变
+    private int epoch;
+    private long[] heap = new long[16];//小根堆，键值由层数和编号拼接而成
+    private int heapSize;
+    private long budget;//本次增量更新剩余的工作量，扫描一条边、出堆一次或上溯一层各计1
+    private int fallbackCount;//增量更新超出预算而改为重新计算的次数
+
+    /**
+     * 在邻接表上计算各节点的层数和默认父节点
+     *
+     * @param parallel 是否允许并行计算
+     */
+    public void compute(CsrGraph adjTable, boolean parallel) {
+        resize(adjTable.getNodeCount());
+        if (parallel && nodeCount >= PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1) {
+            Arrays.fill(level, -1);
+            Arrays.fill(parent, -1);
+            level[0] = 0;
+            parallelBfs(adjTable, adjTable.getOrderedTargets());
+        } else
+            bfs(adjTable, IntArray.of(level), IntArray.of(parent), IntArray.of(position), IntArray.of(new int[nodeCount]));
+
+        levelCount = new int[16];
+        maxLevel = 0;
+        reachedCount = 0;
+        for (int i = 0; i < nodeCount; i++)
+            if (level[i] != -1)
+                count(level[i], 1);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getLevel(int id) {
+        return level[id];
+    }
+
+    public int getParent(int id) {
+        return parent[id];
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    public int getFallbackCount() {
+        return fallbackCount;
+    }
+
+    /**
+     * 以源点0为根按遍历顺序做顺序BFS，各数组可以保存在任意存储中，堆上的LevelIndex和OffHeapStore共用这一实现
+     *
+     * @param level    输出参数，各节点的层数，不可达时为-1
+     * @param parent   输出参数，各节点的默认父节点，源点和不可达节点为-1
+     * @param position 输出参数，各可达节点在其默认父节点遍历顺序中的位置
+     * @param queue    工作数组，长度不小于节点数
+     * @return 最大层数
+     */
+    static int bfs(CsrGraph adjTable, IntArray level, IntArray parent, IntArray position, IntArray queue) {
+        IntArray targets = adjTable.orderedTargets();
+        level.fill(-1);
+        parent.fill(-1);
+        level.set(0, 0);
+        queue.set(0, 0);
+        int head = 0, tail = 1, u, v, next, from;
+        while (head < tail) {
+            u = queue.get(head++);
+            next = level.get(u) + 1;
+            from = adjTable.from(u);
+            for (int k = from, end = adjTable.to(u); k < end; k++)
+                if (level.get(v = targets.get(k)) == -1) {
+                    level.set(v, next);
+                    parent.set(v, u);
+                    position.set(v, k - from);
+                    queue.set(tail++, v);
+                }
+        }
+        return level.get(queue.get(tail - 1));//最后出队的节点层数最大
+    }
+
+    /**
+     * 逐层同步的并行BFS：当前层的每个节点在claim中竞争其未访问的邻节点，保留下标最小者，
+     * 即顺序BFS中第一个发现该节点的节点；再按(发现者下标, 遍历顺序)拼出下一层，与顺序BFS的出队顺序一致
+     */
+    private void parallelBfs(CsrGraph adjTable, int[] targets) {
+        AtomicIntegerArray claim = new AtomicIntegerArray(nodeCount);//发现者在当前层中的下标 + 1，0表示未被发现
+        int[] frontier = {0};
+        for (int lv = 0; frontier.length > 0; lv++) {
+            final int[] current = frontier;
+            final int nextLevel = lv + 1;
+            if (current.length < PARALLEL_FRONTIER) {
+                int[] next = new int[16];
+                int size = 0;
+                for (int u : current)
+                    for (int k = adjTable.from(u); k < adjTable.to(u); k++)
+                        if (level[targets[k]] == -1) {
+                            level[targets[k]] = nextLevel;
+                            parent[targets[k]] = u;
+                            position[targets[k]] = k - adjTable.from(u);
+                            if (size == next.length)
+                                next = Arrays.copyOf(next, size << 1);
+                            next[size++] = targets[k];
+                        }
+                frontier = Arrays.copyOf(next, size);
+                continue;
+            }
+            IntStream.range(0, current.length).parallel().forEach(i -> {
+                for (int k = adjTable.from(current[i]); k < adjTable.to(current[i]); k++) {
+                    int v = targets[k], c;
+                    if (level[v] == -1)
+                        while (((c = claim.get(v)) == 0 || c > i + 1) && !claim.compareAndSet(v, c, i + 1))
+                            ;
+                }
+            });
+            int[] offsets = new int[current.length + 1];
+            IntStream.range(0, current.length).parallel().forEach(i -> {
+                for (int k = adjTable.from(current[i]); k < adjTable.to(current[i]); k++)
+                    if (level[targets[k]] == -1 && claim.get(targets[k]) == i + 1)
+                        offsets[i + 1]++;
+            });
+            for (int i = 0; i < current.length; i++)
+                offsets[i + 1] += offsets[i];
+            int[] next = new int[offsets[current.length]];
+            IntStream.range(0, current.length).parallel().forEach(i -> {
+                int pos = offsets[i];
+                for (int k = adjTable.from(current[i]); k < adjTable.to(current[i]); k++)
+                    if (level[targets[k]] == -1 && claim.get(targets[k]) == i + 1) {
+                        position[targets[k]] = k - adjTable.from(current[i]);
+                        next[pos++] = targets[k];
+                    }
+            });
+            IntStream.range(0, current.length).parallel().forEach(i -> {
+                for (int pos = offsets[i]; pos < offsets[i + 1]; pos++) {
+                    level[next[pos]] = nextLevel;
+                    parent[next[pos]] = current[i];
+                }
+            });
+            frontier = next;
+        }
+    }
+
+    //===================================动态更新===================================
+
+    /**
+     * 插入或删除若干条边后更新各节点的层数和默认父节点
+     * 先更新层数：插入边时从端点向外传播层数的减小；删除边时先按层找出失去所有上一层支撑的节点，再从其余节点重新求这些节点的层数。
+     * 再按(层数, 编号)的顺序重新选择可能改变的节点的默认父节点，某节点的父节点或BFS顺序改变时，下一层的邻节点也需要重新选择。
+     * 各边端点的遍历顺序随邻接表改变，其子节点在父节点遍历顺序中的位置可能改变，也需要重新选择。
+     * 任一阶段的工作量超出预算时放弃已做的部分，直接重新计算
+     *
+     * @param adjTable 修改后的邻接表，须为对称的，节点数可以增加
+     * @param us       各边的一个端点
+     * @param vs       各边的另一个端点
+     * @param inserted 边是被插入还是被删除
+     */
+    public void update(CsrGraph adjTable, int[] us, int[] vs, boolean inserted) {
+        resize(adjTable.getNodeCount());
+        budget = ((long) nodeCount + adjTable.getTargets().length) >>> UPDATE_BUDGET_SHIFT;
+        int[] targets = adjTable.getTargets();
+        IntList changed = new IntList();//层数改变的节点
+        if (inserted)
+            decreaseLevels(adjTable, us, vs, changed);
+        else
+            increaseLevels(adjTable, us, vs, changed);
+        if (budget < 0) {
+            recompute(adjTable);
+            return;
+        }
+        while (maxLevel > 0 && levelCount[maxLevel] == 0)
+            maxLevel--;
+
+        //层数改变的节点、各边的端点以及它们的邻节点都可能改变父节点
+        nextEpoch();
+        heapSize = 0;
+        for (int i = 0; i < changed.size; i++)
+            enqueueWithNeighbors(adjTable, changed.items[i]);
+        for (int i = 0; i < us.length; i++) {
+            enqueueWithNeighbors(adjTable, us[i]);
+            enqueueWithNeighbors(adjTable, vs[i]);
+        }
+
+        int[] ordered = adjTable.getOrderedTargets();
+        int x, best, pos;
+        while (heapSize > 0) {
+            if (--budget < 0) {
+                recompute(adjTable);
+                return;
+            }
+            x = (int) pop();
+            if (x == 0)
+                continue;
+            best = -1;
+            budget -= adjTable.to(x) - adjTable.from(x);
+            for (int k = adjTable.from(x); k < adjTable.to(x); k++)
+                if (level[targets[k]] == level[x] - 1 && (best == -1 || precedes(targets[k], best)))
+                    best = targets[k];
+            pos = adjTable.from(best);
+            while (ordered[pos] != x)
+                pos++;
+            pos -= adjTable.from(best);
+            boolean moved = best != parent[x] || pos != position[x] || markStamp[best] == epoch;
+            parent[x] = best;
+            position[x] = pos;
+            if (moved) {
+                markStamp[x] = epoch;
+                for (int k = adjTable.from(x); k < adjTable.to(x); k++)
+                    if (level[targets[k]] == level[x] + 1)
+                        enqueue(targets[k]);
+            }
+        }
+    }
+
+    /**
+     * 增量更新超出预算时重新计算，堆中剩余的节点不再处理
+     */
+    private void recompute(CsrGraph adjTable) {
+        heapSize = 0;
+        fallbackCount++;
+        compute(adjTable, false);
+    }
+
+    /**
+     * 插入边后，从层数减小的端点出发按层数顺序向外传播
+     */
+    private void decreaseLevels(CsrGraph adjTable, int[] us, int[] vs, IntList changed) {
+        int[] targets = adjTable.getTargets();
+        nextEpoch();
+        heapSize = 0;
+        for (int i = 0; i < us.length; i++) {
+            relax(us[i], vs[i], changed);
+            relax(vs[i], us[i], changed);
+        }
+        int x;
+        while (heapSize > 0 && budget >= 0) {
+            long top = pop();
+            x = (int) top;
+            if ((int) (top >>> 32) != level[x])//已被更小的层数覆盖
+                continue;
+            budget -= 1 + adjTable.to(x) - adjTable.from(x);
+            for (int k = adjTable.from(x); k < adjTable.to(x); k++)
+                relax(x, targets[k], changed);
+        }
+    }
+
+    private void relax(int u, int v, IntList changed) {
+        if (level[u] != -1 && (level[v] == -1 || level[u] + 1 < level[v])) {
+            setLevel(v, level[u] + 1, changed);
+            push(key(level[v], v));
+        }
+    }
+
+    private void enqueueWithNeighbors(CsrGraph adjTable, int x) {
+        int[] targets = adjTable.getTargets();
+        enqueue(x);
+        for (int k = adjTable.from(x); k < adjTable.to(x); k++)
+            enqueue(targets[k]);
+    }
+
+    /**
+     * 删除边后，按原层数从小到大找出失去所有上一层支撑的节点，这些节点的层数只会增大或变为不可达，
+     * 再以其余节点为起点重新求它们的层数
+     */
+    private void increaseLevels(CsrGraph adjTable, int[] us, int[] vs, IntList changed) {
+        int[] targets = adjTable.getTargets();
+        nextEpoch();
+        heapSize = 0;
+        for (int i = 0; i < us.length; i++) {
+            int u = us[i], v = vs[i];
+            if (level[u] != -1 && level[v] == level[u] + 1)
+                enqueue(v);
+            else if (level[v] != -1 && level[u] == level[v] + 1)
+                enqueue(u);
+        }
+        IntList affected = new IntList();
+        int x, y;
+        while (heapSize > 0) {
+            if (budget < 0)
+                return;
+            x = (int) pop();
+            if (x == 0)
+                continue;
+            budget -= 1 + adjTable.to(x) - adjTable.from(x);
+            boolean supported = false;
+            for (int k = adjTable.from(x); k < adjTable.to(x) && !supported; k++)
+                supported = level[y = targets[k]] == level[x] - 1 && markStamp[y] != epoch;
+            if (!supported) {
+                markStamp[x] = epoch;
+                affected.add(x);
+                for (int k = adjTable.from(x); k < adjTable.to(x); k++)
+                    if (level[y = targets[k]] == level[x] + 1)
+                        enqueue(y);
+            }
+        }
+
+        //受影响节点的初始层数取自未受影响的邻节点，之后只在受影响节点之间传播
+        for (int i = 0; i < affected.size; i++) {
+            x = affected.items[i];
+            budget -= adjTable.to(x) - adjTable.from(x);
+            int d = -1;
+            for (int k = adjTable.from(x); k < adjTable.to(x); k++)
+                if (markStamp[y = targets[k]] != epoch && level[y] != -1 && (d == -1 || level[y] + 1 < d))
+                    d = level[y] + 1;
+            setLevel(x, d, changed);
+        }
+        for (int i = 0; i < affected.size; i++) {
+            x = affected.items[i];
+            if (level[x] != -1)
+                push(key(level[x], x));
+        }
+        while (heapSize > 0 && budget >= 0) {
+            long top = pop();
+            x = (int) top;
+            if ((int) (top >>> 32) != level[x])
+                continue;
+            budget -= 1 + adjTable.to(x) - adjTable.from(x);
+            for (int k = adjTable.from(x); k < adjTable.to(x); k++)
+                if (markStamp[y = targets[k]] == epoch && (level[y] == -1 || level[x] + 1 < level[y])) {
+                    setLevel(y, level[x] + 1, changed);
+                    push(key(level[y], y));
+                }
+        }
+    }
+
+    /**
+     * 同层节点a和b中a是否在BFS顺序中更靠前
+     */
+    private boolean precedes(int a, int b) {
+        while (parent[a] != parent[b]) {
+            a = parent[a];
+            b = parent[b];
+            budget--;
+        }
+        return position[a] < position[b];
+    }
+
+    private void setLevel(int id, int lv, IntList changed) {
+        changed.add(id);//同一节点可能被记录多次，入堆时去重
+        if (level[id] != -1)
+            count(level[id], -1);
+        if (lv != -1)
+            count(lv, 1);
+        else
+            parent[id] = -1;
+        level[id] = lv;
+    }
+
+    private void count(int lv, int delta) {
+        if (lv >= levelCount.length)
+            levelCount = Arrays.copyOf(levelCount, Math.max(lv + 1, levelCount.length << 1));
+        levelCount[lv] += delta;
+        reachedCount += delta;
+        if (delta > 0 && lv > maxLevel)
+            maxLevel = lv;
+    }
+
+    /**
+     * 将可达节点按(层数, 编号)加入堆，每个阶段每个节点只加入一次
+     */
+    private void enqueue(int id) {
+        if (queuedStamp[id] == epoch)
+            return;
+        queuedStamp[id] = epoch;
+        if (level[id] != -1)
+            push(key(level[id], id));
+        else
+            parent[id] = -1;
+    }
+
+    private void nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {//时间戳用尽时清空标记数组
+            Arrays.fill(queuedStamp, 0);
+            Arrays.fill(markStamp, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * 调整数组长度，新增节点不可达
+     */
+    private void resize(int n) {
+        if (n == nodeCount && level.length == n)
+            return;
+        level = Arrays.copyOf(level, n);
+        parent = Arrays.copyOf(parent, n);
+        position = Arrays.copyOf(position, n);
+        if (n > nodeCount) {
+            Arrays.fill(level, nodeCount, n, -1);
+            Arrays.fill(parent, nodeCount, n, -1);
+        }
+        queuedStamp = Arrays.copyOf(queuedStamp, n);
+        markStamp = Arrays.copyOf(markStamp, n);
+        nodeCount = n;
+    }
+
+    private static long key(int lv, int id) {
+        return ((long) lv << 32) | id;
+    }
+
+    private void push(long key) {
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, heapSize << 1);
+        int i = heapSize++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (heap[p] <= key)
+                break;
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = key;
+    }
+
+    private long pop() {
+        long result = heap[0];
+        long last = heap[--heapSize];
+        int i = 0, half = heapSize >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child])
+                child++;
+            if (last <= heap[child])
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return result;
+    }
+
+    /**
+     * 验证程序：先比较顺序BFS与并行BFS的结果，再随机插入或删除边，每次修改后比较增量更新与重新计算的结果，
+     * 并输出各自的平均和最大耗时以及增量更新改为重新计算的次数
+     * 用法：LevelIndex &lt;拓扑文件&gt; [修改次数] [随机种子]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: LevelIndex <topology> [changes] [seed]");
+            System.exit(1);
+        }
+        CsrGraph adjTable = TopologyIO.read(Paths.get(args[0])).getAdjTable();
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 0);
+        if (!adjTable.isSymmetric() || adjTable.getNodeCount() < 2)
+            throw new IllegalArgumentException("Topology must be undirected with at least two nodes");
+
+        long start = System.nanoTime();
+        LevelIndex sequential = new LevelIndex();
+        sequential.compute(adjTable, false);
+        long sequentialTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        LevelIndex parallel = new LevelIndex();
+        parallel.compute(adjTable, true);
+        long parallelTime = System.nanoTime() - start;
+        System.out.println("Sequential BFS: " + sequentialTime / 1000000 + " ms, parallel BFS: " + parallelTime / 1000000
+                + " ms, identical: " + sequential.sameAs(parallel));
+
+        //一半的修改删除端点u的一条已有边，其余在随机节点之间插入边
+        long updateTime = 0, computeTime = 0, maxUpdateTime = 0, maxComputeTime = 0, time;
+        int inserted = 0, mismatched = 0;
+        for (int c = 0; c < changes; c++) {
+            int n = adjTable.getNodeCount(), u = random.nextInt(n), v;
+            int[] uList = adjTable.neighbors(u);
+            boolean insert = uList.length == 0 || uList.length < n - 1 && random.nextBoolean();
+            if (insert) {
+                do {
+                    v = random.nextInt(n);
+                } while (v == u || adjTable.contains(u, v));
+                inserted++;
+            } else
+                v = uList[random.nextInt(uList.length)];
+            int[] vList = adjTable.neighbors(v);
+            adjTable = adjTable.withNeighbors(n, new int[]{u, v}, insert
+                    ? new int[][]{Graph.insertSorted(uList, v), Graph.insertSorted(vList, u)}
+                    : new int[][]{Graph.removeSorted(uList, v), Graph.removeSorted(vList, u)}, true);
+
+            start = System.nanoTime();
+            sequential.update(adjTable, new int[]{u}, new int[]{v}, insert);
+            updateTime += time = System.nanoTime() - start;
+            maxUpdateTime = Math.max(maxUpdateTime, time);
+            start = System.nanoTime();
+            LevelIndex rebuilt = new LevelIndex();
+            rebuilt.compute(adjTable, false);
+            computeTime += time = System.nanoTime() - start;
+            maxComputeTime = Math.max(maxComputeTime, time);
+            if (!sequential.sameAs(rebuilt))
+                mismatched++;
+        }
+        System.out.println("Changes: " + changes + " (" + inserted + " inserted, " + (changes - inserted) + " removed)");
+        if (changes > 0) {
+            System.out.println("Update: " + updateTime / 1000 / changes + " us/change (max " + maxUpdateTime / 1000
+                    + " us, " + sequential.getFallbackCount() + " fell back to recompute), recompute: "
+                    + computeTime / 1000 / changes + " us/change (max " + maxComputeTime / 1000 + " us)");
+        }
+        System.out.println("Identical: " + (mismatched == 0) + (mismatched == 0 ? "" : " (" + mismatched + " mismatched)"));
+    }
+
+    /**
+     * 两者的层数、默认父节点及各层节点数是否都相同
+     */
+    private boolean sameAs(LevelIndex other) {
+        if (nodeCount != other.nodeCount || maxLevel != other.maxLevel || reachedCount != other.reachedCount)
+            return false;
+        for (int i = 0; i < nodeCount; i++)
+            if (level[i] != other.level[i] || parent[i] != other.parent[i])
+                return false;
+        for (int lv = 0; lv <= maxLevel; lv++)
+            if (levelCount[lv] != other.levelCount[lv])
+                return false;
+        return true;
+    }
+
+    /**
+     * 可增长的int列表
+     */
+    private static class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int x) {
+            if (size == items.length)
+                items = Arrays.copyOf(items, size << 1);
+            items[size++] = x;
+        }
+    }
+}
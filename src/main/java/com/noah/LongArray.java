@@ -0,0 +1,106 @@
+package com.noah;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * 可以保存在堆上或堆外的long数组，用法与IntArray相同；下标为long，堆外每块2^27个long
+ */
+abstract class LongArray {
+    static final int CHUNK_SHIFT = 27;//堆外每块的long数为2^27
+
+    /**
+     * 包装堆上的数组，不拷贝
+     */
+    static LongArray of(long[] array) {
+        return new Heap(array);
+    }
+
+    /**
+     * 由分块的缓冲区组成堆外数组，除最后一块外每块须恰好有2^CHUNK_SHIFT个long
+     */
+    static LongArray of(LongBuffer[] chunks) {
+        return new Chunked(chunks);
+    }
+
+    abstract long length();
+
+    abstract long get(long i);
+
+    abstract void set(long i, long value);
+
+    /**
+     * 将[from, to)的各项设为value
+     */
+    abstract void fill(long from, long to, long value);
+
+    void fill(long value) {
+        fill(0, length(), value);
+    }
+
+    private static final class Heap extends LongArray {
+        private final long[] a;
+
+        Heap(long[] a) {
+            this.a = a;
+        }
+
+        @Override
+        long length() {
+            return a.length;
+        }
+
+        @Override
+        long get(long i) {
+            return a[(int) i];
+        }
+
+        @Override
+        void set(long i, long value) {
+            a[(int) i] = value;
+        }
+
+        @Override
+        void fill(long from, long to, long value) {
+            Arrays.fill(a, (int) from, (int) to, value);
+        }
+    }
+
+    /**
+     * 分块保存的数组，下标的高位选择块，低位为块内下标
+     */
+    private static final class Chunked extends LongArray {
+        private static final long MASK = (1L << CHUNK_SHIFT) - 1;
+        private final LongBuffer[] chunks;
+        private final long length;
+
+        Chunked(LongBuffer[] chunks) {
+            this.chunks = chunks;
+            long n = 0;
+            for (LongBuffer chunk : chunks)
+                n += chunk.capacity();
+            this.length = n;
+        }
+
+        @Override
+        long length() {
+            return length;
+        }
+
+        @Override
+        long get(long i) {
+            return chunks[(int) (i >>> CHUNK_SHIFT)].get((int) (i & MASK));
+        }
+
+        @Override
+        void set(long i, long value) {
+            chunks[(int) (i >>> CHUNK_SHIFT)].put((int) (i & MASK), value);
+        }
+
+        @Override
+        void fill(long from, long to, long value) {
+            for (long i = from; i < to; i++)
+                chunks[(int) (i >>> CHUNK_SHIFT)].put((int) (i & MASK), value);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.noah;
+
+import java.util.Arrays;
+
+/**
+ * 以并行数组保存的全部节点状态，下标即节点编号
+ * 传输时隙集合以位图保存，时隙t对应第t + 1位（源点的活跃时隙-1也可能被加入传输时隙集合），每个节点占用(slotCount + 64) / 64个long；
+ * 覆盖集合不单独保存，节点c的覆盖集合即covNodeId为c的其他节点，由covNodeId按需建立共享的索引。
+ * 各数组从给定的存储中分配，可以保存在堆外（见OffHeapStore）；覆盖集合索引只在查询时建立，总是保存在堆上
+ */
+public class NodeState {
+    public static final int NO_SLOT = Integer.MIN_VALUE;//nextTransSlot遍历结束的标志
+    private final int nodeCount;
+    private final int slotCount;
+    private final int words;//每个节点的传输时隙位图所占的long数
+    private final IntArray activeSlot;//活跃时隙
+    private final IntArray parentId;//父节点编号
+    private final IntArray rootId;//根节点编号
+    private final IntArray level;//节点所在层数，未计算时为-1
+    private final IntArray covNodeId;//覆盖当前节点的节点编号
+    private final LongArray transSlots;//传输时隙位图
+    private final IntArray coveringCount;//覆盖集合大小
+    private int[] coveringOffsets;//覆盖集合索引，节点c的覆盖集合为coveringNodes[coveringOffsets[c], coveringOffsets[c + 1])
+    private int[] coveringNodes;
+    private boolean coveringDirty;//covNodeId修改后需要重建覆盖集合索引
+
+    /**
+     * @param activeSlot 各节点的活跃时隙，源点取-1
+     * @param slotCount  单周期时隙数
+     */
+    public NodeState(int[] activeSlot, int slotCount) {
+        this(IntArray.of(activeSlot.clone()), slotCount, ArrayStorage.HEAP);
+    }
+
+    /**
+     * @param activeSlot 各节点的活跃时隙，不拷贝，只读的数组不能调用setActiveSlot
+     * @param storage    其余各数组从中分配
+     */
+    NodeState(IntArray activeSlot, int slotCount, ArrayStorage storage) {
+        this.nodeCount = activeSlot.length();
+        this.slotCount = slotCount;
+        this.words = (slotCount + 64) >>> 6;
+        this.activeSlot = activeSlot;
+        parentId = storage.allocInts(nodeCount);
+        rootId = storage.allocInts(nodeCount);
+        level = storage.allocInts(nodeCount);
+        covNodeId = storage.allocInts(nodeCount);
+        transSlots = storage.allocLongs((long) nodeCount * words);
+        coveringCount = storage.allocInts(nodeCount);
+        level.fill(-1);
+        reset();
+    }
+
+    /**
+     * 清空除活跃时隙和层数以外的所有状态
+     */
+    public void reset() {
+        parentId.fill(-1);
+        rootId.fill(-1);
+        covNodeId.fill(-1);
+        transSlots.fill(0L);
+        coveringCount.fill(0);
+        coveringDirty = true;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * @return 节点编号为id的节点视图
+     */
+    public NodeView getNode(int id) {
+        return new NodeView(this, id);
+    }
+
+    public int getActiveSlot(int id) {
+        return activeSlot.get(id);
+    }
+
+    public void setActiveSlot(int id, int slot) {
+        activeSlot.set(id, slot);
+    }
+
+    public int getParentId(int id) {
+        return parentId.get(id);
+    }
+
+    public void setParentId(int id, int parent) {
+        parentId.set(id, parent);
+    }
+
+    public int getRootId(int id) {
+        return rootId.get(id);
+    }
+
+    public void setRootId(int id, int root) {
+        rootId.set(id, root);
+    }
+
+    public int getLevel(int id) {
+        return level.get(id);
+    }
+
+    public void setLevel(int id, int lv) {
+        level.set(id, lv);
+    }
+
+    public int getCovNodeId(int id) {
+        return covNodeId.get(id);
+    }
+
+    /**
+     * 层数数组，供在任意存储上运行的BFS直接写入
+     */
+    IntArray levels() {
+        return level;
+    }
+
+    /**
+     * 父节点数组，供在任意存储上运行的BFS直接写入
+     */
+    IntArray parentIds() {
+        return parentId;
+    }
+
+    /**
+     * 设置覆盖节点id的节点，同时维护原覆盖节点和新覆盖节点的覆盖集合
+     */
+    public void setCovNodeId(int id, int cov) {
+        int old = covNodeId.get(id);
+        if (old == cov)
+            return;
+        if (old != -1 && old != id)
+            coveringCount.add(old, -1);
+        if (cov != -1 && cov != id)
+            coveringCount.add(cov, 1);
+        covNodeId.set(id, cov);
+        coveringDirty = true;
+    }
+
+    //===================================传输时隙集合===================================
+
+    public boolean hasTransSlot(int id, int slot) {
+        int bit = slot + 1;
+        return (transSlots.get((long) id * words + (bit >>> 6)) & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return 若slot原本不在传输时隙集合中则返回true
+     */
+    public boolean addTransSlot(int id, int slot) {
+        int bit = slot + 1;
+        long w = (long) id * words + (bit >>> 6), old = transSlots.get(w);
+        transSlots.set(w, old | (1L << bit));
+        return (old & (1L << bit)) == 0;
+    }
+
+    /**
+     * @return 若slot原本在传输时隙集合中则返回true
+     */
+    public boolean removeTransSlot(int id, int slot) {
+        int bit = slot + 1;
+        long w = (long) id * words + (bit >>> 6), old = transSlots.get(w);
+        transSlots.set(w, old & ~(1L << bit));
+        return (old & (1L << bit)) != 0;
+    }
+
+    public void clearTransSlots(int id) {
+        transSlots.fill((long) id * words, (long) (id + 1) * words, 0L);
+    }
+
+    /**
+     * 复制另一个NodeState中节点id除活跃时隙外的全部状态，两者的时隙数须相同，节点数可以不同
+     */
+    void copyState(NodeState from, int id) {
+        parentId.set(id, from.getParentId(id));
+        rootId.set(id, from.getRootId(id));
+        level.set(id, from.getLevel(id));
+        setCovNodeId(id, from.getCovNodeId(id));
+        for (long w = (long) id * words; w < (long) (id + 1) * words; w++)
+            transSlots.set(w, from.transSlots.get(w));
+    }
+
+    public int getTransSlotCount(int id) {
+        int cnt = 0;
+        for (long w = (long) id * words; w < (long) (id + 1) * words; w++)
+            cnt += Long.bitCount(transSlots.get(w));
+        return cnt;
+    }
+
+    /**
+     * 按升序遍历传输时隙：for (int t = nextTransSlot(id, -1); t != NO_SLOT; t = nextTransSlot(id, t + 1))
+     *
+     * @return 节点id不小于from的第一个传输时隙，不存在时返回NO_SLOT
+     */
+    public int nextTransSlot(int id, int from) {
+        int bit = from + 1;
+        if (bit > slotCount)
+            return NO_SLOT;
+        long base = (long) id * words;
+        int w = bit >>> 6;
+        long word = transSlots.get(base + w) & (-1L << bit);
+        while (true) {
+            if (word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word) - 1;
+            if (++w == words)
+                return NO_SLOT;
+            word = transSlots.get(base + w);
+        }
+    }
+
+    //===================================覆盖集合===================================
+
+    public int getCoveringCount(int id) {
+        return coveringCount.get(id);
+    }
+
+    /**
+     * 覆盖集合数组，与coveringFrom和coveringTo配合使用，调用者不得修改
+     */
+    public int[] getCoveringNodes() {
+        buildCoveringIndex();
+        return coveringNodes;
+    }
+
+    public int coveringFrom(int id) {
+        buildCoveringIndex();
+        return coveringOffsets[id];
+    }
+
+    public int coveringTo(int id) {
+        buildCoveringIndex();
+        return coveringOffsets[id + 1];
+    }
+
+    /**
+     * 按covNodeId计数排序，得到各节点的覆盖集合，每段内按编号升序排列
+     */
+    private void buildCoveringIndex() {
+        if (!coveringDirty)
+            return;
+        if (coveringOffsets == null) {
+            coveringOffsets = new int[nodeCount + 1];
+            coveringNodes = new int[nodeCount];
+        }
+        for (int c = 0; c < nodeCount; c++)
+            coveringOffsets[c + 1] = coveringOffsets[c] + coveringCount.get(c);
+        int[] cursor = Arrays.copyOf(coveringOffsets, nodeCount);
+        for (int v = 0, c; v < nodeCount; v++)
+            if ((c = covNodeId.get(v)) != -1 && c != v)
+                coveringNodes[cursor[c]++] = v;
+        coveringDirty = false;
+    }
+}
@@ -0,0 +1,201 @@
+package com.noah;
+
+import java.util.*;
+
+/**
+ * 节点视图，所有数据保存在NodeState的并行数组中，视图本身只记录节点编号，编号即其在NodeState中的下标，不能修改
+ * 不属于任何NodeState的独立节点使用Node
+ */
+public final class NodeView {
+    private final NodeState state;//视图所属的节点状态
+    private final int id;//节点编号
+
+    public NodeView(NodeState state, int id) {
+        this.state = state;
+        this.id = id;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Integer getParentId() {
+        return state.getParentId(id);
+    }
+
+    public void setParentId(Integer parentId) {
+        state.setParentId(id, parentId);
+    }
+
+    public Integer getRootId() {
+        return state.getRootId(id);
+    }
+
+    public void setRootId(Integer rootId) {
+        state.setRootId(id, rootId);
+    }
+
+    public Integer getActiveSlot() {
+        return state.getActiveSlot(id);
+    }
+
+    public void setActiveSlot(Integer activeSlot) {
+        state.setActiveSlot(id, activeSlot);
+    }
+
+    public Integer getLevel() {
+        return state.getLevel(id);
+    }
+
+    public void setLevel(Integer level) {
+        state.setLevel(id, level);
+    }
+
+    public Integer getCovNodeId() {
+        return state.getCovNodeId(id);
+    }
+
+    public void setCovNodeId(Integer covNodeId) {
+        state.setCovNodeId(id, covNodeId);
+    }
+
+    /**
+     * @return 传输时隙集合的实时视图，对其修改会写回NodeState
+     */
+    public Set<Integer> getTransSet() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = state.nextTransSlot(id, -1), last = NodeState.NO_SLOT;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != NodeState.NO_SLOT;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (next == NodeState.NO_SLOT)
+                            throw new NoSuchElementException();
+                        last = next;
+                        next = state.nextTransSlot(id, next + 1);
+                        return last;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == NodeState.NO_SLOT)
+                            throw new IllegalStateException();
+                        state.removeTransSlot(id, last);
+                        last = NodeState.NO_SLOT;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return state.getTransSlotCount(id);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && isSlot((Integer) o) && state.hasTransSlot(id, (Integer) o);
+            }
+
+            @Override
+            public boolean add(Integer slot) {
+                if (!isSlot(slot))
+                    throw new IllegalArgumentException("Slot out of range: " + slot);
+                return state.addTransSlot(id, slot);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return o instanceof Integer && isSlot((Integer) o) && state.removeTransSlot(id, (Integer) o);
+            }
+
+            @Override
+            public void clear() {
+                state.clearTransSlots(id);
+            }
+        };
+    }
+
+    public void setTransSet(Set<Integer> transSet) {
+        Set<Integer> view = getTransSet();
+        view.clear();
+        view.addAll(transSet);
+    }
+
+    /**
+     * @return 覆盖集合的只读视图
+     */
+    public Set<NodeView> getCoveringSet() {
+        return new AbstractSet<NodeView>() {
+            @Override
+            public Iterator<NodeView> iterator() {
+                return new Iterator<NodeView>() {
+                    private final int[] coveringNodes = state.getCoveringNodes();
+                    private final int to = state.coveringTo(id);
+                    private int k = state.coveringFrom(id);
+
+                    @Override
+                    public boolean hasNext() {
+                        return k < to;
+                    }
+
+                    @Override
+                    public NodeView next() {
+                        if (k >= to)
+                            throw new NoSuchElementException();
+                        return state.getNode(coveringNodes[k++]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return state.getCoveringCount(id);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof NodeView))
+                    return false;
+                NodeView n = (NodeView) o;
+                return n.state == state && n.id != id && state.getCovNodeId(n.id) == id;
+            }
+        };
+    }
+
+    /**
+     * 将coveringSet中的节点设为由当前节点覆盖，原先由当前节点覆盖的其他节点不再有覆盖节点
+     */
+    public void setCoveringSet(Set<NodeView> coveringSet) {
+        for (int v = 0; v < state.getNodeCount(); v++)
+            if (v != id && state.getCovNodeId(v) == id)
+                state.setCovNodeId(v, -1);
+        for (NodeView n : coveringSet)
+            state.setCovNodeId(n.id, id);
+    }
+
+    private boolean isSlot(int slot) {
+        return slot >= -1 && slot < state.getSlotCount();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof NodeView))
+            return false;
+        NodeView node = (NodeView) o;
+        return state == node.state && id == node.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+}
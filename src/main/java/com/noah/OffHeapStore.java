@@ -0,0 +1,382 @@
+package com.noah;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 保存在Java堆外的拓扑与调度状态
+ * 邻接表、活跃时隙、时隙索引和各节点的调度数组都放在直接缓冲区或内存映射文件中，既不占用堆也不被GC扫描。
+ * 二进制拓扑文件可以直接以只读方式映射；指定暂存文件时，其余数组也映射到该文件中，超出内存的部分由操作系统换页。
+ * 数组分块保存（见IntArray），因此单个数组不受ByteBuffer容量的限制。
+ * 邻接表和节点状态即以堆外存储建立的CsrGraph、SlotIndex和NodeState，calNodeLevel（LevelIndex.bfs）、各时隙的贪心覆盖（CoverEngine）
+ * 和calTransDelay（Graph.calTransDelay）与堆上运行的是同一份代码，结果相同；
+ * 建立和连接覆盖子树依赖主干集合的遍历顺序，仍由Graph在堆上完成，其结果可以用importSchedule载入后在堆外计算传输时延
+ */
+public class OffHeapStore implements Closeable {
+    private final FileChannel topologyChannel;//只读映射的拓扑文件，拓扑复制到堆外时为null
+    private final FileChannel scratchChannel;//暂存文件，为null时使用直接缓冲区
+    private long scratchSize;//暂存文件中已分配的字节数
+    private final int slotCount;
+    private final int[] rank;//重新编号的拓扑中各节点的原编号，未重新编号时为null，与byRank一同保存在堆上
+    private final int[] byRank;
+    private int maxLevel = -1;
+    private PhaseMetrics metrics;//为null时不记录
+
+    /**
+     * 从直接缓冲区或暂存文件中分配数组，映射失败时抛出UncheckedIOException
+     */
+    private final ArrayStorage storage = new ArrayStorage() {
+        @Override
+        public IntArray allocInts(int length) {
+            IntBuffer[] chunks = new IntBuffer[chunkCount(length, IntArray.CHUNK_SHIFT)];
+            for (int c = 0; c < chunks.length; c++)
+                chunks[c] = allocBytes(chunkLength(length, IntArray.CHUNK_SHIFT, c) << 2).asIntBuffer();
+            return IntArray.of(chunks);
+        }
+
+        @Override
+        public LongArray allocLongs(long length) {
+            LongBuffer[] chunks = new LongBuffer[chunkCount(length, LongArray.CHUNK_SHIFT)];
+            for (int c = 0; c < chunks.length; c++)
+                chunks[c] = allocBytes(chunkLength(length, LongArray.CHUNK_SHIFT, c) << 3).asLongBuffer();
+            return LongArray.of(chunks);
+        }
+    };
+
+    private CsrGraph adjTable;
+    private SlotIndex slotIndex;
+    private NodeState nodeState;
+    private LongArray backboneBits;
+    private int[] backboneOrder = new int[0];//最近一次importSchedule载入的主干节点，按backbone集合的遍历顺序排列
+
+    //工作数组
+    private IntArray position, queue, coveredBy, reachTime, childOffsets;
+    private CoverEngine engine;//按需建立，反复计算覆盖时复用
+
+    private OffHeapStore(FileChannel topologyChannel, Path scratchFile, int slotCount, int[] rank) throws IOException {
+        this.topologyChannel = topologyChannel;
+        this.scratchChannel = scratchFile == null ? null : FileChannel.open(scratchFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        this.slotCount = slotCount;
+        this.rank = rank;
+        if (rank == null)
+            byRank = null;
+        else {
+            byRank = new int[rank.length];
+            for (int i = 0; i < rank.length; i++)
+                byRank[rank[i]] = i;
+        }
+    }
+
+    /**
+     * 以只读方式映射二进制格式的拓扑文件，邻接表和活跃时隙不读入内存，访问时由操作系统按页载入
+     * 文件中没有保存遍历顺序时，按默认顺序在暂存区中计算
+     *
+     * @param scratchFile 存放调度数组与工作数组的暂存文件，关闭时删除，为null时使用直接缓冲区
+     */
+    public static OffHeapStore map(Path topologyFile, Path scratchFile) throws IOException {
+        FileChannel ch = FileChannel.open(topologyFile, StandardOpenOption.READ);
+        OffHeapStore store = null;
+        try {
+            int[] header = TopologyIO.readHeader(ch, topologyFile);
+            int nodeCount = header[2], arcCount = header[4], flags = header[5];
+            store = new OffHeapStore(ch, scratchFile, header[3], null);
+            long pos = TopologyIO.HEADER_INTS * 4L;
+            IntArray activeSlot = mapInts(ch, pos, nodeCount);
+            pos += nodeCount * 4L;
+            IntArray offsets = mapInts(ch, pos, nodeCount + 1);
+            pos += (nodeCount + 1) * 4L;
+            IntArray targets = mapInts(ch, pos, arcCount);
+            pos += arcCount * 4L;
+            IntArray order = (flags & TopologyIO.FLAG_ORDERED) != 0 ? mapInts(ch, pos, arcCount) : null;
+            store.init(activeSlot, offsets, targets, order, (flags & TopologyIO.FLAG_SYMMETRIC) != 0);
+            return store;
+        } catch (IOException | RuntimeException e) {
+            if (store != null)
+                store.close();
+            else
+                ch.close();
+            if (e instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e).getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * 将堆上的拓扑复制到堆外，包括各节点邻节点的遍历顺序和重新编号前的原编号
+     *
+     * @param scratchFile 存放拓扑、调度数组与工作数组的暂存文件，关闭时删除，为null时使用直接缓冲区
+     */
+    public static OffHeapStore copyOf(Topology topology, Path scratchFile) throws IOException {
+        CsrGraph adjTable = topology.getAdjTable().toCompact();
+        OffHeapStore store = new OffHeapStore(null, scratchFile, topology.getSlotCount(), topology.getOriginalIds());
+        try {
+            store.init(store.copy(topology.getActiveSlots()), store.copy(adjTable.getOffsets()), store.copy(adjTable.getTargets()),
+                    store.copy(adjTable.getOrderedTargets()), adjTable.isSymmetric());
+            return store;
+        } catch (UncheckedIOException e) {
+            store.close();
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            store.close();
+            throw e;
+        }
+    }
+
+    private IntArray copy(int[] src) {
+        IntArray result = storage.allocInts(src.length);
+        result.put(0, src, 0, src.length);
+        return result;
+    }
+
+    /**
+     * 建立邻接表、时隙索引和节点状态，分配工作数组
+     *
+     * @param order 各节点邻节点的遍历顺序，为null时按需计算
+     */
+    private void init(IntArray activeSlot, IntArray offsets, IntArray targets, IntArray order, boolean symmetric) {
+        int nodeCount = activeSlot.length();
+        adjTable = symmetric ? CsrGraph.symmetric(offsets, targets, order, storage) : new CsrGraph(offsets, targets, order, storage);
+        slotIndex = new SlotIndex(slotCount, activeSlot, adjTable, storage);
+        nodeState = new NodeState(activeSlot, slotCount, storage);
+        backboneBits = storage.allocLongs((nodeCount + 63) >>> 6);
+        position = storage.allocInts(nodeCount);
+        queue = storage.allocInts(nodeCount);
+        coveredBy = storage.allocInts(nodeCount);
+        reachTime = storage.allocInts(nodeCount);
+        childOffsets = storage.allocInts(nodeCount + 1);
+    }
+
+    /**
+     * 设置记录各阶段耗时与计数的对象，为null时不记录
+     */
+    public void setMetrics(PhaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getNodeCount() {
+        return nodeState.getNodeCount();
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getArcCount() {
+        return adjTable.getArcCount();
+    }
+
+    public int getActiveSlot(int id) {
+        return nodeState.getActiveSlot(id);
+    }
+
+    /**
+     * @return 最近一次computeLevels或importSchedule得到的最大层数，之前为-1
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    public int getLevel(int id) {
+        return nodeState.getLevel(id);
+    }
+
+    public int getParentId(int id) {
+        return nodeState.getParentId(id);
+    }
+
+    public int getRootId(int id) {
+        return nodeState.getRootId(id);
+    }
+
+    public int getCovNodeId(int id) {
+        return nodeState.getCovNodeId(id);
+    }
+
+    public boolean isInBackbone(int id) {
+        return (backboneBits.get(id >>> 6) & (1L << id)) != 0;
+    }
+
+    /**
+     * 按升序遍历传输时隙，用法与NodeState.nextTransSlot相同
+     *
+     * @return 节点id不小于from的第一个传输时隙，不存在时返回NodeState.NO_SLOT
+     */
+    public int nextTransSlot(int id, int from) {
+        return nodeState.nextTransSlot(id, from);
+    }
+
+    //===================================堆外计算===================================
+
+    /**
+     * 以源点0为根做BFS，求出各节点的层数和默认父节点，与Graph.calNodeLevel的结果相同
+     *
+     * @return 最大层数
+     * @throws UncheckedIOException 在暂存文件中计算遍历顺序时映射失败
+     */
+    public int computeLevels() {
+        long[] mark = metrics != null ? metrics.begin() : null;
+        maxLevel = LevelIndex.bfs(adjTable, nodeState.levels(), nodeState.parentIds(), position, queue);
+        if (metrics != null)
+            metrics.end(PhaseMetrics.Phase.LEVELS, mark);
+        return maxLevel;
+    }
+
+    /**
+     * 对所有时隙求贪心覆盖，清空并写入各节点的覆盖节点编号和传输时隙，与Graph.calSlotCovers的结果相同
+     *
+     * @return 各时隙选出的覆盖节点总数
+     * @throws IllegalStateException 某个活跃节点不在任何节点的邻接表中，无法被覆盖
+     * @throws UncheckedIOException  在暂存文件中分配反向图或工作数组时映射失败
+     */
+    public long computeCovers() {
+        long[] mark = metrics != null ? metrics.begin() : null;
+        if (engine == null)
+            engine = new CoverEngine(adjTable, slotIndex, rank, byRank, storage);
+        long heapPops = engine.getHeapPops(), neighborEvaluations = engine.getNeighborEvaluations();
+        for (int i = 0; i < getNodeCount(); i++) {
+            nodeState.setCovNodeId(i, -1);
+            nodeState.clearTransSlots(i);
+        }
+        IntArray activeNodes = slotIndex.activeNodes();
+        long selectedTotal = 0;
+        for (int t = 0; t < slotCount; t++) {
+            int[] selected = engine.cover(t, coveredBy);
+            selectedTotal += selected.length;
+            for (int x : selected)
+                nodeState.addTransSlot(x, t);
+            for (int i = slotIndex.activeFrom(t), v; i < slotIndex.activeTo(t); i++)
+                nodeState.setCovNodeId(v = activeNodes.get(i), coveredBy.get(v));
+        }
+        if (metrics != null) {
+            metrics.add(PhaseMetrics.Counter.COVER_ROUNDS, selectedTotal);
+            metrics.add(PhaseMetrics.Counter.HEAP_POPS, engine.getHeapPops() - heapPops);
+            metrics.add(PhaseMetrics.Counter.NEIGHBOR_EVALUATIONS, engine.getNeighborEvaluations() - neighborEvaluations);
+            metrics.end(PhaseMetrics.Phase.COVERS, mark);
+        }
+        return selectedTotal;
+    }
+
+    /**
+     * 载入调度结果中的层数、父节点、根节点、覆盖节点、传输时隙和广播主干
+     * 调度结果须由与本对象相同的拓扑计算得到；XXXXX的调度基于变换后的邻接表，不能在原拓扑上计算时延
+     */
+    public void importSchedule(Schedule schedule) {
+        if (schedule.getAlgorithm() != Schedule.Algorithm.LBAS)
+            throw new IllegalArgumentException("Only LBAS schedules run on the original adjacency: " + schedule.getAlgorithm());
+        if (schedule.getNodeCount() != getNodeCount() || schedule.getTopology().getSlotCount() != slotCount)
+            throw new IllegalArgumentException("Schedule does not match the stored topology");
+        NodeState source = schedule.getNodeState();
+        backboneBits.fill(0L);
+        maxLevel = -1;
+        for (int i = 0; i < getNodeCount(); i++) {
+            nodeState.setLevel(i, source.getLevel(i));
+            nodeState.setParentId(i, source.getParentId(i));
+            nodeState.setRootId(i, source.getRootId(i));
+            nodeState.setCovNodeId(i, source.getCovNodeId(i));
+            nodeState.clearTransSlots(i);
+            for (int t = source.nextTransSlot(i, -1); t != NodeState.NO_SLOT; t = source.nextTransSlot(i, t + 1))
+                nodeState.addTransSlot(i, t);
+            maxLevel = Math.max(maxLevel, source.getLevel(i));
+        }
+        backboneOrder = schedule.getBackboneOrder();
+        for (int id : backboneOrder)
+            backboneBits.set(id >>> 6, backboneBits.get(id >>> 6) | (1L << id));
+    }
+
+    /**
+     * 沿广播主干从源点开始计算各节点的到达时间，与Graph.calTransDelay的结果相同
+     *
+     * @return 最大传输时延
+     */
+    public int calTransDelay() {
+        long[] mark = metrics != null ? metrics.begin() : null;
+        int maxTime = Graph.calTransDelay(nodeState, slotIndex, backboneOrder, rank, reachTime, childOffsets);
+        if (metrics != null)
+            metrics.end(PhaseMetrics.Phase.DELAY, mark);
+        return maxTime;
+    }
+
+    /**
+     * 关闭映射的拓扑文件并删除暂存文件；映射区域在缓冲区被回收时才解除，关闭后不应再使用本对象
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (scratchChannel != null)
+                scratchChannel.close();
+        } finally {
+            if (topologyChannel != null)
+                topologyChannel.close();
+        }
+    }
+
+    //===================================分块数组===================================
+
+    private static int chunkCount(long length, int shift) {
+        return (int) ((length + (1L << shift) - 1) >>> shift);
+    }
+
+    private static long chunkLength(long length, int shift, int chunk) {
+        return Math.min(1L << shift, length - ((long) chunk << shift));
+    }
+
+    /**
+     * 分配bytes字节的零初始化区域，有暂存文件时映射到文件末尾，否则为直接缓冲区
+     */
+    private ByteBuffer allocBytes(long bytes) {
+        if (scratchChannel == null)
+            return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        try {
+            ByteBuffer mapped = scratchChannel.map(FileChannel.MapMode.READ_WRITE, scratchSize, bytes);
+            scratchSize += bytes;
+            return mapped.order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 以只读方式映射文件中从pos开始的length个小端序int
+     */
+    private static IntArray mapInts(FileChannel ch, long pos, int length) throws IOException {
+        if (pos + length * 4L > ch.size())
+            throw new EOFException("Truncated binary topology file");
+        IntBuffer[] chunks = new IntBuffer[chunkCount(length, IntArray.CHUNK_SHIFT)];
+        for (int c = 0; c < chunks.length; c++)
+            chunks[c] = ch.map(FileChannel.MapMode.READ_ONLY, pos + ((long) c << (IntArray.CHUNK_SHIFT + 2)),
+                    chunkLength(length, IntArray.CHUNK_SHIFT, c) << 2).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        return IntArray.of(chunks);
+    }
+
+    /**
+     * 在堆外计算二进制拓扑文件的层数和覆盖节点
+     * 用法：OffHeapStore &lt;二进制拓扑文件&gt; [暂存文件]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: OffHeapStore <binary topology> [scratch file]");
+            System.exit(1);
+        }
+        PhaseMetrics metrics = new PhaseMetrics();
+        try (OffHeapStore store = map(Paths.get(args[0]), args.length > 1 ? Paths.get(args[1]) : null)) {
+            store.setMetrics(metrics);
+            int levels = store.computeLevels();
+            long covers = store.computeCovers();
+            System.out.println("Nodes: " + store.getNodeCount() + ", arcs: " + store.getArcCount()
+                    + ", max level: " + levels + ", covering nodes: " + covers);
+            System.out.print(metrics.getReport());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.noah;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 各计算阶段的耗时、内存分配和操作计数
+ * 通过Graph.setMetrics或调度器的构造方法启用，未启用时各阶段只多一次判空。
+ * 计数以原子数组累加，同一对象可以由多个图或调度器在多个线程中共享，并可注册为MXBean供JConsole等工具读取。
+ * 内存分配只统计调用阶段的线程，并行计算覆盖节点时工作线程的分配不计入
+ */
+public class PhaseMetrics implements PhaseMetricsMXBean {
+    /**
+     * 计算阶段，TRANSFORM包含其中重新计算Level的时间，LEVELS也会单独计入这部分
+     */
+    public enum Phase {
+        LEVELS,//calNodeLevel
+        COVERS,//计算各时隙的覆盖节点并写入节点状态
+        SUBTREES,//建立覆盖子树
+        CONNECT,//连接各子树的根节点
+        TRANSFORM,//transformTopology
+        DELAY//calTransDelay
+    }
+
+    /**
+     * 操作计数
+     */
+    public enum Counter {
+        COVER_ROUNDS,//贪心覆盖选出的节点数
+        HEAP_POPS,//贪心覆盖的出堆次数，包括过期的项
+        NEIGHBOR_EVALUATIONS,//贪心覆盖中检查的邻节点数
+        ROOTS,//连接阶段处理的子树根节点数
+        CONNECTOR_PROBES,//连接阶段检查的候选连接节点数
+        GRANDPARENT_FALLBACKS,//LBAS找不到连接节点时退而使用祖父节点的次数
+        TWO_HOP_SEARCHES//XXXXX找不到连接节点时进行两跳搜索的次数
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final AtomicLongArray wallNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray allocatedBytes = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray invocations = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    /**
+     * 开始记录一个阶段
+     *
+     * @return 开始时刻与当前线程已分配的字节数，交给end使用
+     */
+    long[] begin() {
+        return new long[]{System.nanoTime(), threadAllocatedBytes()};
+    }
+
+    /**
+     * 结束记录一个阶段
+     */
+    void end(Phase phase, long[] mark) {
+        long now = System.nanoTime(), allocated = threadAllocatedBytes();
+        wallNanos.addAndGet(phase.ordinal(), now - mark[0]);
+        if (allocated >= 0 && mark[1] >= 0)
+            allocatedBytes.addAndGet(phase.ordinal(), allocated - mark[1]);
+        invocations.incrementAndGet(phase.ordinal());
+    }
+
+    void add(Counter counter, long delta) {
+        if (delta != 0)
+            counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     * @return 当前线程已分配的字节数，JVM不支持时为-1
+     */
+    private static long threadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public long getWallNanos(Phase phase) {
+        return wallNanos.get(phase.ordinal());
+    }
+
+    public long getAllocatedBytes(Phase phase) {
+        return allocatedBytes.get(phase.ordinal());
+    }
+
+    public long getInvocations(Phase phase) {
+        return invocations.get(phase.ordinal());
+    }
+
+    public long getCount(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    @Override
+    public Map<String, Long> getWallNanos() {
+        return toMap(wallNanos, Phase.values());
+    }
+
+    @Override
+    public Map<String, Long> getAllocatedBytes() {
+        return toMap(allocatedBytes, Phase.values());
+    }
+
+    @Override
+    public Map<String, Long> getInvocations() {
+        return toMap(invocations, Phase.values());
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return toMap(counters, Counter.values());
+    }
+
+    private static Map<String, Long> toMap(AtomicLongArray values, Enum<?>[] keys) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Enum<?> key : keys)
+            map.put(key.name(), values.get(key.ordinal()));
+        return map;
+    }
+
+    /**
+     * @return 各阶段的调用次数、总耗时、分配量及各操作计数组成的表格
+     */
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-10s %8s %12s %12s%n", "Phase", "Calls", "Wall(ms)", "Alloc(KB)"));
+        for (Phase phase : Phase.values())
+            sb.append(String.format(Locale.ROOT, "%-10s %8d %12.3f %12d%n", phase, getInvocations(phase),
+                    getWallNanos(phase) / 1e6, getAllocatedBytes(phase) >> 10));
+        for (Counter counter : Counter.values())
+            sb.append(String.format(Locale.ROOT, "%-22s %12d%n", counter, getCount(counter)));
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < wallNanos.length(); i++) {
+            wallNanos.set(i, 0);
+            allocatedBytes.set(i, 0);
+            invocations.set(i, 0);
+        }
+        for (int i = 0; i < counters.length(); i++)
+            counters.set(i, 0);
+    }
+
+    /**
+     * 注册到平台MBeanServer，名称为com.noah:type=PhaseMetrics,name=name
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.noah:type=PhaseMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics MBean: " + name, e);
+        }
+    }
+
+    public void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics MBean: " + objectName, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+}
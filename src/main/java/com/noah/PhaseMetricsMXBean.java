@@ -0,0 +1,20 @@
+package com.noah;
+
+import java.util.Map;
+
+/**
+ * PhaseMetrics的JMX接口，各项以阶段名或计数器名为键
+ */
+public interface PhaseMetricsMXBean {
+    Map<String, Long> getWallNanos();
+
+    Map<String, Long> getAllocatedBytes();
+
+    Map<String, Long> getInvocations();
+
+    Map<String, Long> getCounters();
+
+    String getReport();
+
+    void reset();
+}
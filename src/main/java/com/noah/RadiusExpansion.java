@@ -0,0 +1,216 @@
+package com.noah;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 扩大部分节点的广播半径：被选中节点的邻节点变为其radius跳以内的所有节点（不含自身），其余节点保持一跳邻节点
+ * 各节点的k跳邻域由深度受限的BFS求出，用时间戳数组去重，节点之间互不依赖，可按节点分块并行计算。
+ * 需要对同一拓扑扫描多个hotspotBorder时，可先建立RadiusExpansion对象求出所有节点的k跳邻域，
+ * 之后每个hotspotBorder只需O(N)的代价通过view得到邻接表视图，不再重复扩展。
+ * 扩展后各节点邻节点的遍历顺序与原实现相同：原实现先以new HashSet&lt;&gt;(N(v))拷贝邻接表，
+ * 再按N(v)的遍历顺序依次addAll各邻节点的邻接表，最后删除v自身，这里按同样的插入序列由HashOrder求出
+ */
+public class RadiusExpansion {
+    private static final int CHUNK = 1 << 10;//每个分块的节点数
+
+    private final CsrGraph base;//原始拓扑的邻接表
+    private final int[] keys;//各节点的哈希值，即重新编号前的原编号，未重新编号时为null
+    private final int radius;
+    private final int[] targets;//前半部分为所有节点的一跳邻域，后半部分为所有节点的k跳邻域
+    private final int[] order;//与targets对应的遍历顺序
+    private final int[] nearOffsets;//一跳邻域在targets中的偏移
+    private final int[] farOffsets;//k跳邻域在targets中的偏移，已加上一跳邻域的总长度
+
+    /**
+     * 预先求出所有节点的k跳邻域
+     *
+     * @param base     原始拓扑的邻接表
+     * @param radius   扩大后的广播半径，不小于1
+     * @param parallel 是否并行计算
+     */
+    public RadiusExpansion(CsrGraph base, int radius, boolean parallel) {
+        this(base, null, radius, parallel);
+    }
+
+    /**
+     * 在拓扑的邻接表上预先求出所有节点的k跳邻域，重新编号的拓扑以原编号计算遍历顺序
+     */
+    public RadiusExpansion(Topology topology, int radius, boolean parallel) {
+        this(topology.getAdjTable(), topology.getOriginalIds(), radius, parallel);
+    }
+
+    /**
+     * @param keys 各节点的哈希值，即重新编号前的原编号，未重新编号时为null
+     */
+    RadiusExpansion(CsrGraph base, int[] keys, int radius, boolean parallel) {
+        this.base = base.toCompact();
+        this.keys = keys;
+        this.radius = radius;
+        CsrGraph near = expand(this.base, keys, v -> false, radius, parallel);//去掉自环的一跳邻域
+        CsrGraph far = expand(this.base, keys, v -> true, radius, parallel);
+        int[] nearTargets = near.getTargets(), farTargets = far.getTargets();
+        targets = Arrays.copyOf(nearTargets, nearTargets.length + farTargets.length);
+        System.arraycopy(farTargets, 0, targets, nearTargets.length, farTargets.length);
+        order = Arrays.copyOf(near.getOrderedTargets(), targets.length);
+        System.arraycopy(far.getOrderedTargets(), 0, order, nearTargets.length, farTargets.length);
+        nearOffsets = near.getOffsets();
+        farOffsets = far.getOffsets();
+        for (int v = 0; v < farOffsets.length; v++)
+            farOffsets[v] += nearTargets.length;
+    }
+
+    public CsrGraph getBase() {
+        return base;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return 计算遍历顺序所用的各节点哈希值，未重新编号时为null
+     */
+    int[] getKeys() {
+        return keys;
+    }
+
+    /**
+     * 得到部分节点扩大广播半径后的邻接表视图，与expand的结果相同，复杂度为O(N)
+     *
+     * @param expanded 判断节点是否扩大广播半径
+     */
+    public CsrGraph view(IntPredicate expanded) {
+        int nodeCount = base.getNodeCount();
+        int[] starts = new int[nodeCount], ends = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            int[] offsets = expanded.test(v) ? farOffsets : nearOffsets;
+            starts[v] = offsets[v];
+            ends[v] = offsets[v + 1];
+        }
+        return CsrGraph.view(starts, ends, targets, order);
+    }
+
+    /**
+     * 扩大部分节点的广播半径，得到紧凑的邻接表
+     *
+     * @param base     原始拓扑的邻接表
+     * @param expanded 判断节点是否扩大广播半径
+     * @param radius   扩大后的广播半径，不小于1
+     * @param parallel 是否按节点分块并行计算
+     * @return 新的邻接表，各段有序，不含自环
+     */
+    public static CsrGraph expand(CsrGraph base, IntPredicate expanded, int radius, boolean parallel) {
+        return expand(base, null, expanded, radius, parallel);
+    }
+
+    /**
+     * @param keys 各节点的哈希值，即重新编号前的原编号，未重新编号时为null
+     */
+    static CsrGraph expand(CsrGraph base, int[] keys, IntPredicate expanded, int radius, boolean parallel) {
+        if (radius < 1)
+            throw new IllegalArgumentException("Radius must be at least 1: " + radius);
+        int nodeCount = base.getNodeCount();
+        int chunks = (nodeCount + CHUNK - 1) / CHUNK;
+        int[][] chunkTargets = new int[chunks][], chunkOrder = new int[chunks][];
+        int[] chunkSizes = new int[chunks];
+        int[] offsets = new int[nodeCount + 1];//先记录各节点在所在分块中的结束位置
+
+        int workers = parallel ? Math.min(chunks, Runtime.getRuntime().availableProcessors()) : 1;
+        IntStream range = IntStream.range(0, workers);
+        if (workers > 1)
+            range = range.parallel();
+        range.forEach(w -> {
+            Expander expander = new Expander(base, keys);
+            for (int c = w; c < chunks; c += workers) {
+                int from = c * CHUNK, to = Math.min(nodeCount, from + CHUNK);
+                expander.size = 0;
+                for (int v = from; v < to; v++) {
+                    expander.expand(v, expanded.test(v) ? radius : 1);
+                    offsets[v + 1] = expander.size;
+                }
+                chunkTargets[c] = Arrays.copyOf(expander.sorted, expander.size);
+                chunkOrder[c] = Arrays.copyOf(expander.buffer, expander.size);
+                chunkSizes[c] = expander.size;
+            }
+        });
+
+        //拼接各分块，分块内的偏移加上之前所有分块的长度
+        int[] targets = new int[Arrays.stream(chunkSizes).sum()], order = new int[targets.length];
+        int shift = 0;
+        for (int c = 0; c < chunks; c++) {
+            System.arraycopy(chunkTargets[c], 0, targets, shift, chunkSizes[c]);
+            System.arraycopy(chunkOrder[c], 0, order, shift, chunkSizes[c]);
+            for (int v = c * CHUNK; v < Math.min(nodeCount, (c + 1) * CHUNK); v++)
+                offsets[v + 1] += shift;
+            shift += chunkSizes[c];
+        }
+        return new CsrGraph(offsets, targets, order);
+    }
+
+    /**
+     * 单个线程使用的扩展状态，时间戳、队列与输出缓冲在多个节点之间复用
+     */
+    private static class Expander {
+        private final CsrGraph base;
+        private final int[] ordered;//原始拓扑的遍历顺序
+        private final int[] keys;
+        private final HashOrder hashOrder = new HashOrder();
+        private final int[] stamp;//stamp[u] == v + 1表示u已加入v的邻域
+        private int[] frontier, next;
+        private int[] buffer;//各节点的邻域，按遍历顺序排列
+        private int[] sorted;//各节点的邻域，按编号升序排列
+        private int size;
+
+        Expander(CsrGraph base, int[] keys) {
+            this.base = base;
+            this.ordered = base.getOrderedTargets();
+            this.keys = keys;
+            this.stamp = new int[base.getNodeCount()];
+            this.frontier = new int[16];
+            this.next = new int[16];
+            this.buffer = new int[Math.max(16, CHUNK * 4)];
+            this.sorted = new int[buffer.length];
+        }
+
+        /**
+         * 将v的radius跳以内的节点（不含自身）按遍历顺序追加到buffer，按编号升序追加到sorted
+         * 插入序列为v的邻接表，再依次为上一跳各节点的邻接表；v自身在插入时计入集合的大小，最后删除
+         */
+        void expand(int v, int radius) {
+            int begin = size, mark = v + 1;
+            int frontierSize = 1, nextSize;
+            frontier[0] = v;
+            for (int d = 1; d <= radius && frontierSize > 0; d++) {
+                nextSize = 0;
+                for (int i = 0; i < frontierSize; i++) {
+                    int x = frontier[i];
+                    for (int k = base.from(x); k < base.to(x); k++) {
+                        int u = ordered[k];
+                        if (stamp[u] != mark) {
+                            stamp[u] = mark;
+                            if (size == buffer.length) {
+                                buffer = Arrays.copyOf(buffer, size << 1);
+                                sorted = Arrays.copyOf(sorted, size << 1);
+                            }
+                            buffer[size++] = u;
+                            if (d < radius && u != v) {
+                                if (nextSize == next.length)
+                                    next = Arrays.copyOf(next, nextSize << 1);
+                                next[nextSize++] = u;
+                            }
+                        }
+                    }
+                }
+                int[] t = frontier;
+                frontier = next;
+                next = t;
+                frontierSize = nextSize;
+            }
+            size = hashOrder.arrange(buffer, begin, size, keys, HashOrder.copyCapacity(base.degree(v)), v);
+            System.arraycopy(buffer, begin, sorted, begin, size - begin);
+            Arrays.sort(sorted, begin, size);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.noah;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * 提高访存局部性的节点重新编号
+ * 输入文件或autoInit给出的编号与拓扑结构无关，邻节点在各数组中分散存放，BFS、覆盖和时延计算都难以命中缓存。
+ * 按BFS、Reverse Cuthill–McKee或按层的顺序重新编号后，相邻节点的编号相近，各算法在重新编号的拓扑上运行，
+ * 结果再由restore映射回原编号。源点的编号始终为0。
+ * 重新编号的拓扑记录各节点的原编号，各算法中按编号比较或按哈希排列之处都改用原编号，邻节点的遍历顺序也随邻接表一同映射，
+ * 因此映射回原编号的调度结果与直接在原拓扑上调度的结果完全相同
+ */
+public class Renumbering {
+    /**
+     * 重新编号的顺序
+     */
+    public enum Order {
+        BFS,//从源点出发、按编号升序访问邻节点的BFS顺序
+        RCM,//Reverse Cuthill–McKee顺序，源点移至最前
+        LEVEL_MAJOR//按(层数, 原编号)排列
+    }
+
+    private final Topology original;
+    private final Topology topology;//重新编号的拓扑
+    private final int[] newId;//newId[v]为原拓扑中节点v的新编号
+    private final int[] oldId;//oldId[i]为新编号为i的节点在原拓扑中的编号
+
+    private Renumbering(Topology original, int[] oldId) {
+        int nodeCount = original.getNodeCount();
+        this.original = original;
+        this.oldId = oldId;
+        newId = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+            newId[oldId[i]] = i;
+
+        //各节点的邻节点换为新编号，按原拓扑中的遍历顺序排列即为新拓扑的遍历顺序，再排序得到新拓扑的邻接表；
+        //原拓扑本身重新编号过时，原编号取最初的编号
+        CsrGraph adjTable = original.getAdjTable();
+        int[] targets = adjTable.getOrderedTargets();
+        int[] offsets = new int[nodeCount + 1];
+        int[] ordered = new int[adjTable.getArcCount()];
+        int[] relabeled = new int[ordered.length];
+        int[] activeSlot = new int[nodeCount];
+        int[] baseIds = original.getOriginalIds();
+        int[] originalIds = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int v = oldId[i];
+            offsets[i + 1] = offsets[i] + adjTable.degree(v);
+            for (int k = adjTable.from(v), pos = offsets[i]; k < adjTable.to(v); k++)
+                ordered[pos++] = newId[targets[k]];
+            System.arraycopy(ordered, offsets[i], relabeled, offsets[i], offsets[i + 1] - offsets[i]);
+            Arrays.sort(relabeled, offsets[i], offsets[i + 1]);
+            activeSlot[i] = original.getActiveSlot(v);
+            originalIds[i] = baseIds == null ? v : baseIds[v];
+        }
+        CsrGraph graph = adjTable.isSymmetric() ? CsrGraph.symmetric(offsets, relabeled, ordered) : new CsrGraph(offsets, relabeled, ordered);
+        topology = new Topology(original.getSlotCount(), activeSlot, graph, originalIds);
+    }
+
+    /**
+     * 按指定顺序重新编号
+     */
+    public static Renumbering of(Topology topology, Order order) {
+        switch (order) {
+            case BFS:
+                return new Renumbering(topology, bfsOrder(topology.getAdjTable()));
+            case RCM:
+                return new Renumbering(topology, rcmOrder(topology.getAdjTable()));
+            case LEVEL_MAJOR:
+                return new Renumbering(topology, levelMajorOrder(topology.getAdjTable()));
+            default:
+                throw new IllegalArgumentException("Unknown order: " + order);
+        }
+    }
+
+    public Topology getOriginal() {
+        return original;
+    }
+
+    /**
+     * @return 重新编号的拓扑，在其上运行各调度器
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public int toNewId(int id) {
+        return newId[id];
+    }
+
+    public int toOriginalId(int id) {
+        return oldId[id];
+    }
+
+    /**
+     * 将重新编号的拓扑上的调度结果映射回原编号
+     * 调度实际使用的邻接表和时隙索引由新的调度结果在原拓扑上按需重建
+     *
+     * @param schedule 在getTopology()上得到的调度结果
+     */
+    public Schedule restore(Schedule schedule) {
+        if (schedule.getTopology() != topology)
+            throw new IllegalArgumentException("Schedule was not computed on this renumbered topology");
+        int nodeCount = topology.getNodeCount();
+        NodeState relabeled = schedule.getNodeState();
+        NodeState nodeState = new NodeState(original.getActiveSlots(), original.getSlotCount());
+        for (int i = 0; i < nodeCount; i++) {
+            int v = oldId[i];
+            nodeState.setLevel(v, relabeled.getLevel(i));
+            nodeState.setParentId(v, toOld(relabeled.getParentId(i)));
+            nodeState.setRootId(v, toOld(relabeled.getRootId(i)));
+            nodeState.setCovNodeId(v, toOld(relabeled.getCovNodeId(i)));
+            for (int t = relabeled.nextTransSlot(i, -1); t != NodeState.NO_SLOT; t = relabeled.nextTransSlot(i, t + 1))
+                nodeState.addTransSlot(v, t);
+        }
+        int[] backbone = schedule.getBackboneOrder().clone();//重新编号的拓扑上主干集合保存原编号，遍历顺序与原拓扑上的相同
+        for (int k = 0; k < backbone.length; k++)
+            backbone[k] = oldId[backbone[k]];
+        return new Schedule(schedule.getAlgorithm(), schedule.getHotspotBorder(), schedule.getRadius(), original,
+                null, null, nodeState, backbone, schedule.getTransDelay(), schedule.getTotalTrans());
+    }
+
+    private int toOld(int id) {
+        return id < 0 ? id : oldId[id];
+    }
+
+    //===================================各种顺序===================================
+
+    /**
+     * 从源点出发的BFS顺序，源点不可达的节点按编号排在最后
+     */
+    static int[] bfsOrder(CsrGraph adjTable) {
+        int nodeCount = adjTable.getNodeCount();
+        int[] order = new int[nodeCount];
+        boolean[] visited = new boolean[nodeCount];
+        int size = bfs(adjTable, 0, order, 0, visited);
+        for (int v = 0; v < nodeCount; v++)
+            if (!visited[v])
+                order[size++] = v;
+        return order;
+    }
+
+    /**
+     * 按(层数, 编号)排列，源点不可达的节点按编号排在最后
+     */
+    static int[] levelMajorOrder(CsrGraph adjTable) {
+        int nodeCount = adjTable.getNodeCount();
+        LevelIndex levels = new LevelIndex();
+        levels.compute(adjTable, false);
+        int[] offsets = new int[levels.getMaxLevel() + 3];//最后一段为不可达节点
+        for (int v = 0; v < nodeCount; v++)
+            offsets[bucket(levels, v) + 1]++;
+        for (int l = 0; l + 1 < offsets.length; l++)
+            offsets[l + 1] += offsets[l];
+        int[] order = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++)
+            order[offsets[bucket(levels, v)]++] = v;
+        return order;
+    }
+
+    private static int bucket(LevelIndex levels, int v) {
+        return levels.getLevel(v) == -1 ? levels.getMaxLevel() + 1 : levels.getLevel(v);
+    }
+
+    /**
+     * Reverse Cuthill–McKee顺序：各连通部分从伪外围节点出发，按度数升序访问邻节点的BFS，整体反转后将源点移至最前
+     */
+    static int[] rcmOrder(CsrGraph adjTable) {
+        int nodeCount = adjTable.getNodeCount();
+        int[] order = new int[nodeCount];
+        boolean[] visited = new boolean[nodeCount];
+        int[] level = new int[nodeCount];
+        int size = 0;
+        for (int v = 0; v < nodeCount; v++)
+            if (!visited[v]) {
+                int start = peripheralNode(adjTable, v, level);
+                size = cuthillMcKee(adjTable, start, order, size, visited);
+            }
+
+        //反转，源点之前的节点依次后移一位
+        int[] result = new int[nodeCount];
+        result[0] = 0;
+        for (int k = nodeCount - 1, pos = 1; k >= 0; k--)
+            if (order[k] != 0)
+                result[pos++] = order[k];
+        return result;
+    }
+
+    /**
+     * 从v出发反复BFS，取最后一层中度数最小的节点作为新的起点，直到离心率不再增大，得到伪外围节点
+     *
+     * @param level 工作数组，长度为节点数
+     */
+    private static int peripheralNode(CsrGraph adjTable, int v, int[] level) {
+        int[] targets = adjTable.getTargets();
+        int[] queue = new int[16];
+        int start = v, eccentricity = -1;
+        while (true) {
+            //level为0表示未访问，每次BFS后只复位访问到的节点
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            level[start] = 1;
+            while (head < tail) {
+                int u = queue[head++];
+                for (int k = adjTable.from(u); k < adjTable.to(u); k++)
+                    if (level[targets[k]] == 0) {
+                        level[targets[k]] = level[u] + 1;
+                        queue = ensure(queue, tail + 1);
+                        queue[tail++] = targets[k];
+                    }
+            }
+            int depth = level[queue[tail - 1]], next = queue[tail - 1];
+            for (int i = tail - 1; i >= 0 && level[queue[i]] == depth; i--)
+                if (adjTable.degree(queue[i]) <= adjTable.degree(next))
+                    next = queue[i];
+            for (int i = 0; i < tail; i++)
+                level[queue[i]] = 0;
+            if (depth <= eccentricity)
+                return start;
+            eccentricity = depth;
+            start = next;
+        }
+    }
+
+    private static int[] ensure(int[] a, int length) {
+        return length <= a.length ? a : Arrays.copyOf(a, Math.max(length, a.length << 1));
+    }
+
+    /**
+     * 从start出发的BFS，依次写入order[size...]
+     *
+     * @return 写入后order中的节点数
+     */
+    private static int bfs(CsrGraph adjTable, int start, int[] order, int size, boolean[] visited) {
+        int[] targets = adjTable.getTargets();
+        int head = size;
+        visited[start] = true;
+        order[size++] = start;
+        while (head < size) {
+            int u = order[head++];
+            for (int k = adjTable.from(u); k < adjTable.to(u); k++)
+                if (!visited[targets[k]]) {
+                    visited[targets[k]] = true;
+                    order[size++] = targets[k];
+                }
+        }
+        return size;
+    }
+
+    /**
+     * 从start出发、按(度数, 编号)升序访问未访问邻节点的BFS，依次写入order[size...]
+     */
+    private static int cuthillMcKee(CsrGraph adjTable, int start, int[] order, int size, boolean[] visited) {
+        int[] targets = adjTable.getTargets();
+        long[] keys = new long[16];
+        int head = size;
+        visited[start] = true;
+        order[size++] = start;
+        while (head < size) {
+            int u = order[head++], count = 0;
+            for (int k = adjTable.from(u); k < adjTable.to(u); k++)
+                if (!visited[targets[k]]) {
+                    visited[targets[k]] = true;
+                    if (count == keys.length)
+                        keys = Arrays.copyOf(keys, count << 1);
+                    keys[count++] = (long) adjTable.degree(targets[k]) << 32 | targets[k];
+                }
+            Arrays.sort(keys, 0, count);
+            for (int i = 0; i < count; i++)
+                order[size++] = (int) keys[i];
+        }
+        return size;
+    }
+
+    /**
+     * 用法：Renumbering &lt;拓扑文件&gt; [BFS|RCM|LEVEL_MAJOR]
+     * 分别在原拓扑和重新编号的拓扑上计算LBAS调度，输出耗时并检查结果是否相同
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: Renumbering <topology> [BFS|RCM|LEVEL_MAJOR]");
+            System.exit(1);
+        }
+        Topology topology = TopologyIO.read(Paths.get(args[0]));
+        Order order = args.length > 1 ? Order.valueOf(args[1]) : Order.RCM;
+
+        long start = System.nanoTime();
+        Schedule expected = new LBASScheduler(topology).schedule();
+        long direct = System.nanoTime() - start;
+        start = System.nanoTime();
+        Renumbering renumbering = of(topology, order);
+        long relabel = System.nanoTime() - start;
+        start = System.nanoTime();
+        Schedule actual = renumbering.restore(new LBASScheduler(renumbering.getTopology()).schedule());
+        long renumbered = System.nanoTime() - start;
+
+        System.out.println("Original: " + direct / 1000000 + " ms, renumbering (" + order + "): " + relabel / 1000000
+                + " ms, renumbered schedule: " + renumbered / 1000000 + " ms");
+        System.out.println("Identical: " + (Arrays.equals(expected.getBackbone(), actual.getBackbone())
+                && expected.getTransDelay() == actual.getTransDelay() && expected.getTotalTrans() == actual.getTotalTrans()));
+    }
+}
@@ -0,0 +1,174 @@
+package com.noah;
+
+/**
+ * 一次调度的结果：广播主干、各节点的父节点、覆盖节点和传输时隙
+ * 由LBASScheduler或XXXXXScheduler产生，构造后不再改变，可以在多个线程之间共享
+ */
+public class Schedule {
+    /**
+     * 产生调度结果的算法
+     */
+    public enum Algorithm {
+        LBAS, XXXXX
+    }
+
+    private final Algorithm algorithm;
+    private final int hotspotBorder;//XXXXX变换拓扑使用的热点区域边界，LBAS为-1
+    private final int radius;//热点区域外节点的广播半径，LBAS为1
+    private final Topology topology;//调度所基于的原始拓扑
+    private CsrGraph adjTable;//调度实际使用的邻接表，XXXXX为变换后的拓扑，从文件载入时按需重建
+    private SlotIndex slotIndex;
+    private final NodeState nodeState;//调度完成后的节点状态，只读
+    private final int[] backbone;//广播主干节点编号，升序排列
+    private final int[] backboneOrder;//广播主干节点编号，按建立主干时backbone集合的遍历顺序排列
+    private final boolean[] inBackbone;
+    private final int transDelay;
+    private final int totalTrans;
+
+    /**
+     * @param backbone 广播主干节点编号，按backbone集合的遍历顺序排列，它决定了时延计算中子节点的顺序
+     */
+    Schedule(Algorithm algorithm, int hotspotBorder, int radius, Topology topology, CsrGraph adjTable, SlotIndex slotIndex,
+             NodeState nodeState, int[] backbone, int transDelay, int totalTrans) {
+        this.algorithm = algorithm;
+        this.hotspotBorder = hotspotBorder;
+        this.radius = radius;
+        this.topology = topology;
+        this.adjTable = adjTable;
+        this.slotIndex = slotIndex;
+        this.nodeState = nodeState;
+        this.backboneOrder = backbone;
+        this.backbone = backbone.clone();
+        java.util.Arrays.sort(this.backbone);
+        this.transDelay = transDelay;
+        this.totalTrans = totalTrans;
+        inBackbone = new boolean[nodeState.getNodeCount()];
+        for (int id : backbone)
+            inBackbone[id] = true;
+        nodeState.getCoveringNodes();//覆盖集合按需建立，构造时先建好，此后节点状态只被读取
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getHotspotBorder() {
+        return hotspotBorder;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @return 调度实际使用的邻接表，LBAS即为原始拓扑的邻接表
+     */
+    public synchronized CsrGraph getAdjTable() {
+        if (adjTable == null) {
+            //变换拓扑只取决于原拓扑上的Level，重新计算即可得到与调度时相同的结果
+            if (algorithm == Algorithm.LBAS)
+                adjTable = topology.getAdjTable();
+            else {
+                LevelIndex levels = new LevelIndex();
+                levels.compute(topology.getAdjTable(), false);
+                adjTable = RadiusExpansion.expand(topology.getAdjTable(), i -> levels.getLevel(i) > hotspotBorder, radius, false);
+            }
+        }
+        return adjTable;
+    }
+
+    synchronized SlotIndex getSlotIndex() {
+        if (slotIndex == null)
+            slotIndex = new SlotIndex(topology.getSlotCount(), topology.getActiveSlots(), getAdjTable());
+        return slotIndex;
+    }
+
+    public int getNodeCount() {
+        return inBackbone.length;
+    }
+
+    /**
+     * @return 广播主干节点编号数组的拷贝，升序排列
+     */
+    public int[] getBackbone() {
+        return backbone.clone();
+    }
+
+    /**
+     * 按backbone集合的遍历顺序排列的主干节点，调用者不得修改
+     * 同一父节点的子节点按这一顺序插入HashSet，其遍历顺序即Graph.calTransDelay中子节点的入队顺序
+     */
+    int[] getBackboneOrder() {
+        return backboneOrder;
+    }
+
+    public boolean isInBackbone(int id) {
+        return inBackbone[id];
+    }
+
+    public int getLevel(int id) {
+        return nodeState.getLevel(id);
+    }
+
+    public int getParentId(int id) {
+        return nodeState.getParentId(id);
+    }
+
+    public int getRootId(int id) {
+        return nodeState.getRootId(id);
+    }
+
+    public int getCovNodeId(int id) {
+        return nodeState.getCovNodeId(id);
+    }
+
+    /**
+     * @return 以节点id为覆盖节点的其他节点，升序排列
+     */
+    public int[] getCoveringNodes(int id) {
+        return java.util.Arrays.copyOfRange(nodeState.getCoveringNodes(), nodeState.coveringFrom(id), nodeState.coveringTo(id));
+    }
+
+    /**
+     * @return 节点id的传输时隙，升序排列
+     */
+    public int[] getTransSlots(int id) {
+        int[] slots = new int[nodeState.getTransSlotCount(id)];
+        int cnt = 0;
+        for (int t = nodeState.nextTransSlot(id, -1); t != NodeState.NO_SLOT; t = nodeState.nextTransSlot(id, t + 1))
+            slots[cnt++] = t;
+        return slots;
+    }
+
+    /**
+     * @return 从开始广播到消息传送到网络中每个节点所用的总时隙数
+     */
+    public int getTransDelay() {
+        return transDelay;
+    }
+
+    /**
+     * @return 广播所用的传输次数之和
+     */
+    public int getTotalTrans() {
+        return totalTrans;
+    }
+
+    /**
+     * 节点状态，供序列化使用，调用者不得修改
+     */
+    NodeState getNodeState() {
+        return nodeState;
+    }
+
+    /**
+     * 按本调度进行基于事件的广播模拟
+     */
+    public BroadcastReport simulate(int source) {
+        return new BroadcastSimulator(getSlotIndex(), nodeState).simulate(source);
+    }
+}
@@ -0,0 +1,271 @@
+package com.noah;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 调度结果缓存，键为拓扑的内容指纹（SHA-256摘要，见Topology.getFingerprint）与算法参数
+ * 内存中按最近访问顺序保留至多capacity个调度结果，超出时淘汰最久未访问的项；
+ * 指定溢出目录时，被淘汰的调度结果以二进制格式写入该目录，之后再次查询时从文件载入而不重新计算。
+ * 内容相同的拓扑共享缓存项，命中时返回的调度结果的getTopology可能是最早查询时使用的拓扑对象。
+ * 二进制格式（小端序int）：
+ * <pre>
+ * magic  version  algorithm  hotspotBorder  radius  nodeCount  slotCount  backboneSize  transCount  transDelay  totalTrans  fingerprint[8]
+ * level[nodeCount]  parentId[nodeCount]  rootId[nodeCount]  covNodeId[nodeCount]
+ * backbone[backboneSize]（按建立主干时backbone集合的遍历顺序）
+ * transOffsets[nodeCount + 1]  transSlots[transCount]
+ * </pre>
+ */
+public class ScheduleCache {
+    private static final int MAGIC = 0x44484353;//"SCHD"
+    private static final int VERSION = 3;
+    private static final int HEADER_INTS = 19;
+    private static final String SUFFIX = ".sched";
+
+    private final int capacity;
+    private final Path spillDir;//溢出目录，为null时不写入文件
+    private final LinkedHashMap<String, Schedule> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hitCount, diskHitCount, missCount;
+
+    public ScheduleCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity 内存中保留的调度结果数
+     * @param spillDir 被淘汰的调度结果的溢出目录，为null时直接丢弃
+     */
+    public ScheduleCache(int capacity, Path spillDir) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.spillDir = spillDir;
+        if (spillDir != null)
+            try {
+                Files.createDirectories(spillDir);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot create spill directory: " + spillDir, e);
+            }
+    }
+
+    public Schedule getLBAS(Topology topology) {
+        return get(topology, Schedule.Algorithm.LBAS, -1, 1);
+    }
+
+    public Schedule getXXXXX(Topology topology, int hotspotBorder) {
+        return getXXXXX(topology, hotspotBorder, 2);
+    }
+
+    public Schedule getXXXXX(Topology topology, int hotspotBorder, int radius) {
+        return get(topology, Schedule.Algorithm.XXXXX, hotspotBorder, radius);
+    }
+
+    /**
+     * 依次查询内存、溢出目录，都未命中时计算调度结果
+     * 计算和读写文件时不持有锁，多个线程同时查询同一未命中的键时可能重复计算，结果相同
+     */
+    private Schedule get(Topology topology, Schedule.Algorithm algorithm, int hotspotBorder, int radius) {
+        String key = topology.getFingerprint() + "-" + algorithm + "-" + hotspotBorder + "-" + radius;
+        synchronized (this) {
+            Schedule schedule = entries.get(key);
+            if (schedule != null) {
+                hitCount++;
+                return schedule;
+            }
+        }
+
+        //损坏或与拓扑不符的溢出文件按未命中处理并删除，之后淘汰时会重新写入
+        Schedule schedule = null;
+        Path spilled = spillDir != null ? spillDir.resolve(key + SUFFIX) : null;
+        if (spilled != null && Files.exists(spilled))
+            try {
+                schedule = read(spilled, topology, algorithm, hotspotBorder, radius);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                try {
+                    Files.deleteIfExists(spilled);
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        boolean fromDisk = schedule != null;
+        if (schedule == null)
+            schedule = algorithm == Schedule.Algorithm.LBAS ? new LBASScheduler(topology).schedule() :
+                    new XXXXXScheduler(topology, radius, false).schedule(hotspotBorder);
+
+        List<Map.Entry<String, Schedule>> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (fromDisk)
+                diskHitCount++;
+            else
+                missCount++;
+            entries.put(key, schedule);
+            Iterator<Map.Entry<String, Schedule>> it = entries.entrySet().iterator();
+            while (entries.size() > capacity) {
+                evicted.add(it.next());
+                it.remove();
+            }
+        }
+        if (spillDir != null)
+            for (Map.Entry<String, Schedule> entry : evicted) {
+                Path path = spillDir.resolve(entry.getKey() + SUFFIX);
+                if (!Files.exists(path))
+                    try {
+                        write(entry.getValue(), path);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+            }
+        return schedule;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return 内存命中次数
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 从溢出目录载入的次数
+     */
+    public synchronized long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * @return 重新计算的次数
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    //===================================二进制格式===================================
+
+    /**
+     * 将调度结果写入文件，先写临时文件再重命名，读者不会看到写了一半的文件
+     */
+    static void write(Schedule schedule, Path path) throws IOException {
+        NodeState nodeState = schedule.getNodeState();
+        int nodeCount = schedule.getNodeCount();
+        int[] level = new int[nodeCount], parentId = new int[nodeCount], rootId = new int[nodeCount], covNodeId = new int[nodeCount];
+        int[] transOffsets = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            level[i] = nodeState.getLevel(i);
+            parentId[i] = nodeState.getParentId(i);
+            rootId[i] = nodeState.getRootId(i);
+            covNodeId[i] = nodeState.getCovNodeId(i);
+            transOffsets[i + 1] = transOffsets[i] + nodeState.getTransSlotCount(i);
+        }
+        int[] transSlots = new int[transOffsets[nodeCount]];
+        for (int i = 0, cnt = 0; i < nodeCount; i++)
+            for (int t = nodeState.nextTransSlot(i, -1); t != NodeState.NO_SLOT; t = nodeState.nextTransSlot(i, t + 1))
+                transSlots[cnt++] = t;
+        int[] backbone = schedule.getBackboneOrder();
+        int[] header = {MAGIC, VERSION, schedule.getAlgorithm().ordinal(), schedule.getHotspotBorder(), schedule.getRadius(),
+                nodeCount, schedule.getTopology().getSlotCount(), backbone.length, transSlots.length,
+                schedule.getTransDelay(), schedule.getTotalTrans(), 0, 0, 0, 0, 0, 0, 0, 0};
+        String fp = schedule.getTopology().getFingerprint();
+        for (int i = 0; i < 8; i++)//64位十六进制的摘要按每8位一个int保存
+            header[11 + i] = (int) Long.parseLong(fp.substring(i << 3, (i + 1) << 3), 16);
+
+        Path temp = path.resolveSibling(path.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (int[] ints : new int[][]{header, level, parentId, rootId, covNodeId, backbone, transOffsets, transSlots})
+                TopologyIO.writeInts(ch, buffer, ints);
+            buffer.flip();
+            while (buffer.hasRemaining())
+                ch.write(buffer);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从文件载入调度结果，文件中的指纹、算法参数、节点数和时隙数须与查询一致，各计数须与文件长度相符，各项须在范围内，
+     * 否则抛出IOException
+     */
+    static Schedule read(Path path, Topology topology, Schedule.Algorithm algorithm, int hotspotBorder, int radius) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_INTS * 4L)
+                throw new EOFException("Truncated schedule file: " + path);
+            int[] header = new int[HEADER_INTS];
+            long pos = TopologyIO.readInts(ch, 0, header);
+            if (header[0] != MAGIC)
+                throw new IOException("Not a schedule file: " + path);
+            if (header[1] != VERSION)
+                throw new IOException("Unsupported schedule file version: " + header[1]);
+            StringBuilder fp = new StringBuilder(64);
+            for (int i = 0; i < 8; i++)
+                fp.append(String.format("%08x", header[11 + i]));
+            int nodeCount = header[5], slotCount = header[6], backboneSize = header[7], transCount = header[8];
+            if (!fp.toString().equals(topology.getFingerprint()) || nodeCount != topology.getNodeCount()
+                    || slotCount != topology.getSlotCount())
+                throw new IOException("Schedule file does not match the topology: " + path);
+            if (header[2] != algorithm.ordinal() || header[3] != hotspotBorder || header[4] != radius)
+                throw new IOException("Schedule file does not match the algorithm parameters: " + path);
+            if (backboneSize < 0 || backboneSize > nodeCount || transCount < 0
+                    || (HEADER_INTS + 5L * nodeCount + 1 + backboneSize + transCount) * 4 != ch.size())
+                throw new IOException("Corrupt schedule file: backboneSize=" + backboneSize + ", transCount=" + transCount
+                        + " in " + path);
+
+            int[] level = new int[nodeCount], parentId = new int[nodeCount], rootId = new int[nodeCount], covNodeId = new int[nodeCount];
+            int[] backbone = new int[backboneSize], transOffsets = new int[nodeCount + 1], transSlots = new int[transCount];
+            for (int[] ints : new int[][]{level, parentId, rootId, covNodeId, backbone, transOffsets, transSlots})
+                pos = TopologyIO.readInts(ch, pos, ints);
+            validate(path, slotCount, level, parentId, rootId, covNodeId, backbone, transOffsets, transSlots);
+
+            NodeState nodeState = new NodeState(topology.getActiveSlots(), topology.getSlotCount());
+            for (int i = 0; i < nodeCount; i++) {
+                nodeState.setLevel(i, level[i]);
+                nodeState.setParentId(i, parentId[i]);
+                nodeState.setRootId(i, rootId[i]);
+                nodeState.setCovNodeId(i, covNodeId[i]);
+                for (int k = transOffsets[i]; k < transOffsets[i + 1]; k++)
+                    nodeState.addTransSlot(i, transSlots[k]);
+            }
+            return new Schedule(algorithm, hotspotBorder, radius, topology, null, null,
+                    nodeState, backbone, header[9], header[10]);
+        }
+    }
+
+    /**
+     * 检查载入的各项：节点编号和层数在[-1, nodeCount)内，主干节点互不相同，传输时隙的偏移从0单调不减到transCount，
+     * 传输时隙在[-1, slotCount)内
+     */
+    private static void validate(Path path, int slotCount, int[] level, int[] parentId, int[] rootId, int[] covNodeId,
+                                 int[] backbone, int[] transOffsets, int[] transSlots) throws IOException {
+        int nodeCount = level.length;
+        for (int i = 0; i < nodeCount; i++)
+            if (level[i] < -1 || level[i] >= nodeCount || parentId[i] < -1 || parentId[i] >= nodeCount
+                    || rootId[i] < -1 || rootId[i] >= nodeCount || covNodeId[i] < -1 || covNodeId[i] >= nodeCount)
+                throw new IOException("State of node " + i + " out of range in " + path);
+        boolean[] inBackbone = new boolean[nodeCount];
+        for (int id : backbone) {
+            if (id < 0 || id >= nodeCount || inBackbone[id])
+                throw new IOException("Invalid backbone node " + id + " in " + path);
+            inBackbone[id] = true;
+        }
+        if (transOffsets[0] != 0 || transOffsets[nodeCount] != transSlots.length)
+            throw new IOException("Transmit slot offsets must span [0, " + transSlots.length + "] in " + path);
+        for (int i = 0; i < nodeCount; i++)
+            if (transOffsets[i + 1] < transOffsets[i])
+                throw new IOException("Transmit slot offsets decrease at node " + i + " in " + path);
+        for (int t : transSlots)
+            if (t < -1 || t >= slotCount)
+                throw new IOException("Transmit slot out of range: " + t + " in " + path);
+    }
+}
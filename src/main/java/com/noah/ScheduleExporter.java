@@ -0,0 +1,270 @@
+package com.noah;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 将调度结果逐节点流式写出，每个节点一条记录：编号、父节点、根节点、层、覆盖节点、是否在主干中、传输时隙、覆盖集合以及可选的到达时刻
+ * 支持CSV、JSON Lines和二进制格式，可以只导出主干节点或指定层范围内的节点。
+ * 文本格式在复用的字符缓冲中逐字符拼接，不为每个数值或每条记录分配字符串。
+ * 二进制格式（小端序int）：
+ * <pre>
+ * magic  version  nodeCount  slotCount  recordCount  flags
+ * 每条记录：id  parent  root  level  covNode  inBackbone  transCount  trans[transCount]  coveringCount  covering[coveringCount]  [reachTime]
+ * </pre>
+ * flags为1时每条记录末尾带有到达时刻
+ */
+public class ScheduleExporter {
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        CSV, JSONL, BINARY
+    }
+
+    private static final int MAGIC = 0x54505845;//"EXPT"
+    private static final int VERSION = 1;
+    private static final int FLAG_REACH_TIMES = 1;
+
+    private final Schedule schedule;
+    private boolean backboneOnly;//只导出主干节点
+    private int minLevel = Integer.MIN_VALUE, maxLevel = Integer.MAX_VALUE;//导出的层范围，含两端
+    private boolean reachTimes;//是否模拟广播并导出到达时刻
+
+    public ScheduleExporter(Schedule schedule) {
+        this.schedule = schedule;
+    }
+
+    public ScheduleExporter backboneOnly(boolean backboneOnly) {
+        this.backboneOnly = backboneOnly;
+        return this;
+    }
+
+    /**
+     * 只导出层数在[minLevel, maxLevel]内的节点
+     */
+    public ScheduleExporter levelRange(int minLevel, int maxLevel) {
+        if (minLevel > maxLevel)
+            throw new IllegalArgumentException("Empty level range: " + minLevel + " > " + maxLevel);
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        return this;
+    }
+
+    /**
+     * 导出时从源点模拟一次广播，附带各节点的到达时刻，未到达的节点为-1
+     */
+    public ScheduleExporter includeReachTimes(boolean reachTimes) {
+        this.reachTimes = reachTimes;
+        return this;
+    }
+
+    private boolean accepts(int id) {
+        int lv = schedule.getLevel(id);
+        return (!backboneOnly || schedule.isInBackbone(id)) && lv >= minLevel && lv <= maxLevel;
+    }
+
+    public void export(Format format, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            export(format, out);
+        }
+    }
+
+    /**
+     * 按格式写出所有被选中的节点，写完后刷新但不关闭out
+     */
+    public void export(Format format, OutputStream out) throws IOException {
+        int[] reach = reachTimes ? schedule.simulate(0).getReachTimes() : null;
+        if (format == Format.BINARY)
+            exportBinary(out, reach);
+        else {
+            Writer writer = new OutputStreamWriter(out, "US-ASCII");
+            exportText(format == Format.JSONL, writer, reach);
+            writer.flush();
+        }
+    }
+
+    //===================================文本格式===================================
+
+    private void exportText(boolean json, Writer out, int[] reach) throws IOException {
+        NodeState nodeState = schedule.getNodeState();
+        int[] covering = nodeState.getCoveringNodes();
+        LineBuffer line = new LineBuffer();
+        if (!json) {
+            line.append("id,parent,root,level,cov_node,backbone,trans_slots,covering");
+            if (reach != null)
+                line.append(",reach_time");
+            line.newLine(out);
+        }
+        for (int id = 0; id < schedule.getNodeCount(); id++) {
+            if (!accepts(id))
+                continue;
+            if (json) {
+                line.append("{\"id\":").append(id)
+                        .append(",\"parent\":").append(nodeState.getParentId(id))
+                        .append(",\"root\":").append(nodeState.getRootId(id))
+                        .append(",\"level\":").append(nodeState.getLevel(id))
+                        .append(",\"covNode\":").append(nodeState.getCovNodeId(id))
+                        .append(",\"backbone\":").append(schedule.isInBackbone(id) ? "true" : "false")
+                        .append(",\"transSlots\":[");
+                appendTransSlots(line, nodeState, id, ',');
+                line.append("],\"covering\":[");
+                appendRange(line, covering, nodeState.coveringFrom(id), nodeState.coveringTo(id), ',');
+                line.append(']');
+                if (reach != null)
+                    line.append(",\"reachTime\":").append(reach[id]);
+                line.append('}');
+            } else {
+                //列表内以空格分隔，避免与字段分隔符冲突
+                line.append(id).append(',').append(nodeState.getParentId(id)).append(',').append(nodeState.getRootId(id))
+                        .append(',').append(nodeState.getLevel(id)).append(',').append(nodeState.getCovNodeId(id))
+                        .append(',').append(schedule.isInBackbone(id) ? 1 : 0).append(',');
+                appendTransSlots(line, nodeState, id, ' ');
+                line.append(',');
+                appendRange(line, covering, nodeState.coveringFrom(id), nodeState.coveringTo(id), ' ');
+                if (reach != null)
+                    line.append(',').append(reach[id]);
+            }
+            line.newLine(out);
+        }
+        line.flush(out);
+    }
+
+    private static void appendTransSlots(LineBuffer line, NodeState nodeState, int id, char separator) {
+        boolean first = true;
+        for (int t = nodeState.nextTransSlot(id, -1); t != NodeState.NO_SLOT; t = nodeState.nextTransSlot(id, t + 1)) {
+            if (!first)
+                line.append(separator);
+            line.append(t);
+            first = false;
+        }
+    }
+
+    private static void appendRange(LineBuffer line, int[] values, int from, int to, char separator) {
+        for (int k = from; k < to; k++) {
+            if (k > from)
+                line.append(separator);
+            line.append(values[k]);
+        }
+    }
+
+    /**
+     * 可复用的字符缓冲，整数直接按位写入，攒满后整块写出
+     */
+    private static class LineBuffer {
+        private char[] chars = new char[1 << 16];
+        private int size;
+
+        LineBuffer append(char c) {
+            ensure(1);
+            chars[size++] = c;
+            return this;
+        }
+
+        LineBuffer append(String s) {
+            ensure(s.length());
+            s.getChars(0, s.length(), chars, size);
+            size += s.length();
+            return this;
+        }
+
+        LineBuffer append(int value) {
+            ensure(11);
+            if (value < 0) {
+                chars[size++] = '-';
+                if (value == Integer.MIN_VALUE) {
+                    append("2147483648");
+                    return this;
+                }
+                value = -value;
+            }
+            int end = size + digits(value);
+            for (int i = end - 1; i >= size; i--, value /= 10)
+                chars[i] = (char) ('0' + value % 10);
+            size = end;
+            return this;
+        }
+
+        private static int digits(int value) {
+            int n = 1;
+            while (value >= 10) {
+                value /= 10;
+                n++;
+            }
+            return n;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > chars.length)
+                chars = Arrays.copyOf(chars, Math.max(chars.length << 1, size + extra));
+        }
+
+        /**
+         * 结束一行，缓冲过半时写出
+         */
+        void newLine(Writer out) throws IOException {
+            append('\n');
+            if (size >= chars.length >>> 1)
+                flush(out);
+        }
+
+        void flush(Writer out) throws IOException {
+            out.write(chars, 0, size);
+            size = 0;
+        }
+    }
+
+    //===================================二进制格式===================================
+
+    private void exportBinary(OutputStream out, int[] reach) throws IOException {
+        NodeState nodeState = schedule.getNodeState();
+        int[] covering = nodeState.getCoveringNodes();
+        int nodeCount = schedule.getNodeCount(), recordCount = 0;
+        for (int id = 0; id < nodeCount; id++)
+            if (accepts(id))
+                recordCount++;
+
+        WritableByteChannel ch = Channels.newChannel(out);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        int[] header = {MAGIC, VERSION, nodeCount, schedule.getTopology().getSlotCount(), recordCount,
+                reach != null ? FLAG_REACH_TIMES : 0};
+        for (int value : header)
+            buffer.putInt(value);
+        for (int id = 0; id < nodeCount; id++) {
+            if (!accepts(id))
+                continue;
+            int transCount = nodeState.getTransSlotCount(id);
+            int from = nodeState.coveringFrom(id), to = nodeState.coveringTo(id);
+            int ints = 9 + transCount + (to - from);
+            if (buffer.remaining() < ints * 4) {
+                drain(ch, buffer);
+                if (buffer.capacity() < ints * 4)
+                    buffer = ByteBuffer.allocate(ints * 4).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            buffer.putInt(id).putInt(nodeState.getParentId(id)).putInt(nodeState.getRootId(id)).putInt(nodeState.getLevel(id))
+                    .putInt(nodeState.getCovNodeId(id)).putInt(schedule.isInBackbone(id) ? 1 : 0).putInt(transCount);
+            for (int t = nodeState.nextTransSlot(id, -1); t != NodeState.NO_SLOT; t = nodeState.nextTransSlot(id, t + 1))
+                buffer.putInt(t);
+            buffer.putInt(to - from);
+            for (int k = from; k < to; k++)
+                buffer.putInt(covering[k]);
+            if (reach != null)
+                buffer.putInt(reach[id]);
+        }
+        drain(ch, buffer);
+        out.flush();
+    }
+
+    private static void drain(WritableByteChannel ch, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            ch.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,357 @@
+package com.noah;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 常驻的调度服务，通过本地HTTP接口提供LBAS/XXXXX调度、时延评估和调度结果导出
+ * 服务只监听本机回环地址，不接受其他主机的连接；/load只能载入启动时指定的拓扑目录中的文件，未指定目录时不可用。
+ * 拓扑载入后常驻内存，调度结果保存在ScheduleCache中；同时到达的相同请求合并为一次计算，其余请求等待并共享结果。
+ * 每个请求在一个虚拟线程中处理（运行在不支持虚拟线程的JVM上时退化为线程池）。
+ * 接口（GET，参数均在查询串中，返回JSON，导出除外）：
+ * <pre>
+ * /load?name=&amp;path=                                 载入拓扑目录中的文件，path为相对该目录的路径，同名拓扑被替换
+ * /schedule?topology=&amp;algorithm=LBAS|XXXXX&amp;border=&amp;radius=    调度结果摘要，XXXXX须指定border，radius默认为2
+ * /delay?...&amp;source=                                 以指定源点模拟广播，参数同/schedule，source默认为0
+ * /export?...&amp;format=csv|jsonl                          逐节点导出调度结果
+ * /stats                                              请求数、合并数和缓存命中情况
+ * </pre>
+ * 用法：ScheduleService &lt;端口&gt; [--dir=拓扑目录] [名称=拓扑文件 ...]
+ * JDK的HttpServer分两次写出响应头和响应体，不关闭Nagle算法时每个请求都要等待对方的延迟确认，
+ * 因此建议以-Dsun.net.httpserver.nodelay=true启动
+ */
+public class ScheduleService {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduleCache cache;
+    private final ConcurrentHashMap<String, Topology> topologies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();//正在计算的请求
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final Path topologyDir;//可通过/load载入的拓扑文件所在目录，为null时不能通过/load载入
+
+    /**
+     * @param port          监听端口，为0时由系统分配
+     * @param cacheCapacity 内存中保留的调度结果数
+     */
+    public ScheduleService(int port, int cacheCapacity) throws IOException {
+        this(port, cacheCapacity, null);
+    }
+
+    /**
+     * @param topologyDir 可通过/load载入的拓扑文件所在目录，为null时只能使用putTopology加入的拓扑
+     */
+    public ScheduleService(int port, int cacheCapacity, Path topologyDir) throws IOException {
+        this.topologyDir = topologyDir == null ? null : topologyDir.toRealPath();
+        cache = new ScheduleCache(cacheCapacity);
+        executor = newRequestExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/load", exchange -> handle(exchange, this::load));
+        server.createContext("/schedule", exchange -> handle(exchange, this::schedule));
+        server.createContext("/delay", exchange -> handle(exchange, this::delay));
+        server.createContext("/export", this::export);
+        server.createContext("/stats", exchange -> handle(exchange, params -> stats()));
+    }
+
+    /**
+     * JDK 21起每个请求使用一个虚拟线程；本项目以Java 8为目标，因此通过反射取得该方法
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 停止接受请求，等待至多delaySeconds秒让正在处理的请求完成
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * 载入或替换拓扑
+     */
+    public void putTopology(String name, Topology topology) {
+        topologies.put(name, topology);
+    }
+
+    //===================================请求处理===================================
+
+    private interface Handler {
+        String handle(Map<String, String> params) throws Exception;
+    }
+
+    /**
+     * 解析参数并返回JSON，IllegalArgumentException对应400，未知拓扑对应404，其余异常对应500
+     */
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        requestCount.increment();
+        int status = 200;
+        String body;
+        try {
+            body = handler.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (UnknownTopologyException e) {
+            status = 404;
+            body = error(e);
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e);
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 500;
+            body = error(e);
+        }
+        respond(exchange, status, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(Exception e) {
+        return "{\"error\":" + quote(String.valueOf(e.getMessage())) + "}";
+    }
+
+    /**
+     * @return 转义后加上双引号的JSON字符串
+     */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null)
+            return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    private static String require(Map<String, String> params, String key) {
+        String value = params.get(key);
+        if (value == null)
+            throw new IllegalArgumentException("Missing parameter: " + key);
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String key, Integer defaultValue) {
+        String value = params.get(key);
+        if (value == null && defaultValue == null)
+            throw new IllegalArgumentException("Missing parameter: " + key);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    private static class UnknownTopologyException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnknownTopologyException(String name) {
+            super("Unknown topology: " + name);
+        }
+    }
+
+    private String load(Map<String, String> params) throws IOException {
+        String name = require(params, "name");
+        Topology topology = TopologyIO.read(resolveTopologyFile(require(params, "path")));
+        putTopology(name, topology);
+        return "{\"name\":" + quote(name) + ",\"nodes\":" + topology.getNodeCount() + ",\"slots\":" + topology.getSlotCount()
+                + ",\"fingerprint\":\"" + topology.getFingerprint() + "\"}";
+    }
+
+    /**
+     * 将/load的路径解析为拓扑目录中的文件，规范化并解析符号链接后仍须位于该目录中
+     * 目录外的路径在访问文件系统前即被拒绝，错误信息不透露目录外的文件是否存在
+     */
+    private Path resolveTopologyFile(String path) throws IOException {
+        if (topologyDir == null)
+            throw new IllegalArgumentException("Loading is disabled: no topology directory configured");
+        Path file = topologyDir.resolve(path).normalize();
+        if (!file.startsWith(topologyDir) || file.equals(topologyDir))
+            throw new IllegalArgumentException("Path must be inside the topology directory: " + path);
+        if (!Files.isRegularFile(file))
+            throw new IllegalArgumentException("No such topology file: " + path);
+        file = file.toRealPath();
+        if (!file.startsWith(topologyDir))
+            throw new IllegalArgumentException("Path must be inside the topology directory: " + path);
+        return file;
+    }
+
+    /**
+     * 按请求参数取得调度结果，相同的并发请求只计算一次
+     */
+    private Schedule lookup(Map<String, String> params) {
+        String name = require(params, "topology");
+        Topology topology = topologies.get(name);
+        if (topology == null)
+            throw new UnknownTopologyException(name);
+        Schedule.Algorithm algorithm;
+        try {
+            algorithm = Schedule.Algorithm.valueOf(params.getOrDefault("algorithm", "LBAS").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown algorithm: " + params.get("algorithm"));
+        }
+        if (algorithm == Schedule.Algorithm.LBAS)
+            return coalesce(topology.getFingerprint() + "-LBAS", () -> cache.getLBAS(topology));
+        int border = intParam(params, "border", null), radius = intParam(params, "radius", 2);
+        if (radius < 1)
+            throw new IllegalArgumentException("Radius must be at least 1: " + radius);
+        return coalesce(topology.getFingerprint() + "-XXXXX-" + border + "-" + radius,
+                () -> cache.getXXXXX(topology, border, radius));
+    }
+
+    /**
+     * 以key标识计算，已有相同的计算正在进行时等待其结果而不重复计算
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String key, Callable<T> computation) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running == null) {
+            try {
+                mine.complete(computation.call());
+            } catch (Throwable e) {
+                mine.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, mine);
+            }
+            running = mine;
+        } else
+            coalescedCount.increment();
+        try {
+            return (T) running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof IOException)
+                throw new UncheckedIOException((IOException) e.getCause());
+            throw e;
+        }
+    }
+
+    private String schedule(Map<String, String> params) {
+        Schedule schedule = lookup(params);
+        return "{\"algorithm\":\"" + schedule.getAlgorithm() + "\",\"hotspotBorder\":" + schedule.getHotspotBorder()
+                + ",\"radius\":" + schedule.getRadius() + ",\"transDelay\":" + schedule.getTransDelay()
+                + ",\"totalTrans\":" + schedule.getTotalTrans() + ",\"backboneSize\":" + schedule.getBackbone().length + "}";
+    }
+
+    private String delay(Map<String, String> params) {
+        Schedule schedule = lookup(params);
+        int source = intParam(params, "source", 0);
+        if (source < 0 || source >= schedule.getNodeCount())
+            throw new IllegalArgumentException("Source out of range: " + source);
+        BroadcastReport report = coalesce(schedule.getTopology().getFingerprint() + "-" + schedule.getAlgorithm() + "-"
+                + schedule.getHotspotBorder() + "-" + schedule.getRadius() + "-simulate-" + source, () -> schedule.simulate(source));
+        return "{\"source\":" + source + ",\"maxDelay\":" + report.getMax() + ",\"p50\":" + report.getP50()
+                + ",\"p99\":" + report.getP99() + ",\"reached\":" + report.getReachedCount()
+                + ",\"unreached\":" + report.getUnreachedCount() + ",\"transmissions\":" + report.getTransmissions()
+                + ",\"redundantReceptions\":" + report.getRedundantReceptions() + "}";
+    }
+
+    /**
+     * 以分块传输流式写出，不在内存中拼接整个响应
+     */
+    private void export(HttpExchange exchange) throws IOException {
+        requestCount.increment();
+        Schedule schedule;
+        ScheduleExporter.Format format;
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            schedule = lookup(params);
+            format = ScheduleExporter.Format.valueOf(params.getOrDefault("format", "csv").toUpperCase(Locale.ROOT));
+            if (format == ScheduleExporter.Format.BINARY)
+                throw new IllegalArgumentException("Binary export is not served over HTTP");
+        } catch (UnknownTopologyException e) {
+            respond(exchange, 404, error(e));
+            return;
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e));
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", format == ScheduleExporter.Format.CSV ? "text/csv" : "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            new ScheduleExporter(schedule).export(format, out);
+        }
+    }
+
+    private String stats() {
+        return "{\"requests\":" + requestCount.sum() + ",\"coalesced\":" + coalescedCount.sum()
+                + ",\"topologies\":" + topologies.size() + ",\"cachedSchedules\":" + cache.size()
+                + ",\"cacheHits\":" + cache.getHitCount() + ",\"cacheMisses\":" + cache.getMissCount() + "}";
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ScheduleService <port> [--dir=topology directory] [name=topology file ...]");
+            System.exit(1);
+        }
+        int first = 1;
+        Path dir = null;
+        if (args.length > 1 && args[1].startsWith("--dir=")) {
+            dir = Paths.get(args[1].substring("--dir=".length()));
+            first = 2;
+        }
+        ScheduleService service = new ScheduleService(Integer.parseInt(args[0]), 256, dir);
+        for (int i = first; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq <= 0)
+                throw new IllegalArgumentException("Expected name=file: " + args[i]);
+            service.putTopology(args[i].substring(0, eq), TopologyIO.read(Paths.get(args[i].substring(eq + 1))));
+        }
+        service.start();
+        System.out.println("Scheduling service listening on " + service.getPort());
+    }
+}
@@ -0,0 +1,149 @@
+package com.noah;
+
+/**
+ * 按活跃时隙划分的只读节点索引
+ * 活跃节点：activeNodes[activeOffsets[t], activeOffsets[t + 1])为活跃时隙为t的节点编号，按编号升序排列
+ * 邻节点：neighbors[neighborOffsets[v], neighborOffsets[v + 1])为v的邻节点，按(活跃时隙, 编号)升序排列，
+ * 因此v在时隙t活跃的邻节点是其中连续的一段，可由neighborFrom和neighborTo求得
+ * 建立后不再修改，查询时不分配任何对象；各数组从给定的存储中分配，可以保存在堆外
+ */
+public class SlotIndex {
+    private final int slotCount;
+    private final int[] activeOffsets;//只有slotCount + 1项，总是保存在堆上
+    private final IntArray activeNodes;
+    private final IntArray neighborOffsets;
+    private final IntArray neighbors;
+    private final IntArray neighborSlots;//neighborSlots[k]为neighbors[k]的活跃时隙，用于二分查找
+
+    /**
+     * @param slotCount  单周期时隙数
+     * @param activeSlot activeSlot[i]为节点i的活跃时隙，源点取-1，不属于任何时隙
+     * @param adjTable   邻接表
+     */
+    public SlotIndex(int slotCount, int[] activeSlot, CsrGraph adjTable) {
+        this(slotCount, IntArray.of(activeSlot), adjTable, ArrayStorage.HEAP);
+    }
+
+    /**
+     * @param storage 各数组从中分配
+     */
+    SlotIndex(int slotCount, IntArray activeSlot, CsrGraph adjTable, ArrayStorage storage) {
+        int nodeCount = activeSlot.length(), t;
+        this.slotCount = slotCount;
+
+        //计数排序得到各时隙的活跃节点
+        activeOffsets = new int[slotCount + 1];
+        for (int i = 0; i < nodeCount; i++)
+            if ((t = activeSlot.get(i)) >= 0)
+                activeOffsets[t + 1]++;
+        for (t = 0; t < slotCount; t++)
+            activeOffsets[t + 1] += activeOffsets[t];
+        activeNodes = storage.allocInts(activeOffsets[slotCount]);
+        int[] cursor = new int[slotCount];
+        for (int i = 0; i < nodeCount; i++)
+            if ((t = activeSlot.get(i)) >= 0)
+                activeNodes.set(activeOffsets[t] + cursor[t]++, i);
+
+        //按活跃时隙遍历所有节点，将其追加到各邻节点的列表末尾，即得到按(时隙, 编号)排序的邻节点列表
+        //邻接关系可能不对称，因此需要遍历反向图
+        CsrGraph reverse = adjTable.transpose();
+        IntArray reverseTargets = reverse.targets();
+        neighborOffsets = storage.allocInts(nodeCount + 1);
+        for (int i = 0; i < nodeCount; i++)
+            neighborOffsets.set(i + 1, neighborOffsets.get(i) + adjTable.degree(i));
+        neighbors = storage.allocInts(neighborOffsets.get(nodeCount));
+        neighborSlots = storage.allocInts(neighbors.length());
+
+        //活跃时隙为-1的源点排在最前，其余节点按时隙顺序排列
+        IntArray fill = storage.allocInts(nodeCount);
+        for (int i = 0; i < nodeCount; i++)
+            if (activeSlot.get(i) < 0)
+                append(reverse, reverseTargets, fill, i, activeSlot.get(i));
+        for (int i = 0; i < activeNodes.length(); i++)
+            append(reverse, reverseTargets, fill, activeNodes.get(i), activeSlot.get(activeNodes.get(i)));
+    }
+
+    /**
+     * 将w追加到其在反向图中各邻节点的列表末尾
+     */
+    private void append(CsrGraph reverse, IntArray reverseTargets, IntArray fill, int w, int slot) {
+        for (int r = reverse.from(w); r < reverse.to(w); r++) {
+            int v = reverseTargets.get(r);
+            int pos = neighborOffsets.get(v) + fill.add(v, 1) - 1;
+            neighbors.set(pos, w);
+            neighborSlots.set(pos, slot);
+        }
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * 活跃节点数组，与activeFrom和activeTo配合使用，调用者不得修改
+     *
+     * @throws IllegalStateException 索引保存在堆外
+     */
+    public int[] getActiveNodes() {
+        return activeNodes.array();
+    }
+
+    /**
+     * 与getActiveNodes相同，但索引保存在堆外时也可以使用
+     */
+    IntArray activeNodes() {
+        return activeNodes;
+    }
+
+    public int activeFrom(int timeSlot) {
+        return activeOffsets[timeSlot];
+    }
+
+    public int activeTo(int timeSlot) {
+        return activeOffsets[timeSlot + 1];
+    }
+
+    /**
+     * 邻节点数组，与neighborFrom和neighborTo配合使用，调用者不得修改
+     *
+     * @throws IllegalStateException 索引保存在堆外
+     */
+    public int[] getNeighbors() {
+        return neighbors.array();
+    }
+
+    /**
+     * 与getNeighbors相同，但索引保存在堆外时也可以使用
+     */
+    IntArray neighbors() {
+        return neighbors;
+    }
+
+    /**
+     * @return 节点id在时隙timeSlot活跃的邻节点在neighbors中的起始下标
+     */
+    public int neighborFrom(int id, int timeSlot) {
+        return lowerBound(neighborOffsets.get(id), neighborOffsets.get(id + 1), timeSlot);
+    }
+
+    /**
+     * @return 节点id在时隙timeSlot活跃的邻节点在neighbors中的结束下标（不含）
+     */
+    public int neighborTo(int id, int timeSlot) {
+        return lowerBound(neighborOffsets.get(id), neighborOffsets.get(id + 1), timeSlot + 1);
+    }
+
+    /**
+     * 在neighborSlots[from, to)中查找第一个不小于timeSlot的位置
+     */
+    private int lowerBound(int from, int to, int timeSlot) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (neighborSlots.get(mid) < timeSlot)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+}
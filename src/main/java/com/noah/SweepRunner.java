@@ -0,0 +1,213 @@
+package com.noah;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * LBAS与XXXXX的参数扫描
+ * 对nodeSize、slotSize、HSE、additionalEdge的每种组合，以多个种子生成拓扑并分别计算两种算法的传输时延和传输次数。
+ * LBAS与HSE无关，每次试验对一组(nodeSize, slotSize, additionalEdge, seed)只生成一次拓扑、计算一次LBAS，
+ * 再由同一XXXXXScheduler（共享k跳邻域）计算各HSE的XXXXX；试验只在内存中进行，不读写文件，因此各次试验可以在线程池中并行执行。
+ * 同一组合的所有试验完成后，按组合顺序将统计结果写入CSV的一行。
+ * 相同的(nodeSize, slotSize, additionalEdge, seed)总是生成相同的拓扑，不同HSE之间可以直接对比；
+ * 该拓扑与Graph(nodeSize, slotSize, additionalEdge, seed)以及TopologyGenerator以同一种子写出的文本或二进制文件相同，调度结果一致
+ */
+public class SweepRunner {
+    private static final String[] METRICS = {"lbas_delay", "xxxxx_delay", "lbas_trans", "xxxxx_trans"};
+
+    private final int[] nodeSizes, slotSizes, hses, additionalEdges;
+    private final long[] seeds;
+    private final int threads;
+
+    /**
+     * @param threads 并行执行试验的线程数
+     */
+    public SweepRunner(int[] nodeSizes, int[] slotSizes, int[] hses, int[] additionalEdges, long[] seeds, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        this.nodeSizes = nodeSizes;
+        this.slotSizes = slotSizes;
+        this.hses = hses;
+        this.additionalEdges = additionalEdges;
+        this.seeds = seeds;
+        this.threads = threads;
+    }
+
+    /**
+     * 执行所有试验，并将各组合的统计结果依次写入out
+     */
+    public void run(Writer out) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            //按(nodeSize, slotSize, additionalEdge)分组提交所有试验，线程池按提交顺序执行，先提交的组先完成，结果可以边算边写
+            List<List<Future<int[][]>>> groups = new ArrayList<>();
+            for (int nodeSize : nodeSizes)
+                for (int slotSize : slotSizes)
+                    for (int additionalEdge : additionalEdges) {
+                        List<Future<int[][]>> futures = new ArrayList<>();
+                        for (long seed : seeds)
+                            futures.add(pool.submit(() -> runTrial(nodeSize, slotSize, hses, additionalEdge, seed)));
+                        groups.add(futures);
+                    }
+
+            StringBuilder header = new StringBuilder("nodeSize,slotSize,HSE,additionalEdge,trials,failed");
+            for (String metric : METRICS)
+                header.append(',').append(metric).append("_mean,").append(metric).append("_std,")
+                        .append(metric).append("_min,").append(metric).append("_max");
+            out.write(header + "\n");
+            out.flush();
+
+            for (int n = 0; n < nodeSizes.length; n++)
+                for (int s = 0; s < slotSizes.length; s++)
+                    for (int h = 0; h < hses.length; h++)
+                        for (int e = 0; e < additionalEdges.length; e++) {
+                            Stats[] stats = new Stats[METRICS.length];
+                            for (int m = 0; m < METRICS.length; m++)
+                                stats[m] = new Stats();
+                            int failed = 0;
+                            for (Future<int[][]> future : groups.get((n * slotSizes.length + s) * additionalEdges.length + e)) {
+                                int[] result = future.get()[h];
+                                if (result == null) {
+                                    failed++;
+                                    continue;
+                                }
+                                for (int m = 0; m < METRICS.length; m++)
+                                    stats[m].add(result[m]);
+                            }
+
+                            StringBuilder row = new StringBuilder();
+                            row.append(nodeSizes[n]).append(',').append(slotSizes[s]).append(',').append(hses[h]).append(',')
+                                    .append(additionalEdges[e]).append(',').append(seeds.length).append(',').append(failed);
+                            for (Stats st : stats)
+                                row.append(',').append(st.format());
+                            out.write(row + "\n");
+                            out.flush();
+                        }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sweep interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Trial failed unexpectedly", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行一次试验：生成拓扑并计算LBAS，再在同一拓扑上计算各HSE的XXXXX
+     *
+     * @return 第h项对应hses[h]，依次为LBAS时延、XXXXX时延、LBAS传输次数、XXXXX传输次数，算法执行失败时该项为null
+     */
+    static int[][] runTrial(int nodeSize, int slotSize, int[] hses, int additionalEdge, long seed) {
+        int[][] results = new int[hses.length][];
+        Topology topology;
+        Schedule lbas;
+        try {
+            topology = new TopologyGenerator(seed).randomTree(nodeSize, slotSize, additionalEdge);
+            lbas = new LBASScheduler(topology).schedule();
+        } catch (RuntimeException e) {
+            System.err.println("Trial failed: nodeSize=" + nodeSize + " slotSize=" + slotSize +
+                    " additionalEdge=" + additionalEdge + " seed=" + seed + ": " + e);
+            return results;
+        }
+        XXXXXScheduler scheduler = new XXXXXScheduler(topology);
+        for (int h = 0; h < hses.length; h++)
+            try {
+                Schedule xxxxx = scheduler.schedule(hses[h]);
+                results[h] = new int[]{lbas.getTransDelay(), xxxxx.getTransDelay(), lbas.getTotalTrans(), xxxxx.getTotalTrans()};
+            } catch (RuntimeException e) {
+                System.err.println("Trial failed: nodeSize=" + nodeSize + " slotSize=" + slotSize + " HSE=" + hses[h] +
+                        " additionalEdge=" + additionalEdge + " seed=" + seed + ": " + e);
+            }
+        return results;
+    }
+
+    /**
+     * 单个指标的均值、标准差与极值
+     */
+    private static class Stats {
+        private int count;
+        private double sum, sumSq;
+        private int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+
+        void add(int value) {
+            count++;
+            sum += value;
+            sumSq += (double) value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        /**
+         * @return "均值,标准差,最小值,最大值"，没有成功的试验时各项为空
+         */
+        String format() {
+            if (count == 0)
+                return ",,,";
+            double mean = sum / count;
+            double std = Math.sqrt(Math.max(0, sumSq / count - mean * mean));
+            return String.format(Locale.ROOT, "%.3f,%.3f,%d,%d", mean, std, min, max);
+        }
+    }
+
+    /**
+     * 解析取值范围："a"、"a,b,c"或"from:to[:step]"（含两端）
+     */
+    static long[] parseRange(String spec) {
+        if (spec.contains(":")) {
+            String[] parts = spec.split(":");
+            if (parts.length < 2 || parts.length > 3)
+                throw new IllegalArgumentException("Bad range: " + spec);
+            long from = Long.parseLong(parts[0].trim()), to = Long.parseLong(parts[1].trim());
+            long step = parts.length == 3 ? Long.parseLong(parts[2].trim()) : 1;
+            if (step <= 0 || to < from)
+                throw new IllegalArgumentException("Bad range: " + spec);
+            long[] values = new long[(int) ((to - from) / step + 1)];
+            for (int i = 0; i < values.length; i++)
+                values[i] = from + i * step;
+            return values;
+        }
+        String[] parts = spec.split(",");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            values[i] = Long.parseLong(parts[i].trim());
+        return values;
+    }
+
+    private static int[] parseIntRange(String spec) {
+        long[] values = parseRange(spec);
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+            result[i] = Math.toIntExact(values[i]);
+        return result;
+    }
+
+    /**
+     * 用法：SweepRunner &lt;nodeSize&gt; &lt;slotSize&gt; &lt;HSE&gt; &lt;additionalEdge&gt; &lt;seeds&gt; &lt;CSV文件|-&gt; [线程数]
+     * 各参数均为取值范围，如 SweepRunner 100:500:100 10,50 2 50 1:20 sweep.csv
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6 && args.length != 7) {
+            System.err.println("Usage: SweepRunner <nodeSize> <slotSize> <HSE> <additionalEdge> <seeds> <csv file|-> [threads]");
+            System.err.println("Ranges are written as a, a,b,c or from:to[:step]");
+            return;
+        }
+        int threads = args.length == 7 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        SweepRunner runner = new SweepRunner(parseIntRange(args[0]), parseIntRange(args[1]), parseIntRange(args[2]),
+                parseIntRange(args[3]), parseRange(args[4]), threads);
+        if (args[5].equals("-")) {
+            Writer out = new OutputStreamWriter(System.out, "US-ASCII");
+            runner.run(out);
+            out.flush();
+        } else
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[5]), "US-ASCII"))) {
+                runner.run(out);
+            }
+    }
+}
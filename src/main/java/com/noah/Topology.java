@@ -0,0 +1,123 @@
+package com.noah;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 只读的网络拓扑：单周期时隙数、各节点的活跃时隙及邻接表
+ * 构造后不再改变，可以在多个线程之间共享，各调度器在同一拓扑上分别计算各自的调度结果
+ */
+public class Topology {
+    private final int slotCount;//单周期时隙数
+    private final int[] activeSlot;//各节点的活跃时隙，编号为0的节点表示Source，其活跃时隙取-1
+    private final CsrGraph adjTable;//邻接表
+    private final int[] originalIds;//重新编号前各节点的原编号，各算法比较编号时以原编号代替；未重新编号时为null
+    private volatile String fingerprint;//内容指纹，按需计算
+
+    public Topology(int slotCount, int[] activeSlot, CsrGraph adjTable) {
+        this(slotCount, activeSlot, adjTable, null);
+    }
+
+    /**
+     * 重新编号后的拓扑，由Renumbering建立
+     *
+     * @param originalIds originalIds[i]为节点i重新编号前的编号，为null时表示未重新编号
+     */
+    Topology(int slotCount, int[] activeSlot, CsrGraph adjTable, int[] originalIds) {
+        if (activeSlot.length != adjTable.getNodeCount())
+            throw new IllegalArgumentException("Node count mismatch: " + activeSlot.length + " != " + adjTable.getNodeCount());
+        if (originalIds != null && originalIds.length != activeSlot.length)
+            throw new IllegalArgumentException("Node count mismatch: " + originalIds.length + " != " + activeSlot.length);
+        this.slotCount = slotCount;
+        this.activeSlot = activeSlot.clone();
+        this.adjTable = adjTable;
+        this.originalIds = originalIds;
+    }
+
+    public int getNodeCount() {
+        return activeSlot.length;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getActiveSlot(int id) {
+        return activeSlot[id];
+    }
+
+    /**
+     * @return 各节点活跃时隙数组的拷贝
+     */
+    public int[] getActiveSlots() {
+        return activeSlot.clone();
+    }
+
+    public CsrGraph getAdjTable() {
+        return adjTable;
+    }
+
+    /**
+     * 原编号数组，调用者不得修改
+     *
+     * @return 重新编号前各节点的编号，未重新编号时为null
+     */
+    int[] getOriginalIds() {
+        return originalIds;
+    }
+
+    /**
+     * 拓扑内容的SHA-256摘要，由时隙数、各节点的活跃时隙及邻接表（按遍历顺序）计算，内容相同的拓扑指纹相同；重新编号的拓扑还计入各节点的原编号
+     * ScheduleCache和ScheduleService只凭指纹判断两个拓扑是否相同，因此使用密码学摘要，内容不同的拓扑不会得到相同的指纹
+     *
+     * @return 64位十六进制字符串
+     */
+    public String getFingerprint() {
+        String fp = fingerprint;
+        if (fp == null) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);//每个Java平台都须支持SHA-256
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            int nodeCount = getNodeCount();
+            int[] targets = adjTable.getOrderedTargets();//遍历顺序影响调度结果
+            update(digest, buffer, slotCount);
+            update(digest, buffer, nodeCount);
+            for (int v = 0; v < nodeCount; v++) {
+                update(digest, buffer, activeSlot[v]);
+                update(digest, buffer, adjTable.degree(v));//计入度数以区分各段的边界
+                for (int k = adjTable.from(v); k < adjTable.to(v); k++)
+                    update(digest, buffer, targets[k]);
+            }
+            if (originalIds != null)//原编号决定编号比较的结果，调度结果随之不同
+                for (int id : originalIds)
+                    update(digest, buffer, id);
+            buffer.flip();
+            digest.update(buffer);
+
+            StringBuilder sb = new StringBuilder(64);
+            for (byte x : digest.digest())
+                sb.append(Character.forDigit((x >>> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+            fp = sb.toString();
+            fingerprint = fp;
+        }
+        return fp;
+    }
+
+    /**
+     * 将x写入缓冲区，缓冲区满时先交给摘要
+     */
+    private static void update(MessageDigest digest, ByteBuffer buffer, int x) {
+        if (buffer.remaining() < 4) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        buffer.putInt(x);
+    }
+}
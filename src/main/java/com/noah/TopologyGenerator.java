@@ -0,0 +1,321 @@
+package com.noah;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 随机连通拓扑生成器（基于LBAS的一跳模型），所有模型的时间复杂度均为O(N + E)
+ * 编号为0的节点为Source，其活跃时隙取-1，其余节点的活跃时隙在[0, slotCount)中均匀选取。
+ * 相同的种子和参数总是生成相同的拓扑
+ */
+public class TopologyGenerator {
+    private final Random random;
+
+    public TopologyGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * 随机生成树加额外随机边，即原autoInit的模型
+     * 依随机顺序将各节点挂到已加入生成树的随机节点上，再均匀地补充不重复的额外边
+     *
+     * @param nodeCount       节点数
+     * @param slotCount       单周期时隙数
+     * @param additionalEdges 在生成树基础上额外增加的边数
+     */
+    public Topology randomTree(int nodeCount, int slotCount, int additionalEdges) {
+        long maxEdges = (long) nodeCount * (nodeCount - 1) / 2;
+        if (additionalEdges < 0 || nodeCount - 1 + (long) additionalEdges > maxEdges)
+            throw new IllegalArgumentException("Too many edges for " + nodeCount + " nodes: " + additionalEdges);
+        int[] activeSlot = randomSlots(nodeCount, slotCount);
+        EdgeList edges = new EdgeList(nodeCount - 1 + additionalEdges);
+        LongHashSet edgeSet = new LongHashSet(nodeCount - 1 + additionalEdges);
+
+        //为了保证图的连通性，首先随机创建一颗生成树，order[0, k)为已加入生成树的节点
+        int[] order = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+            order[i] = i;
+        for (int k = 1; k < nodeCount; k++) {
+            int j = k + random.nextInt(nodeCount - k);//从未加入的节点中随机取一个
+            int e = order[j];
+            order[j] = order[k];
+            order[k] = e;
+            int s = order[random.nextInt(k)];//从已加入的节点中随机取一个
+            edges.add(s, e);
+            edgeSet.add(edgeKey(s, e));
+        }
+
+        //额外生成additionalEdges条边，起点和终点相同或边已存在时重新生成
+        for (int i = 0; i < additionalEdges; i++) {
+            int s, e;
+            do {
+                s = random.nextInt(nodeCount);
+                e = random.nextInt(nodeCount);
+            } while (s == e || !edgeSet.add(edgeKey(s, e)));
+            edges.add(s, e);
+        }
+        return edges.toTopology(slotCount, activeSlot);
+    }
+
+    /**
+     * 单位圆盘图：节点均匀分布在单位正方形中，距离不超过radius的节点互为邻居，更接近实际的传感器部署
+     * 按radius划分网格，每个节点只需与相邻网格中的节点比较距离。
+     * 若图不连通，则将其余各连通分量依次用一条随机边连到Source所在的分量上
+     *
+     * @param nodeCount 节点数
+     * @param slotCount 单周期时隙数
+     * @param radius    通信半径，平均度数约为π·radius²·nodeCount，可由radiusForDegree求得
+     */
+    public Topology unitDisk(int nodeCount, int slotCount, double radius) {
+        if (!(radius > 0))
+            throw new IllegalArgumentException("Radius must be positive: " + radius);
+        int[] activeSlot = randomSlots(nodeCount, slotCount);
+        double[] x = new double[nodeCount], y = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+        }
+
+        //网格边长不小于radius，网格数不超过节点数量级
+        int side = (int) Math.max(1, Math.min(Math.floor(1 / radius), Math.ceil(Math.sqrt(nodeCount))));
+        int[] cell = new int[nodeCount];
+        int[] cellOffsets = new int[side * side + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            cell[i] = cellOf(y[i], side) * side + cellOf(x[i], side);
+            cellOffsets[cell[i] + 1]++;
+        }
+        for (int c = 0; c < side * side; c++)
+            cellOffsets[c + 1] += cellOffsets[c];
+        int[] cellNodes = new int[nodeCount];
+        int[] cursor = Arrays.copyOf(cellOffsets, side * side);
+        for (int i = 0; i < nodeCount; i++)
+            cellNodes[cursor[cell[i]]++] = i;
+
+        EdgeList edges = new EdgeList(nodeCount);
+        double r2 = radius * radius;
+        for (int u = 0; u < nodeCount; u++) {
+            int cx = cell[u] % side, cy = cell[u] / side;
+            for (int ny = Math.max(cy - 1, 0); ny <= Math.min(cy + 1, side - 1); ny++)
+                for (int nx = Math.max(cx - 1, 0); nx <= Math.min(cx + 1, side - 1); nx++) {
+                    int c = ny * side + nx;
+                    for (int k = cellOffsets[c]; k < cellOffsets[c + 1]; k++) {
+                        int v = cellNodes[k];
+                        double dx = x[u] - x[v], dy = y[u] - y[v];
+                        if (v > u && dx * dx + dy * dy <= r2)
+                            edges.add(u, v);
+                    }
+                }
+        }
+        connectComponents(nodeCount, edges);
+        return edges.toTopology(slotCount, activeSlot);
+    }
+
+    /**
+     * @return 使单位圆盘图的期望平均度数为degree的通信半径
+     */
+    public static double radiusForDegree(int nodeCount, double degree) {
+        return Math.sqrt(degree / (Math.PI * nodeCount));
+    }
+
+    /**
+     * 网格图：节点按行优先编号，与上下左右的节点相邻，Source位于左上角
+     *
+     * @param rows      行数
+     * @param cols      列数
+     * @param slotCount 单周期时隙数
+     */
+    public Topology grid(int rows, int cols, int slotCount) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid grid size: " + rows + "x" + cols);
+        int nodeCount = rows * cols;
+        int[] activeSlot = randomSlots(nodeCount, slotCount);
+        EdgeList edges = new EdgeList(2 * nodeCount);
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++) {
+                int v = r * cols + c;
+                if (c + 1 < cols)
+                    edges.add(v, v + 1);
+                if (r + 1 < rows)
+                    edges.add(v, v + cols);
+            }
+        return edges.toTopology(slotCount, activeSlot);
+    }
+
+    private int[] randomSlots(int nodeCount, int slotCount) {
+        if (nodeCount <= 0 || slotCount <= 0)
+            throw new IllegalArgumentException("Invalid node or slot count: " + nodeCount + ", " + slotCount);
+        int[] activeSlot = new int[nodeCount];
+        activeSlot[0] = -1;
+        for (int i = 1; i < nodeCount; i++)
+            activeSlot[i] = random.nextInt(slotCount);
+        return activeSlot;
+    }
+
+    private static int cellOf(double coordinate, int side) {
+        return Math.min((int) (coordinate * side), side - 1);
+    }
+
+    /**
+     * 用并查集求连通分量，将不含Source的各分量用一条随机边连到Source所在的分量
+     */
+    private void connectComponents(int nodeCount, EdgeList edges) {
+        int[] parent = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+            parent[i] = i;
+        for (int i = 0; i < edges.size; i++)
+            union(parent, edges.from[i], edges.to[i]);
+
+        //reached[0, reachedCount)为已与Source连通的节点
+        int[] reached = new int[nodeCount];
+        int reachedCount = 0;
+        int sourceRoot = find(parent, 0);
+        for (int i = 0; i < nodeCount; i++)
+            if (find(parent, i) == sourceRoot)
+                reached[reachedCount++] = i;
+        for (int i = 0; i < nodeCount; i++) {
+            int root = find(parent, i);
+            if (root == i && root != sourceRoot) {
+                edges.add(reached[random.nextInt(reachedCount)], i);
+                parent[root] = sourceRoot;
+            }
+        }
+    }
+
+    private static int find(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private static void union(int[] parent, int u, int v) {
+        u = find(parent, u);
+        v = find(parent, v);
+        if (u != v)
+            parent[Math.max(u, v)] = Math.min(u, v);//以较小编号为根，Source所在分量的根总是0
+    }
+
+    private static long edgeKey(int s, int e) {
+        return s < e ? ((long) s << 32) | e : ((long) e << 32) | s;
+    }
+
+    /**
+     * 可增长的无向边列表
+     */
+    private static class EdgeList {
+        int[] from, to;
+        int size;
+
+        EdgeList(int capacity) {
+            from = new int[Math.max(capacity, 16)];
+            to = new int[from.length];
+        }
+
+        void add(int s, int e) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size << 1);
+                to = Arrays.copyOf(to, size << 1);
+            }
+            from[size] = s;
+            to[size++] = e;
+        }
+
+        Topology toTopology(int slotCount, int[] activeSlot) {
+            return new Topology(slotCount, activeSlot, CsrGraph.fromUndirectedEdges(activeSlot.length, from, to, size));
+        }
+    }
+
+    /**
+     * 以开放寻址法存放long的集合，用于边的去重，避免装箱
+     */
+    private static class LongHashSet {
+        private static final long EMPTY = -1;
+        private long[] table;
+        private int size;
+
+        LongHashSet(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+            table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+        }
+
+        /**
+         * @return 集合中原本不含key时返回true
+         */
+        boolean add(long key) {
+            if ((size + 1) * 2L > table.length)
+                rehash();
+            int mask = table.length - 1;
+            int i = mix(key) & mask;
+            while (table[i] != EMPTY) {
+                if (table[i] == key)
+                    return false;
+                i = (i + 1) & mask;
+            }
+            table[i] = key;
+            size++;
+            return true;
+        }
+
+        private void rehash() {
+            long[] old = table;
+            table = new long[old.length << 1];
+            Arrays.fill(table, EMPTY);
+            int mask = table.length - 1;
+            for (long key : old)
+                if (key != EMPTY) {
+                    int i = mix(key) & mask;
+                    while (table[i] != EMPTY)
+                        i = (i + 1) & mask;
+                    table[i] = key;
+                }
+        }
+
+        private static int mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+
+    /**
+     * 生成拓扑并写入文件，文件名以.bin结尾时使用二进制格式，否则使用文本格式
+     * 用法：
+     * <pre>
+     * TopologyGenerator tree &lt;节点数&gt; &lt;时隙数&gt; &lt;额外边数&gt; &lt;种子&gt; &lt;文件&gt;
+     * TopologyGenerator disk &lt;节点数&gt; &lt;时隙数&gt; &lt;平均度数&gt; &lt;种子&gt; &lt;文件&gt;
+     * TopologyGenerator grid &lt;行数&gt; &lt;时隙数&gt; &lt;列数&gt; &lt;种子&gt; &lt;文件&gt;
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6) {
+            System.err.println("Usage: TopologyGenerator <tree|disk|grid> <nodes|rows> <slots> <extra edges|degree|cols> <seed> <file>");
+            return;
+        }
+        int n = Integer.parseInt(args[1]), slots = Integer.parseInt(args[2]);
+        TopologyGenerator generator = new TopologyGenerator(Long.parseLong(args[4]));
+        Topology topology;
+        switch (args[0]) {
+            case "tree":
+                topology = generator.randomTree(n, slots, Integer.parseInt(args[3]));
+                break;
+            case "disk":
+                topology = generator.unitDisk(n, slots, radiusForDegree(n, Double.parseDouble(args[3])));
+                break;
+            case "grid":
+                topology = generator.grid(n, Integer.parseInt(args[3]), slots);
+                break;
+            default:
+                System.err.println("Unknown model: " + args[0]);
+                return;
+        }
+        Path path = Paths.get(args[5]);
+        if (args[5].endsWith(".bin"))
+            TopologyIO.writeBinary(topology, path);
+        else
+            TopologyIO.writeText(topology, path);
+    }
+}
@@ -0,0 +1,426 @@
+package com.noah;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 拓扑文件的读写
+ * 文本格式：节点数、时隙数，随后每行一个节点的"编号 活跃时隙"，再是边数和每行一条边的"起点 终点"
+ * 二进制格式（小端序int）：
+ * <pre>
+ * magic  version  nodeCount  slotCount  arcCount  flags
+ * activeSlot[nodeCount]
+ * offsets[nodeCount + 1]
+ * targets[arcCount]
+ * order[arcCount]（flags含FLAG_ORDERED时）
+ * </pre>
+ * 二进制文件直接保存CSR邻接表，载入时通过内存映射整块读出，无需解析和建表。
+ * 文本格式中边的次序决定了邻节点的遍历顺序（见CsrGraph.fromUndirectedEdges），二进制格式则直接保存遍历顺序
+ */
+public class TopologyIO {
+    private static final int MAGIC = 0x5341424C;//"LBAS"
+    private static final int VERSION = 1;
+    static final int HEADER_INTS = 6;
+    static final int FLAG_SYMMETRIC = 1;//邻接表对称
+    static final int FLAG_ORDERED = 2;//targets之后保存各节点邻节点的遍历顺序，没有时按默认顺序
+    private static final int MAP_CHUNK = 1 << 28;//每次映射的int数，保证映射区域小于2GB
+
+    private TopologyIO() {
+    }
+
+    /**
+     * 根据文件头自动选择二进制或文本格式读入拓扑
+     */
+    public static Topology read(Path path) throws IOException {
+        if (Files.size(path) >= 4)
+            try (DataInputStream in = new DataInputStream(new FileInputStream(path.toFile()))) {
+                if (Integer.reverseBytes(in.readInt()) == MAGIC)
+                    return readBinary(path);
+            }
+        return readText(path);
+    }
+
+    //===================================文本格式===================================
+
+    /**
+     * 以字节为单位解析文本格式的拓扑文件，不使用正则表达式和逐词分配字符串
+     * 与二进制格式一样在读入时检查各项：计数非负，编号、端点和活跃时隙在范围内，每个节点恰好出现一次，
+     * 格式错误的文件抛出指明行号的IOException，而不是在之后的计算中越界
+     */
+    public static Topology readText(Path path) throws IOException {
+        long size = Files.size(path);
+        try (InputStream in = new FileInputStream(path.toFile())) {
+            IntReader reader = new IntReader(in, path);
+
+            //输入节点数和时隙数，每个节点和每条边至少占4个字节，超过文件长度的计数一定是错误的
+            int nodeCount = reader.nextInt();
+            if (nodeCount < 1 || nodeCount > size / 4)
+                throw reader.error("Invalid node count " + nodeCount);
+            int slotCount = reader.nextInt();
+            if (slotCount < 0)
+                throw reader.error("Invalid slot count " + slotCount);
+
+            //输入各节点的编号及活跃时隙
+            int[] activeSlot = new int[nodeCount];
+            boolean[] seen = new boolean[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                int id = reader.nextInt();
+                if (id < 0 || id >= nodeCount)
+                    throw reader.error("Node id out of range [0, " + nodeCount + "): " + id);
+                if (seen[id])
+                    throw reader.error("Node " + id + " is listed twice");
+                seen[id] = true;
+                activeSlot[id] = reader.nextInt();
+                if (activeSlot[id] < -1 || activeSlot[id] >= slotCount)
+                    throw reader.error("Active slot of node " + id + " out of range [-1, " + slotCount + "): " + activeSlot[id]);
+            }
+
+            //输入图的拓扑结构
+            int eNum = reader.nextInt();
+            if (eNum < 0 || eNum > size / 4)
+                throw reader.error("Invalid edge count " + eNum);
+            int[] s = new int[eNum], e = new int[eNum];
+            for (int i = 0; i < eNum; i++) {
+                s[i] = reader.nextInt();
+                e[i] = reader.nextInt();
+                if (s[i] < 0 || s[i] >= nodeCount || e[i] < 0 || e[i] >= nodeCount)
+                    throw reader.error("Edge endpoint out of range [0, " + nodeCount + "): " + s[i] + " " + e[i]);
+            }
+            return new Topology(slotCount, activeSlot, CsrGraph.fromUndirectedEdges(nodeCount, s, e, eNum));
+        }
+    }
+
+    /**
+     * 将拓扑写为文本格式，每条无向边只写一次
+     * 文本格式只能表示无向图，邻接关系不对称的拓扑（如变换后的图）须使用二进制格式。
+     * 各边按textEdges求出的次序写出，读入后邻节点的遍历顺序与写出前相同，同一拓扑无论是否经过文本文件都得到相同的调度结果
+     *
+     * @throws IllegalArgumentException 邻接表不对称，或其遍历顺序不能由任何边的次序得到
+     */
+    public static void writeText(Topology topology, Path path) throws IOException {
+        CsrGraph adjTable = topology.getAdjTable();
+        if (!adjTable.isSymmetric())
+            throw new IllegalArgumentException("Text format requires a symmetric adjacency table");
+        int nodeCount = topology.getNodeCount();
+        int[][] edges = textEdges(adjTable);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path.toFile()), "US-ASCII"), 1 << 16)) {
+            out.write(nodeCount + "\n");//写入节点数
+            out.write(topology.getSlotCount() + "\n");//写入时隙数
+            for (int i = 0; i < nodeCount; i++)
+                out.write(i + " " + topology.getActiveSlot(i) + "\n");//依次写入各节点的active slot
+            out.write(edges[0].length + "\n");//写入边数
+            for (int i = 0; i < edges[0].length; i++)
+                out.write(edges[0][i] + " " + edges[1][i] + "\n");//写入一条边
+        }
+    }
+
+    /**
+     * 求对称邻接表中各无向边的一个次序，按此次序调用CsrGraph.fromUndirectedEdges得到的遍历顺序与adjTable相同
+     * 各节点的遍历顺序即邻节点按插入次序加入HashSet后的顺序，只有落在同一个桶中的邻节点的先后由插入次序决定，
+     * 因此每个桶中相邻的两个邻节点给出一条边的先后约束，按约束做拓扑排序，没有约束的边按(起点, 终点)的升序写出
+     *
+     * @return {各边的起点, 各边的终点}，起点不大于终点
+     * @throws IllegalArgumentException 约束中存在环、某个桶转为红黑树等原因使遍历顺序不能由边的次序得到
+     */
+    static int[][] textEdges(CsrGraph adjTable) {
+        int nodeCount = adjTable.getNodeCount();
+        int[] targets = adjTable.getTargets(), ordered = adjTable.getOrderedTargets();
+
+        //v <= targets[k]的弧k对应一条边，边按(起点, 终点)的升序编号
+        int[] edgeOf = new int[targets.length];
+        int edgeCount = 0;
+        for (int v = 0; v < nodeCount; v++)
+            for (int k = adjTable.from(v); k < adjTable.to(v); k++)
+                edgeOf[k] = v <= targets[k] ? edgeCount++ : -1;
+        int[] from = new int[edgeCount], to = new int[edgeCount];
+        for (int v = 0; v < nodeCount; v++)
+            for (int k = adjTable.from(v); k < adjTable.to(v); k++)
+                if (edgeOf[k] != -1) {
+                    from[edgeOf[k]] = v;
+                    to[edgeOf[k]] = targets[k];
+                }
+
+        //next[2e]和next[2e + 1]为边e在起点和终点的桶中的下一条边
+        int[] next = new int[edgeCount << 1], inDegree = new int[edgeCount];
+        Arrays.fill(next, -1);
+        HashOrder hashOrder = new HashOrder();
+        for (int v = 0; v < nodeCount; v++) {
+            int begin = adjTable.from(v), end = adjTable.to(v);
+            int cap = hashOrder.capacity(ordered, begin, end, null, HashOrder.DEFAULT_CAPACITY);
+            if (cap == -1)
+                throw new IllegalArgumentException("Visiting order of node " + v + " cannot be written in text format, use the binary format");
+            for (int k = begin + 1; k < end; k++)
+                if (HashOrder.bucket(ordered[k - 1], cap) == HashOrder.bucket(ordered[k], cap)) {
+                    int a = edgeId(adjTable, targets, edgeOf, v, ordered[k - 1]), b = edgeId(adjTable, targets, edgeOf, v, ordered[k]);
+                    next[(a << 1) + (from[a] == v ? 0 : 1)] = b;
+                    inDegree[b]++;
+                }
+        }
+
+        int[] queue = new int[edgeCount];
+        int head = 0, tail = 0;
+        for (int e = 0; e < edgeCount; e++)
+            if (inDegree[e] == 0)
+                queue[tail++] = e;
+        while (head < tail) {
+            int e = queue[head++];
+            for (int side = 0; side < 2; side++) {
+                int b = next[(e << 1) + side];
+                if (b != -1 && --inDegree[b] == 0)
+                    queue[tail++] = b;
+            }
+        }
+        if (tail < edgeCount)
+            throw new IllegalArgumentException("Visiting order cannot be written in text format, use the binary format");
+
+        int[][] edges = {new int[edgeCount], new int[edgeCount]};
+        for (int i = 0; i < edgeCount; i++) {
+            edges[0][i] = from[queue[i]];
+            edges[1][i] = to[queue[i]];
+        }
+        //扩容时机等细节可能与写出前不同，重建一次确认遍历顺序相同
+        CsrGraph rebuilt = CsrGraph.fromUndirectedEdges(nodeCount, edges[0], edges[1], edgeCount);
+        if (!Arrays.equals(rebuilt.getOrderedTargets(), ordered))
+            throw new IllegalArgumentException("Visiting order cannot be written in text format, use the binary format");
+        return edges;
+    }
+
+    /**
+     * @return 节点v与u之间的边的编号
+     */
+    private static int edgeId(CsrGraph adjTable, int[] targets, int[] edgeOf, int v, int u) {
+        return v <= u ? edgeOf[Arrays.binarySearch(targets, adjTable.from(v), adjTable.to(v), u)]
+                : edgeOf[Arrays.binarySearch(targets, adjTable.from(u), adjTable.to(u), v)];
+    }
+
+    /**
+     * 带缓冲的十进制整数读取器，整数之间只能是空白字符，其他字节、溢出int的数和提前结束的文件都会报错
+     */
+    private static class IntReader {
+        private final InputStream in;
+        private final Path path;
+        private final byte[] buffer = new byte[1 << 16];
+        private int pos, limit;
+        private int line = 1;//当前行号
+        private int tokenLine = 1;//最近读入的整数所在的行号，用于报错
+
+        IntReader(InputStream in, Path path) {
+            this.in = in;
+            this.path = path;
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        int nextInt() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B) {
+                if (c == '\n')
+                    line++;
+                c = read();
+            }
+            if (c == -1)
+                throw new EOFException("Unexpected end of topology file at line " + line + " in " + path);
+            tokenLine = line;
+            boolean negative = c == '-';
+            if (negative)
+                c = read();
+            if (c < '0' || c > '9')
+                throw unexpected(c);
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE + 1L)
+                    throw error("Integer out of range");
+                c = read();
+            }
+            if (c != -1 && c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != '\f' && c != 0x0B)
+                throw unexpected(c);
+            if (c == '\n')
+                line++;
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE)
+                throw error("Integer out of range");
+            return (int) value;
+        }
+
+        private IOException unexpected(int c) {
+            return error(c == -1 ? "Unexpected end of file" : "Unexpected character 0x" + Integer.toHexString(c));
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at line " + tokenLine + " in " + path);
+        }
+    }
+
+    //===================================二进制格式===================================
+
+    /**
+     * 通过内存映射读入二进制格式的拓扑文件，读入后检查CSR结构，损坏的文件在此处报错而不是在之后的计算中
+     */
+    public static Topology readBinary(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            int[] header = readHeader(ch, path);
+            int nodeCount = header[2], slotCount = header[3], arcCount = header[4], flags = header[5];
+
+            long pos = HEADER_INTS * 4L;
+            int[] activeSlot = new int[nodeCount];
+            pos = readInts(ch, pos, activeSlot);
+            int[] offsets = new int[nodeCount + 1];
+            pos = readInts(ch, pos, offsets);
+            int[] targets = new int[arcCount];
+            pos = readInts(ch, pos, targets);
+            validate(path, slotCount, activeSlot, offsets, targets);
+            int[] order = null;
+            if ((flags & FLAG_ORDERED) != 0) {
+                order = new int[arcCount];
+                readInts(ch, pos, order);
+                validateOrder(path, offsets, targets, order);
+            }
+
+            CsrGraph adjTable = (flags & FLAG_SYMMETRIC) != 0 ? CsrGraph.symmetric(offsets, targets, order) : new CsrGraph(offsets, targets, order);
+            return new Topology(slotCount, activeSlot, adjTable);
+        }
+    }
+
+    /**
+     * 读出并检查二进制拓扑文件的文件头，各项计数须非负且与文件长度相符，之后才能按计数分配数组
+     */
+    static int[] readHeader(FileChannel ch, Path path) throws IOException {
+        int[] header = new int[HEADER_INTS];
+        readInts(ch, 0, header);
+        if (header[0] != MAGIC)
+            throw new IOException("Not a binary topology file: " + path);
+        if (header[1] != VERSION)
+            throw new IOException("Unsupported binary topology version: " + header[1]);
+        int nodeCount = header[2], slotCount = header[3], arcCount = header[4], flags = header[5];
+        if (nodeCount < 1 || nodeCount == Integer.MAX_VALUE || slotCount < 0 || arcCount < 0)
+            throw new IOException("Corrupt binary topology header: nodeCount=" + nodeCount + ", slotCount=" + slotCount
+                    + ", arcCount=" + arcCount + " in " + path);
+        if ((HEADER_INTS + 2L * nodeCount + 1 + ((flags & FLAG_ORDERED) != 0 ? 2L : 1L) * arcCount) * 4 > ch.size())
+            throw new EOFException("Truncated binary topology file: " + path);
+        return header;
+    }
+
+    /**
+     * 检查载入的CSR结构：偏移从0开始单调不减且以arcCount结束，每段内的邻节点在[0, nodeCount)内且严格递增，
+     * 活跃时隙在[-1, slotCount)内
+     */
+    static void validate(Path path, int slotCount, int[] activeSlot, int[] offsets, int[] targets) throws IOException {
+        int nodeCount = activeSlot.length;
+        for (int v = 0; v < nodeCount; v++)
+            if (activeSlot[v] < -1 || activeSlot[v] >= slotCount)
+                throw new IOException("Active slot of node " + v + " out of range: " + activeSlot[v] + " in " + path);
+        if (offsets[0] != 0 || offsets[nodeCount] != targets.length)
+            throw new IOException("Offsets must span [0, " + targets.length + "]: " + offsets[0] + ".." + offsets[nodeCount] + " in " + path);
+        for (int v = 0; v < nodeCount; v++)
+            if (offsets[v + 1] < offsets[v])
+                throw new IOException("Offsets decrease at node " + v + " in " + path);
+        for (int v = 0; v < nodeCount; v++)
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                if (targets[k] < 0 || targets[k] >= nodeCount)
+                    throw new IOException("Neighbor of node " + v + " out of range: " + targets[k] + " in " + path);
+                if (k > offsets[v] && targets[k] <= targets[k - 1])
+                    throw new IOException("Neighbors of node " + v + " are not strictly increasing in " + path);
+            }
+    }
+
+    /**
+     * 检查遍历顺序：每段须为targets中同一段的一个排列
+     */
+    static void validateOrder(Path path, int[] offsets, int[] targets, int[] order) throws IOException {
+        int nodeCount = offsets.length - 1;
+        int[] stamp = new int[nodeCount];//stamp[u] == v + 1表示u已在v的遍历顺序中出现
+        for (int v = 0; v < nodeCount; v++)
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int u = order[k];
+                if (u < 0 || u >= nodeCount || Arrays.binarySearch(targets, offsets[v], offsets[v + 1], u) < 0 || stamp[u] == v + 1)
+                    throw new IOException("Visiting order of node " + v + " is not a permutation of its neighbors in " + path);
+                stamp[u] = v + 1;
+            }
+    }
+
+    /**
+     * 将拓扑写为二进制格式，同时保存邻节点的遍历顺序
+     */
+    public static void writeBinary(Topology topology, Path path) throws IOException {
+        CsrGraph adjTable = topology.getAdjTable().toCompact();
+        int[] header = {MAGIC, VERSION, topology.getNodeCount(), topology.getSlotCount(), adjTable.getArcCount(),
+                (adjTable.isSymmetric() ? FLAG_SYMMETRIC : 0) | FLAG_ORDERED};
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            writeInts(ch, buffer, header);
+            writeInts(ch, buffer, topology.getActiveSlots());
+            writeInts(ch, buffer, adjTable.getOffsets());
+            writeInts(ch, buffer, adjTable.getTargets());
+            writeInts(ch, buffer, adjTable.getOrderedTargets());
+            buffer.flip();
+            while (buffer.hasRemaining())
+                ch.write(buffer);
+        }
+    }
+
+    /**
+     * 从pos处分块映射文件并读出dst.length个int
+     *
+     * @return 读完后的文件位置
+     */
+    static long readInts(FileChannel ch, long pos, int[] dst) throws IOException {
+        if (pos + dst.length * 4L > ch.size())
+            throw new EOFException("Truncated binary topology file");
+        for (int off = 0; off < dst.length; off += MAP_CHUNK) {
+            int len = Math.min(MAP_CHUNK, dst.length - off);
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, pos, len * 4L);
+            IntBuffer ints = mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            ints.get(dst, off, len);
+            pos += len * 4L;
+        }
+        return pos;
+    }
+
+    static void writeInts(FileChannel ch, ByteBuffer buffer, int[] src) throws IOException {
+        int off = 0;
+        while (off < src.length) {
+            if (buffer.remaining() < 4) {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    ch.write(buffer);
+                buffer.clear();
+            }
+            int len = Math.min(buffer.remaining() >>> 2, src.length - off);
+            buffer.asIntBuffer().put(src, off, len);
+            buffer.position(buffer.position() + (len << 2));
+            off += len;
+        }
+    }
+
+    /**
+     * 将文本格式的拓扑文件转换为二进制格式
+     * 用法：TopologyIO &lt;文本文件&gt; &lt;二进制文件&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TopologyIO <text file> <binary file>");
+            return;
+        }
+        writeBinary(readText(Paths.get(args[0])), Paths.get(args[1]));
+    }
+}
@@ -0,0 +1,60 @@
+package com.noah;
+
+/**
+ * XXXXX调度器：扩大热点区域外节点的广播半径后建立广播主干
+ * 所有节点的k跳邻域在第一次调度时求出并由之后的调度共享，每次调度只需O(N)建立变换后拓扑的视图，
+ * 因此可以在同一拓扑上同时计算多个hotspotBorder的调度
+ */
+public class XXXXXScheduler {
+    private final Topology topology;
+    private final int radius;//热点区域外节点的广播半径
+    private final boolean parallel;
+    private final PhaseMetrics metrics;//为null时不记录
+    private RadiusExpansion expansion;//按需建立
+
+    public XXXXXScheduler(Topology topology) {
+        this(topology, 2, false);
+    }
+
+    /**
+     * @param radius   热点区域外节点的广播半径，原算法为2
+     * @param parallel 是否并行扩展邻域及计算各时隙的覆盖节点
+     */
+    public XXXXXScheduler(Topology topology, int radius, boolean parallel) {
+        this(topology, radius, parallel, null);
+    }
+
+    /**
+     * @param metrics 累计各次调度各阶段耗时与计数的对象，为null时不记录
+     */
+    public XXXXXScheduler(Topology topology, int radius, boolean parallel, PhaseMetrics metrics) {
+        if (radius < 1)
+            throw new IllegalArgumentException("Radius must be at least 1: " + radius);
+        this.topology = topology;
+        this.radius = radius;
+        this.parallel = parallel;
+        this.metrics = metrics;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    private synchronized RadiusExpansion getExpansion() {
+        if (expansion == null)
+            expansion = new RadiusExpansion(topology, radius, parallel);
+        return expansion;
+    }
+
+    /**
+     * 变换拓扑并建立XXXXX广播主干
+     *
+     * @param hotspotBorder 热点区域Level边界，从0开始计数
+     */
+    public Schedule schedule(int hotspotBorder) {
+        Graph g = new Graph(topology, parallel, metrics);
+        g.transformTopology(getExpansion(), hotspotBorder);
+        g.finalizeXXXXXBackbone();
+        return g.toSchedule(hotspotBorder, radius);
+    }
+}